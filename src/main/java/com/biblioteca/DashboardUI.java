@@ -1,12 +1,12 @@
 package com.biblioteca;
 
+import com.biblioteca.service.HistoricoVendas;
+import com.biblioteca.service.HistoricoVendas.VendaResumo;
 import com.biblioteca.service.PagamentoService;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -33,7 +33,11 @@ public class DashboardUI extends JFrame {
         topPanel.add(metricasPanel, BorderLayout.CENTER);
         
         JButton refreshButton = new JButton("Atualizar Dados");
-        refreshButton.addActionListener(e -> atualizarDados());
+        // O console roda em outra JVM: vendas feitas pela web só aparecem relendo o banco
+        refreshButton.addActionListener(e -> {
+            HistoricoVendas.recarregar();
+            atualizarDados();
+        });
         topPanel.add(refreshButton, BorderLayout.EAST);
         
         add(topPanel, BorderLayout.NORTH);
@@ -52,44 +56,32 @@ public class DashboardUI extends JFrame {
 
     public void atualizarDados() {
         try {
-            PagamentoService.atualizarHistorico();
-            
-            double totalVendas = PagamentoService.calcularTotalVendas();
-            List<HashMap<String, Object>> historicoVendas = PagamentoService.getHistoricoVendas();
-            HashMap<String, Integer> vendasPorTipo = PagamentoService.contarVendasPorTipoPagamento();
-            
-            if (historicoVendas == null) {
-                throw new RuntimeException("Não foi possível carregar o histórico de vendas");
-            }
+            // Lê o histórico em memória (recarregado do banco pelo botão Atualizar)
+            HistoricoVendas historico = PagamentoService.getHistorico();
+            double totalVendas = historico.getValor("PAGO");
+            long quantidadePagas = historico.getQuantidade("PAGO");
+            List<VendaResumo> historicoVendas = historico.getVendasRecentes();
             
-            List<HashMap<String, Object>> vendasPagas = historicoVendas.stream()
-                .filter(v -> "PAGO".equals(v.get("status")))
+            List<VendaResumo> vendasPagas = historicoVendas.stream()
+                .filter(v -> "PAGO".equals(v.status()))
                 .collect(Collectors.toList());
             
             totalVendasLabel.setText(String.format("Total de Vendas: R$ %.2f", totalVendas));
-            quantidadeVendasLabel.setText("Quantidade de Vendas Pagas: " + vendasPagas.size());
+            quantidadeVendasLabel.setText("Quantidade de Vendas Pagas: " + quantidadePagas);
 
             DefaultTableModel modelo = (DefaultTableModel) vendasTable.getModel();
             modelo.setRowCount(0);
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
 
-            for (HashMap<String, Object> venda : historicoVendas) {
+            for (VendaResumo venda : historicoVendas) {
                 try {
-                    String cliente = venda.get("cliente") != null ? venda.get("cliente").toString() : "N/A";
-                    String cpf = venda.get("cpf") != null ? venda.get("cpf").toString() : "N/A";
-                    String valor = "R$ 0,00";
-                    if (venda.get("valor") != null) {
-                        Double valorDouble = (Double) venda.get("valor");
-                        valor = String.format("R$ %.2f", valorDouble);
-                    }
-                    String tipoPagamento = venda.get("tipoPagamento") != null ? 
-                        (venda.get("tipoPagamento").equals("card") ? "Cartão" : "Boleto") : "N/A";
-                    String data = "N/A";
-                    if (venda.get("data") != null) {
-                        LocalDateTime dataVenda = (LocalDateTime) venda.get("data");
-                        data = dataVenda.format(formatter);
-                    }
-                    String status = venda.get("status") != null ? venda.get("status").toString() : "N/A";
+                    String cliente = venda.cliente() != null ? venda.cliente() : "N/A";
+                    String cpf = venda.cpf() != null ? venda.cpf() : "N/A";
+                    String valor = venda.valor() != null ? String.format("R$ %.2f", venda.valor()) : "R$ 0,00";
+                    String tipoPagamento = venda.tipoPagamento() != null ?
+                        (venda.tipoPagamento().equals("card") ? "Cartão" : "Boleto") : "N/A";
+                    String data = venda.data() != null ? venda.data().format(formatter) : "N/A";
+                    String status = venda.status() != null ? venda.status() : "N/A";
 
                     modelo.addRow(new Object[]{
                         cliente,
@@ -121,12 +113,8 @@ public class DashboardUI extends JFrame {
             StringBuilder pagamentoText = new StringBuilder("<html>");
             for (String tipo : new String[]{"card", "boleto"}) {
                 String tipoFormatado = tipo.equals("card") ? "Cartão" : "Boleto";
-                int quantidade = vendasPorTipo.getOrDefault(tipo, 0);
-                double valorTotal = vendasPagas.stream()
-                    .filter(v -> tipo.equals(v.get("tipoPagamento")))
-                    .filter(v -> v.get("valor") != null)
-                    .mapToDouble(v -> ((Double)v.get("valor")))
-                    .sum();
+                long quantidade = historico.getQuantidade("PAGO", tipo);
+                double valorTotal = historico.getValor("PAGO", tipo);
                 
                 pagamentoText.append(tipoFormatado)
                             .append(": ")
@@ -146,12 +134,12 @@ public class DashboardUI extends JFrame {
                         .append(String.format("%.2f", totalVendas))
                         .append("<br>")
                         .append("Quantidade de Vendas Pagas: ")
-                        .append(vendasPagas.size())
+                        .append(quantidadePagas)
                         .append("<br>");
             
-            if (!vendasPagas.isEmpty()) {
+            if (quantidadePagas > 0) {
                 metricasText.append("Ticket Médio: R$ ")
-                            .append(String.format("%.2f", totalVendas / vendasPagas.size()))
+                            .append(String.format("%.2f", totalVendas / quantidadePagas))
                             .append("<br>");
             }
             
@@ -164,10 +152,10 @@ public class DashboardUI extends JFrame {
             graficoVendasPanel.setLayout(new BorderLayout());
             
             Map<String, Double> vendasPorData = vendasPagas.stream()
-                .filter(v -> v.get("data") != null && v.get("valor") != null)
+                .filter(v -> v.data() != null && v.valor() != null)
                 .collect(Collectors.groupingBy(
-                    v -> ((LocalDateTime)v.get("data")).format(DateTimeFormatter.ofPattern("dd/MM")),
-                    Collectors.summingDouble(v -> ((Double)v.get("valor")))
+                    v -> v.data().format(DateTimeFormatter.ofPattern("dd/MM")),
+                    Collectors.summingDouble(VendaResumo::valor)
                 ));
 
             JPanel barrasPanel = new JPanel() {
@@ -207,12 +195,7 @@ public class DashboardUI extends JFrame {
 
             JPanel statusPanel = new JPanel();
             statusPanel.setBorder(BorderFactory.createTitledBorder("Status das Vendas"));
-            Map<String, Long> vendasPorStatus = historicoVendas.stream()
-                .filter(v -> v.get("status") != null)
-                .collect(Collectors.groupingBy(
-                    v -> (String)v.get("status"),
-                    Collectors.counting()
-                ));
+            Map<String, Long> vendasPorStatus = historico.getQuantidadePorStatus();
             
             StringBuilder statusText = new StringBuilder("<html>");
             for (Map.Entry<String, Long> entry : vendasPorStatus.entrySet()) {
@@ -6,7 +6,6 @@ import com.biblioteca.strategy.MenuStrategySelector;
 import com.biblioteca.util.CpfValidator;
 import com.biblioteca.util.JPAUtil;
 import com.biblioteca.util.DatabaseUtil;
-import com.stripe.model.checkout.Session;
 
 import java.util.*;
 import java.time.LocalDate;
@@ -246,9 +245,9 @@ public class Main {
         System.out.println("\n=== CARRINHO ATUAL ===");
         for (LivroCarrinho lc : carrinhoAtual.getLivros()) {
             System.out.printf("Livro: %s - Quantidade: %d - Valor unitário: R$%.2f - Total: R$%.2f\n",
-                lc.getLivro().getTitulo(),
+                lc.getTitulo(),
                 lc.getQuantidade(),
-                lc.getLivro().getValor(),
+                lc.getValorUnitario(),
                 lc.calcularValor());
         }
         System.out.printf("Total do carrinho: R$%.2f\n", carrinhoAtual.calcularTotal());
@@ -354,11 +353,11 @@ public class Main {
         String tipoPagamento = opcaoPagamento == 1 ? "card" : "boleto";
 
         System.out.println("\nProcessando pagamento...");
-        Session sessaoPagamento = PagamentoService.criarSessaoCheckout(carrinhoAtual, tipoPagamento, cliente.getCpf(), false);
+        PaymentGateway.SessaoPagamento sessaoPagamento = PagamentoService.criarSessaoCheckout(carrinhoAtual, tipoPagamento, cliente.getCpf(), false);
         
         if (sessaoPagamento != null) {
             System.out.println("\n=== INFORMAÇÕES DO PAGAMENTO ===");
-            System.out.println("Link para pagamento: " + sessaoPagamento.getUrl());
+            System.out.println("Link para pagamento: " + sessaoPagamento.url());
             System.out.println("\nPor favor, acesse o link acima para finalizar o pagamento.");
             System.out.println("Após a confirmação do pagamento, os documentos fiscais serão");
             System.out.println("gerados e enviados para o email: " + cliente.getEmail());
@@ -367,7 +366,7 @@ public class Main {
             scanner.nextLine();
             
             Venda venda = new Venda();
-            venda.setId(sessaoPagamento.getId());
+            venda.setId(sessaoPagamento.id());
             venda.setClienteNome(cliente.getNome());
             venda.setClienteCpf(cliente.getCpf());
             venda.setClienteEmail(cliente.getEmail());
@@ -381,7 +380,7 @@ public class Main {
                 ItemVenda item = new ItemVenda();
                 item.setLivro(livroCarrinho.getLivro());
                 item.setQuantidade(livroCarrinho.getQuantidade());
-                item.setValorUnitario(Double.valueOf(livroCarrinho.getLivro().getValor()));
+                item.setValorUnitario(livroCarrinho.getValorUnitario());
                 item.setValorTotal(livroCarrinho.calcularValor());
                 venda.addItem(item);
             }
@@ -391,17 +390,6 @@ public class Main {
             
             PagamentoService.salvarVendaNoBanco(venda);
             
-            HashMap<String, Object> vendaMap = new HashMap<>();
-            vendaMap.put("sessionId", venda.getId());
-            vendaMap.put("cliente", venda.getClienteNome());
-            vendaMap.put("cpf", venda.getClienteCpf());
-            vendaMap.put("email", venda.getClienteEmail());
-            vendaMap.put("valor", venda.getValorTotal());
-            vendaMap.put("tipoPagamento", venda.getTipoPagamento());
-            vendaMap.put("data", venda.getDataVenda());
-            vendaMap.put("status", venda.getStatus());
-            PagamentoService.adicionarVendaAoHistorico(vendaMap);
-            
             System.out.println("\nDocumentos fiscais gerados e enviados para: " + cliente.getEmail());
         } else {
             System.out.println("Erro ao processar o pagamento. Por favor, tente novamente.");
@@ -719,11 +707,11 @@ public class Main {
         carrinhoTemp.adicionarLivro(livroTemp, 1);
 
         System.out.println("\nProcessando pagamento...");
-        com.stripe.model.checkout.Session sessaoPagamento = PagamentoService.criarSessaoCheckout(carrinhoTemp, tipoPagamento, cliente.getCpf(), false);
+        PaymentGateway.SessaoPagamento sessaoPagamento = PagamentoService.criarSessaoCheckout(carrinhoTemp, tipoPagamento, cliente.getCpf(), false);
         
         if (sessaoPagamento != null) {
             System.out.println("\n=== INFORMAÇÕES DO PAGAMENTO ===");
-            System.out.println("Link para pagamento: " + sessaoPagamento.getUrl());
+            System.out.println("Link para pagamento: " + sessaoPagamento.url());
             System.out.println("\nPor favor, acesse o link acima para finalizar o pagamento.");
             System.out.println("Após a confirmação do pagamento, o empréstimo será registrado.");
             
@@ -739,7 +727,7 @@ public class Main {
 
                 // Gerar nota fiscal do empréstimo
                 Venda venda = new Venda();
-                venda.setId(sessaoPagamento.getId());
+                venda.setId(sessaoPagamento.id());
                 venda.setClienteNome(cliente.getNome());
                 venda.setClienteCpf(cliente.getCpf());
                 venda.setClienteEmail(cliente.getEmail());
@@ -761,20 +749,9 @@ public class Main {
                 DocumentoFiscalService.gerarNotaFiscal(venda);
                 DocumentoFiscalService.gerarRecibo(venda);
                 
-                // Salva a venda no banco e no histórico
+                // Salva a venda no banco (entra no histórico ao salvar)
                 PagamentoService.salvarVendaNoBanco(venda);
                 
-                HashMap<String, Object> vendaMap = new HashMap<>();
-                vendaMap.put("sessionId", venda.getId());
-                vendaMap.put("cliente", venda.getClienteNome());
-                vendaMap.put("cpf", venda.getClienteCpf());
-                vendaMap.put("email", venda.getClienteEmail());
-                vendaMap.put("valor", venda.getValorTotal());
-                vendaMap.put("tipoPagamento", venda.getTipoPagamento());
-                vendaMap.put("data", venda.getDataVenda());
-                vendaMap.put("status", venda.getStatus());
-                PagamentoService.adicionarVendaAoHistorico(vendaMap);
-                
                 System.out.println("\nDocumentos fiscais gerados e enviados para: " + cliente.getEmail());
             } catch (RuntimeException e) {
                 System.out.println("Erro ao realizar empréstimo: " + e.getMessage());
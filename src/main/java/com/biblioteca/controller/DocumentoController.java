@@ -1,42 +1,207 @@
 package com.biblioteca.controller;
 
+import com.biblioteca.service.DashboardRelatorioService;
+import com.biblioteca.service.DocumentoFiscalService;
+import com.biblioteca.service.DocumentoSobDemandaService;
+import com.biblioteca.service.DocumentoStore;
+import com.biblioteca.service.DocumentoStore.DocumentoArmazenado;
 import jakarta.annotation.security.RolesAllowed;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
 
+/**
+ * Download dos documentos gerados (NF / recibo), lidos do {@link DocumentoStore}.
+ *
+ * Arquivos em disco nunca são lidos para o heap: com o conector NIO do Tomcat a transferência
+ * é delegada ao sendfile do sistema operacional; sem ele, o FileChannel é
+ * transferido direto para o stream de saída. Suporta Range (um intervalo),
+ * ETag forte e If-None-Match / If-Range.
+ *
+ * Documento ainda inexistente é gerado na hora ({@link DocumentoSobDemandaService});
+ * os gerados recentemente são servidos da memória.
+ *
+ * Relatórios de dashboard e lotes de notas fiscais são restritos a gerente / admin.
+ */
 @RestController
 @RequestMapping("/api/docs")
 @RolesAllowed({"CLIENTE","GERENTE","ADMIN","FUNCIONARIO","USER"})
 public class DocumentoController {
 
-    private static final String OUTPUT_DIR = "output";
+    // Atributos do Tomcat para transferência via sendfile
+    private static final String SENDFILE_SUPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARQUIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+
+    @Autowired(required = false)
+    private DocumentoStore documentoStore;
+
+    @Autowired(required = false)
+    private DocumentoSobDemandaService documentoSobDemanda;
+
+    @Autowired(required = false)
+    private DashboardRelatorioService dashboardRelatorio;
+
+    // GET /api/docs/dashboard/2025-11-03 (diário) ou /api/docs/dashboard/2025-11 (mensal)
+    @GetMapping("/dashboard/{periodo}")
+    public void dashboard(@PathVariable String periodo, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (!isGestor(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Optional<String> nome;
+        try {
+            nome = dashboardRelatorio != null ? dashboardRelatorio.obterRelatorio(periodo) : Optional.empty();
+        } catch (Exception e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (nome.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        download(nome.get(), request, response);
+    }
 
     @GetMapping("/{fileName:.+}")
-    public ResponseEntity<Resource> download(@PathVariable String fileName) {
+    public void download(@PathVariable String fileName, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        if (isRestrito(fileName) && !isGestor(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        DocumentoStore store = documentoStore != null ? documentoStore : DocumentoFiscalService.getStore();
+
+        Optional<DocumentoArmazenado> encontrado;
         try {
-            Path file = Paths.get(OUTPUT_DIR).resolve(fileName);
-            if (!Files.exists(file)) {
-                return ResponseEntity.notFound().build();
+            encontrado = documentoSobDemanda != null ? documentoSobDemanda.emCache(fileName) : Optional.empty();
+            if (encontrado.isEmpty()) {
+                encontrado = store.localizar(fileName);
             }
-            ByteArrayResource resource = new ByteArrayResource(Files.readAllBytes(file));
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .contentLength(resource.contentLength())
-                    .body(resource);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+            if (encontrado.isEmpty() && documentoSobDemanda != null) {
+                encontrado = documentoSobDemanda.obterOuRenderizar(fileName);
+            }
+        } catch (IllegalArgumentException e) {
+            // Nome inválido (ex.: tentativa de sair do diretório)
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (encontrado.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        DocumentoArmazenado doc = encontrado.get();
+        long tamanho = doc.tamanho();
+        long modificado = doc.modificadoEm();
+        // Hash do conteúdo: mesmo ETag esteja o documento em memória, em disco ou compactado
+        String etag = "\"" + doc.hash() + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modificado);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (etagCorresponde(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fim = tamanho - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range com outro ETag: o cliente tem uma versão antiga, envia o arquivo inteiro
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> intervalos;
+            try {
+                intervalos = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                intervalos = List.of();
+            }
+            // Vários intervalos: responde com o arquivo inteiro (permitido pela RFC 9110)
+            if (intervalos.size() == 1) {
+                HttpRange intervalo = intervalos.get(0);
+                inicio = intervalo.getRangeStart(tamanho);
+                fim = intervalo.getRangeEnd(tamanho);
+                if (inicio >= tamanho || inicio > fim) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanho);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fim + "/" + tamanho);
+            }
+        }
+
+        long quantidade = fim - inicio + 1;
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentLengthLong(quantidade);
+        if (tamanho == 0) return;
+
+        if (doc.arquivo() == null) {
+            response.getOutputStream().write(doc.conteudo(), (int) inicio, (int) quantidade);
+            return;
+        }
+        Path file = doc.arquivo();
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTADO))) {
+            // Zero-copy: o Tomcat envia o trecho do arquivo pelo kernel após o retorno
+            request.setAttribute(SENDFILE_ARQUIVO, file.toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIM, fim + 1);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel saida = Channels.newChannel(response.getOutputStream());
+            long posicao = inicio;
+            long restante = quantidade;
+            while (restante > 0) {
+                long enviados = canal.transferTo(posicao, restante, saida);
+                if (enviados <= 0) break;
+                posicao += enviados;
+                restante -= enviados;
+            }
+        }
+    }
+
+    private static boolean isRestrito(String fileName) {
+        return DashboardRelatorioService.isRelatorioDashboard(fileName) || fileName.startsWith("NF_lote_");
+    }
+
+    private static boolean isGestor(HttpServletRequest request) {
+        return request.isUserInRole("GERENTE") || request.isUserInRole("ADMIN");
+    }
+
+    private static boolean etagCorresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidato : ifNoneMatch.split(",")) {
+            String c = candidato.trim();
+            if (c.equals("*") || c.equals(etag) || c.equals("W/" + etag)) return true;
         }
+        return false;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.biblioteca.controller;
+
+import com.biblioteca.model.LoteDocumento;
+import com.biblioteca.service.LoteNotasFiscaisService;
+import com.biblioteca.service.LoteNotasFiscaisService.Modo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+/**
+ * Fechamento do mês: dispara / acompanha a geração em lote das notas fiscais.
+ * Acesso restrito a GERENTE/ADMIN no SecurityConfig.
+ */
+@RestController
+@RequestMapping("/api/docs/lotes")
+public class LoteDocumentoController {
+
+    @Autowired private LoteNotasFiscaisService loteNotasFiscaisService;
+
+    // POST /api/docs/lotes/2025-11?modo=POR_DIA (repetir retoma do checkpoint)
+    @PostMapping("/{mes}")
+    public ResponseEntity<String> iniciar(@PathVariable YearMonth mes, @RequestParam(defaultValue = "POR_DIA") Modo modo) {
+        loteNotasFiscaisService.iniciar(mes, modo);
+        return ResponseEntity.accepted().body("Lote " + mes + " (" + modo + ") iniciado");
+    }
+
+    @GetMapping("/{mes}")
+    public ResponseEntity<LoteDocumento> situacao(@PathVariable YearMonth mes, @RequestParam(defaultValue = "POR_DIA") Modo modo) {
+        return loteNotasFiscaisService.situacao(mes, modo)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,21 +1,25 @@
 package com.biblioteca.controller;
 
 import com.biblioteca.service.CarrinhoService;
-import com.biblioteca.service.StripeWebhookService;
+import com.biblioteca.service.CheckoutMetricas;
+import com.biblioteca.service.WebhookInboxService;
 import com.biblioteca.service.UsuarioService;
 import com.biblioteca.service.AuditoriaService;
-import com.biblioteca.service.VendaService;
-import com.stripe.model.checkout.Session;
+import com.biblioteca.service.PaymentGateway;
 import com.biblioteca.model.Carrinho;
 import com.biblioteca.model.Usuario;
 import com.biblioteca.model.Venda;
 import com.biblioteca.service.PagamentoService;
 import com.biblioteca.repository.VendaRepository;
-import com.biblioteca.service.DocumentoFiscalService;
+import com.biblioteca.service.ConfirmacaoPagamentoService;
+import com.biblioteca.model.PagamentoProcessado;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.SignatureException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,28 +27,38 @@ import java.util.Map;
 @RequestMapping("/api/stripe")
 public class StripeController {
 
+    private static final Logger log = LoggerFactory.getLogger(StripeController.class);
+
     @Autowired private CarrinhoService carrinhoService;
     @Autowired private UsuarioService usuarioService;
-    @Autowired private StripeWebhookService webhookService;
+    @Autowired private WebhookInboxService webhookInboxService;
     @Autowired private VendaRepository vendaRepository;
     @Autowired(required = false) private AuditoriaService auditoriaService;
-    @Autowired private VendaService vendaService;
+    @Autowired private ConfirmacaoPagamentoService confirmacaoPagamentoService;
+    @Autowired private PaymentGateway paymentGateway;
 
     @PostMapping("/create-session/{login}")
     public ResponseEntity<Map<String,String>> createSession(@PathVariable String login, @RequestParam String paymentType){
         Usuario usuario = usuarioService.buscarUsuarioByLoginWeb(login).orElseThrow();
         Carrinho carrinho = carrinhoService.obterOuCriarCarrinho(usuario);
+        // Cobra pelo preço atual; o cliente é avisado na resposta se algo mudou
+        java.util.List<CarrinhoService.PrecoAlterado> alterados = carrinhoService.revalidarPrecos(carrinho);
         boolean aluguel = false; // endpoint default compra
-        Session session = PagamentoService.criarSessaoCheckout(carrinho,paymentType,usuario.getCpf(), aluguel);
+        PaymentGateway.SessaoPagamento session = PagamentoService.criarSessaoCheckout(carrinho,paymentType,usuario.getCpf(), aluguel);
         
         // Registrar a criação da venda na auditoria
         if (session != null) {
-            registrarCriacaoVendaNaAuditoria(session.getId(), usuario);
+            long inicio = CheckoutMetricas.iniciar();
+            registrarCriacaoVendaNaAuditoria(session.id(), usuario);
+            CheckoutMetricas.registrar(CheckoutMetricas.Etapa.AUDITORIA, inicio);
         }
         
         Map<String,String> resp = new HashMap<>();
-        resp.put("url", session.getUrl());
-        resp.put("id", session.getId());
+        resp.put("url", session.url());
+        resp.put("id", session.id());
+        if (!alterados.isEmpty()) {
+            resp.put("precosAtualizados", String.valueOf(alterados.size()));
+        }
         return ResponseEntity.ok(resp);
     }
 
@@ -59,44 +73,38 @@ public class StripeController {
                 }
             });
         } catch (Exception e) {
-            System.out.println("Erro ao registrar criação da venda na auditoria: " + e.getMessage());
+            log.error("Erro ao registrar criação da venda {} na auditoria", vendaId, e);
         }
     }
 
+    // Ack imediato: o evento é gravado na caixa de entrada e processado pelos workers
     @PostMapping("/webhook")
     public ResponseEntity<String> webhook(@RequestBody String payload, @RequestHeader("Stripe-Signature") String sig){
-        StripeWebhookService.handleWebhook(payload,sig);
+        try {
+            webhookInboxService.receber(payload, sig);
+        } catch (SignatureException e) {
+            return ResponseEntity.badRequest().body("invalid signature");
+        }
         return ResponseEntity.ok("received");
     }
 
     @GetMapping("/success")
     public org.springframework.web.servlet.view.RedirectView success(@RequestParam("session_id") String sessionId){
-        vendaRepository.findById(sessionId).ifPresent(v -> {
-            // Buscar o usuário para a auditoria
-            Usuario usuario = null;
-            if (v.getClienteCpf() != null) {
-                usuario = usuarioService.buscarUsuarioPorCpf(v.getClienteCpf()).orElse(null);
-            }
-            
-            // Usar o VendaService para atualizar com auditoria
-            vendaService.atualizarStatusVenda(sessionId, "PAGO", usuario);
-            
-            // IMPORTANTE: Limpar o carrinho do usuário após pagamento confirmado
-            if (usuario != null) {
-                try {
-                    Carrinho carrinho = carrinhoService.obterOuCriarCarrinho(usuario);
-                    carrinhoService.limparCarrinho(carrinho);
-                    System.out.println("✅ Carrinho limpo após pagamento confirmado para usuário: " + usuario.getLogin());
-                } catch (Exception e) {
-                    System.out.println("⚠️ Erro ao limpar carrinho: " + e.getMessage());
-                }
+        // Idempotente: recarregar a página ou o webhook chegando junto não repete os efeitos
+        long inicio = CheckoutMetricas.iniciar();
+        try {
+            // Boleto volta do checkout sem pagamento: a venda fica PENDENTE até o webhook
+            if (paymentGateway.pago(sessionId)) {
+                confirmacaoPagamentoService.confirmar(sessionId, PagamentoProcessado.ORIGEM_RETORNO, null);
+            } else {
+                log.info("Sessão {} ainda não paga no retorno; aguardando webhook", sessionId);
             }
-            
-            // Buscar a venda atualizada para gerar documentos
-            Venda vendaAtualizada = vendaRepository.findById(sessionId).orElse(v);
-            DocumentoFiscalService.gerarNotaFiscal(vendaAtualizada);
-            DocumentoFiscalService.gerarRecibo(vendaAtualizada);
-        });
+        } catch (Exception e) {
+            // O webhook confirma depois; a página de pedido mostra o status atual
+            log.warn("Erro ao confirmar pagamento {} no retorno; aguardando webhook", sessionId, e);
+        } finally {
+            CheckoutMetricas.registrar(CheckoutMetricas.Etapa.CONFIRMACAO_RETORNO, inicio);
+        }
         return new org.springframework.web.servlet.view.RedirectView("/pedido-confirmado?session_id=" + sessionId);
     }
 } 
\ No newline at end of file
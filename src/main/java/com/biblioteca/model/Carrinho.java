@@ -1,11 +1,16 @@
 package com.biblioteca.model;
 
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carrinhos")
+@Table(name = "carrinhos", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_carrinhos_cliente_ativo", columnNames = {"cliente_id", "ativo"})
+}, indexes = {
+    @Index(name = "idx_carrinhos_atualizado_em", columnList = "atualizado_em")
+})
 public class Carrinho {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,90 +24,167 @@ public class Carrinho {
     @JoinColumn(name = "carrinho_id")
     private List<LivroCarrinho> livros = new ArrayList<>();
 
+    // Total de compra
     @Column(nullable = false)
     private Double total;
 
+    @Column(name = "total_aluguel")
+    private Double totalAluguel;
+
     @Embedded
     private DadosCliente dadosCliente;
 
+    // Carrinho de compras do cliente (um por cliente no índice uk_carrinhos_cliente_ativo).
+    // Carrinhos de compras de fornecedor ficam com NULL e não entram na unicidade
+    @Column(name = "ativo")
+    private Boolean ativo = Boolean.TRUE;
+
+    // Última alteração; carrinhos parados além do TTL são removidos pelo CarrinhoAbandonoService
+    @Column(name = "atualizado_em")
+    private LocalDateTime atualizadoEm;
+
     public Carrinho() {}
 
+    @PrePersist
+    @PreUpdate
+    void marcarAtualizacao() {
+        atualizadoEm = LocalDateTime.now();
+    }
+
     public Carrinho(Long id, Usuario cliente) {
         this.id = id;
         this.cliente = cliente;
         this.total = 0.0;
+        this.totalAluguel = 0.0;
     }
 
     public void adicionarLivro(Livro livro) {
-        boolean livroExiste = false;
-        for (LivroCarrinho lc : livros) {
-            if (livro.getTitulo().equals(lc.getLivro().getTitulo())) {
-                livroExiste = true;
-                lc.setQuantidade(lc.getQuantidade() + 1);
-                break;
+        adicionarLivro(livro, 1);
+    }
+
+    public void adicionarLivro(Livro livro, int quantidade) {
+        garantirTotais();
+        LivroCarrinho existente = linhaDoLivro(livro);
+        if (existente != null) {
+            existente.setQuantidade(existente.getQuantidade() + quantidade);
+            somarAosTotais(existente, quantidade);
+            return;
+        }
+        // Cria uma cópia do livro para não afetar o original
+        Livro livroCopia = new Livro(livro.getTitulo());
+        livroCopia.setId(livro.getId());
+        livroCopia.setValor(livro.getValor());
+        adicionarLinha(new LivroCarrinho(livroCopia, quantidade));
+    }
+
+    /** Inclui uma linha já montada (ex.: carrinho com itens selecionados para checkout) */
+    public void adicionarLinha(LivroCarrinho linha) {
+        garantirTotais();
+        livros.add(linha);
+        somarAosTotais(linha, linha.getQuantidade());
+    }
+
+    public void removerLivro(String nomeLivro) {
+        garantirTotais();
+        var iterator = livros.iterator();
+        while (iterator.hasNext()) {
+            LivroCarrinho lc = iterator.next();
+            if (nomeLivro.equals(lc.getTitulo())) {
+                somarAosTotais(lc, -lc.getQuantidade());
+                iterator.remove();
             }
         }
-        if (!livroExiste) {
-            // Cria uma cópia do livro para não afetar o original
-            Livro livroCopia = new Livro(livro.getTitulo());
-            livroCopia.setId(livro.getId());
-            livroCopia.setValor(livro.getValor());
-            livros.add(new LivroCarrinho(livroCopia, 1));
+    }
+
+    public void removerLivro(String nomeLivro, int quantidade) {
+        for (LivroCarrinho lc : livros) {
+            if (nomeLivro.equals(lc.getTitulo())) {
+                removerQuantidade(lc, quantidade);
+                break; // Para depois de encontrar o livro
+            }
         }
     }
 
-    public void adicionarLivro(Livro livro, int quantidade) {
-        boolean livroExiste = false;
+    /** Remove unidades da linha do livro (por id, sem carregar o Livro) */
+    public void removerLivro(Long livroId, int quantidade) {
         for (LivroCarrinho lc : livros) {
-            if (livro.getTitulo().equals(lc.getLivro().getTitulo())) {
-                livroExiste = true;
-                lc.setQuantidade(lc.getQuantidade() + quantidade);
+            if (livroId != null && livroId.equals(lc.getLivroId())) {
+                removerQuantidade(lc, quantidade);
                 break;
             }
         }
-        if (!livroExiste) {
-            // Cria uma cópia do livro para não afetar o original
-            Livro livroCopia = new Livro(livro.getTitulo());
-            livroCopia.setId(livro.getId());
-            livroCopia.setValor(livro.getValor());
-            livros.add(new LivroCarrinho(livroCopia, quantidade));
+    }
+
+    private void removerQuantidade(LivroCarrinho lc, int quantidade) {
+        garantirTotais();
+        int removida = Math.min(quantidade, lc.getQuantidade());
+        lc.setQuantidade(lc.getQuantidade() - removida);
+        somarAosTotais(lc, -removida);
+        if (lc.getQuantidade() <= 0) {
+            livros.remove(lc);
         }
     }
 
-    public void removerLivro(String nomeLivro) {
-        livros.removeIf(lc -> nomeLivro.equals(lc.getLivro().getTitulo()));
+    /** Linha do livro (por id; por título se o livro ainda não tem id) */
+    public LivroCarrinho linhaDoLivro(Livro livro) {
+        for (LivroCarrinho lc : livros) {
+            if (livro.getId() != null ? livro.getId().equals(lc.getLivroId()) : livro.getTitulo().equals(lc.getTitulo())) {
+                return lc;
+            }
+        }
+        return null;
     }
 
-    public void removerLivro(String nomeLivro, int quantidade) {
-        // Usar iterator para poder remover itens com segurança
-        var iterator = livros.iterator();
-        while (iterator.hasNext()) {
-            LivroCarrinho lc = iterator.next();
-            if (nomeLivro.equals(lc.getLivro().getTitulo())) {
-                lc.setQuantidade(lc.getQuantidade() - quantidade);
-                if (lc.getQuantidade() <= 0) {
-                    iterator.remove(); // Remove com segurança usando iterator
-                }
-                break; // Para depois de encontrar o livro
+    /** Quantidade total do livro nas linhas do carrinho */
+    public int quantidadeDoLivro(Long livroId) {
+        int quantidade = 0;
+        for (LivroCarrinho lc : livros) {
+            if (livroId != null && livroId.equals(lc.getLivroId())) {
+                quantidade += lc.getQuantidade();
             }
         }
+        return quantidade;
     }
 
+    // ========== TOTAIS ==========
+
+    // Totais de compra e aluguel mantidos a cada alteração, com os preços copiados nas linhas.
+    // Quem altera linhas chama garantirTotais() antes de mexer nelas
+    private void somarAosTotais(LivroCarrinho linha, int quantidade) {
+        total += linha.getValorUnitario() * quantidade;
+        totalAluguel += linha.getValorAluguel() * quantidade;
+    }
+
+    // Carrinho gravado antes do total de aluguel (ou com total nulo): calcula uma vez
+    private void garantirTotais() {
+        if (total == null || totalAluguel == null) {
+            recalcularTotais();
+        }
+    }
+
+    /** Recalcula os dois totais percorrendo as linhas (carga antiga ou preços revalidados) */
+    public void recalcularTotais() {
+        double compra = 0, aluguel = 0;
+        for (LivroCarrinho lc : livros) {
+            compra += lc.calcularValor(false);
+            aluguel += lc.calcularValor(true);
+        }
+        total = compra;
+        totalAluguel = aluguel;
+    }
+
+    /** Total de compra (mantido a cada alteração) */
     public double calcularTotal() {
-        total = livros.stream()
-                     .mapToDouble(LivroCarrinho::calcularValor)
-                     .sum();
+        garantirTotais();
         return total;
     }
 
     /**
-     * Calcula total considerando aluguel (10%).
+     * Total considerando aluguel (10%).
      */
     public double calcularTotal(boolean aluguel) {
-        total = livros.stream()
-                     .mapToDouble(lc -> lc.calcularValor(aluguel))
-                     .sum();
-        return total;
+        garantirTotais();
+        return aluguel ? totalAluguel : total;
     }
 
     // Manual getters and setters
@@ -123,6 +205,7 @@ public class Carrinho {
     }
     public void setLivros(List<LivroCarrinho> livros) {
         this.livros = livros;
+        recalcularTotais();
     }
     public Double getTotal() {
         return total;
@@ -130,10 +213,28 @@ public class Carrinho {
     public void setTotal(Double total) {
         this.total = total;
     }
+    public Double getTotalAluguel() {
+        return totalAluguel;
+    }
+    public void setTotalAluguel(Double totalAluguel) {
+        this.totalAluguel = totalAluguel;
+    }
     public DadosCliente getDadosCliente() {
         return dadosCliente;
     }
     public void setDadosCliente(DadosCliente dadosCliente) {
         this.dadosCliente = dadosCliente;
     }
+    public Boolean getAtivo() {
+        return ativo;
+    }
+    public void setAtivo(Boolean ativo) {
+        this.ativo = ativo;
+    }
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
 }
\ No newline at end of file
@@ -40,8 +40,8 @@ public class Compra {
         System.out.println("Carrinho: ");
         System.out.println("    --");
         for (LivroCarrinho livroCarrinho : carrinho.getLivros()) {
-            System.out.println("    Livro: " + livroCarrinho.getLivro().getTitulo() + 
-                             " (ID: " + livroCarrinho.getLivro().getId() + ")");
+            System.out.println("    Livro: " + livroCarrinho.getTitulo() + 
+                             " (ID: " + livroCarrinho.getLivroId() + ")");
             System.out.println("    Quantidade: " + livroCarrinho.getQuantidade());
             System.out.println("    --");
         }
@@ -0,0 +1,111 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Job persistente de geração dos documentos fiscais (NF + recibo) de uma venda.
+ * A chave é o próprio id da venda, o que garante no máximo um job por venda.
+ */
+@Entity
+@Table(name = "documento_jobs", indexes = {
+    @Index(name = "idx_documento_jobs_status_proxima", columnList = "status, proxima_tentativa")
+})
+public class DocumentoJob {
+
+    public static final String STATUS_PENDENTE = "PENDENTE";
+    public static final String STATUS_PROCESSANDO = "PROCESSANDO";
+    public static final String STATUS_CONCLUIDO = "CONCLUIDO";
+    public static final String STATUS_FALHOU = "FALHOU";
+
+    @Id
+    @Column(name = "venda_id")
+    private String vendaId;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(nullable = false)
+    private int tentativas;
+
+    @Column(name = "proxima_tentativa", nullable = false)
+    private LocalDateTime proximaTentativa;
+
+    @Column(name = "ultimo_erro", length = 1000)
+    private String ultimoErro;
+
+    @Column(name = "criado_em", nullable = false)
+    private LocalDateTime criadoEm;
+
+    @Column(name = "atualizado_em")
+    private LocalDateTime atualizadoEm;
+
+    public DocumentoJob() {}
+
+    // Getters e Setters
+    public String getVendaId() {
+        return vendaId;
+    }
+
+    public void setVendaId(String vendaId) {
+        this.vendaId = vendaId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTentativas() {
+        return tentativas;
+    }
+
+    public void setTentativas(int tentativas) {
+        this.tentativas = tentativas;
+    }
+
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+
+    public void setProximaTentativa(LocalDateTime proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+
+    public LocalDateTime getCriadoEm() {
+        return criadoEm;
+    }
+
+    public void setCriadoEm(LocalDateTime criadoEm) {
+        this.criadoEm = criadoEm;
+    }
+
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentoJob{" +
+                "vendaId='" + vendaId + '\'' +
+                ", status='" + status + '\'' +
+                ", tentativas=" + tentativas +
+                ", proximaTentativa=" + proximaTentativa +
+                '}';
+    }
+}
@@ -5,7 +5,15 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "emprestimos")
+@Table(name = "emprestimos", indexes = {
+    @Index(name = "idx_emprestimos_status", columnList = "status, id"),
+    @Index(name = "idx_emprestimos_data_emprestimo", columnList = "data_emprestimo"),
+    @Index(name = "idx_emprestimos_atraso", columnList = "devolvido, data_prevista"),
+    @Index(name = "idx_emprestimos_data_devolucao", columnList = "data_devolucao"),
+    @Index(name = "idx_emprestimos_data_prevista", columnList = "data_prevista"),
+    // Checagem de multas na UPDATE condicional de renovação
+    @Index(name = "idx_emprestimos_usuario_devolvido", columnList = "usuario_id, devolvido, data_prevista")
+})
 public class Emprestimo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,12 +27,13 @@ public class Emprestimo {
     @JoinColumn(name = "livro_id", nullable = false)
     private Livro livro;
 
-    @Column(nullable = false)
+    @Column(name = "data_emprestimo", nullable = false)
     private LocalDate dataEmprestimo;
 
-    @Column(nullable = false)
+    @Column(name = "data_prevista", nullable = false)
     private LocalDate dataPrevista;
 
+    @Column(name = "data_devolucao")
     private LocalDate dataDevolucao;
 
     @Column(nullable = false)
@@ -31,6 +31,14 @@ public class ItemVenda {
         this.valorTotal = this.valorUnitario * quantidade;
     }
 
+    /** Item com preço já conhecido (linha do carrinho), sem ler o valor do livro */
+    public ItemVenda(Livro livro, Integer quantidade, Double valorUnitario) {
+        this.livro = livro;
+        this.quantidade = quantidade;
+        this.valorUnitario = valorUnitario;
+        this.valorTotal = valorUnitario * quantidade;
+    }
+
     // Getters e Setters
     public Long getId() {
         return id;
@@ -2,8 +2,13 @@ package com.biblioteca.model;
 
 import jakarta.persistence.*;
 
+// (titulo, quantidade_estoque) atende o prefixo do título e o filtro de estoque do seletor
+// lazy de livros: o range e o filtro saem do índice e só as linhas da página são lidas
+// da tabela (a consulta devolve a entidade inteira); dispensa um índice só de titulo
 @Entity
-@Table(name = "livros")
+@Table(name = "livros", indexes = {
+    @Index(name = "idx_livros_titulo_estoque", columnList = "titulo, quantidade_estoque")
+})
 public class Livro {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
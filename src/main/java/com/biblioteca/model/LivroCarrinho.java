@@ -2,37 +2,73 @@ package com.biblioteca.model;
 
 import jakarta.persistence.*;
 
+/**
+ * Linha do carrinho. Título e preços são copiados do livro quando a linha é criada
+ * (e atualizados só na revalidação do checkout), então exibir o carrinho e calcular
+ * totais não carrega o Livro.
+ */
 @Entity
 @Table(name = "livros_carrinho")
 public class LivroCarrinho {
+
+    /** Aluguel custa 10% do valor do livro */
+    public static final double TAXA_ALUGUEL = 0.10;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "livro_id", nullable = false)
     private Livro livro;
 
+    @Column(name = "livro_id", insertable = false, updatable = false)
+    private Long livroId;
+
     @Column(nullable = false)
     private int quantidade;
 
+    // Cópia do livro no momento da inclusão
+    @Column(name = "titulo")
+    private String titulo;
+
+    @Column(name = "valor_unitario")
+    private Double valorUnitario;
+
+    @Column(name = "valor_aluguel")
+    private Double valorAluguel;
+
     public LivroCarrinho() {}
 
     public LivroCarrinho(Livro livro, int quantidade) {
+        this(livro, quantidade, livro.getTitulo(), livro.getValor(), livro.getValor() * TAXA_ALUGUEL);
+    }
+
+    /** Linha com preços já conhecidos; {@code livro} pode ser só uma referência (proxy) */
+    public LivroCarrinho(Livro livro, int quantidade, String titulo, double valorUnitario, double valorAluguel) {
         this.livro = livro;
+        this.livroId = livro.getId();
         this.quantidade = quantidade;
+        this.titulo = titulo;
+        this.valorUnitario = valorUnitario;
+        this.valorAluguel = valorAluguel;
     }
 
     public double calcularValor() {
-        return livro.getValor() * quantidade;
+        return getValorUnitario() * quantidade;
     }
 
     /**
      * Calcula o valor considerando se é aluguel (10% do valor do livro).
      */
     public double calcularValor(boolean aluguel){
-        double base = calcularValor();
-        return aluguel ? base * 0.10 : base;
+        return (aluguel ? getValorAluguel() : getValorUnitario()) * quantidade;
+    }
+
+    /** Atualiza os preços copiados (revalidação no checkout) */
+    public void atualizarPrecos(double valorUnitario) {
+        this.valorUnitario = valorUnitario;
+        this.valorAluguel = valorUnitario * TAXA_ALUGUEL;
     }
 
     // Getters and setters
@@ -47,6 +83,10 @@ public class LivroCarrinho {
     }
     public void setLivro(Livro livro) {
         this.livro = livro;
+        this.livroId = livro != null ? livro.getId() : null;
+    }
+    public Long getLivroId() {
+        return livroId != null ? livroId : (livro != null ? livro.getId() : null);
     }
     public int getQuantidade() {
         return quantidade;
@@ -54,4 +94,14 @@ public class LivroCarrinho {
     public void setQuantidade(int quantidade) {
         this.quantidade = quantidade;
     }
-}
\ No newline at end of file
+    // Linhas gravadas antes da cópia de preços caem no livro
+    public String getTitulo() {
+        return titulo != null ? titulo : livro.getTitulo();
+    }
+    public double getValorUnitario() {
+        return valorUnitario != null ? valorUnitario : livro.getValor();
+    }
+    public double getValorAluguel() {
+        return valorAluguel != null ? valorAluguel : getValorUnitario() * TAXA_ALUGUEL;
+    }
+}
@@ -0,0 +1,136 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint de um lote de geração de notas fiscais (um por mês e modo).
+ * Guarda a última venda processada para retomar o lote após interrupção.
+ */
+@Entity
+@Table(name = "lote_documentos")
+public class LoteDocumento {
+
+    public static final String STATUS_EM_ANDAMENTO = "EM_ANDAMENTO";
+    public static final String STATUS_CONCLUIDO = "CONCLUIDO";
+    public static final String STATUS_FALHOU = "FALHOU";
+
+    @Id
+    private String id; // ex.: NF-2025-11-POR_DIA
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "ultima_data_venda")
+    private LocalDateTime ultimaDataVenda;
+
+    @Column(name = "ultima_venda_id")
+    private String ultimaVendaId;
+
+    @Column(nullable = false)
+    private long processados;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Column(name = "iniciado_em", nullable = false)
+    private LocalDateTime iniciadoEm;
+
+    @Column(name = "atualizado_em")
+    private LocalDateTime atualizadoEm;
+
+    @Column(name = "docs_por_segundo")
+    private Double docsPorSegundo;
+
+    public LoteDocumento() {}
+
+    public LoteDocumento(String id) {
+        this.id = id;
+        this.status = STATUS_EM_ANDAMENTO;
+        this.iniciadoEm = LocalDateTime.now();
+    }
+
+    // Getters e Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getUltimaDataVenda() {
+        return ultimaDataVenda;
+    }
+
+    public void setUltimaDataVenda(LocalDateTime ultimaDataVenda) {
+        this.ultimaDataVenda = ultimaDataVenda;
+    }
+
+    public String getUltimaVendaId() {
+        return ultimaVendaId;
+    }
+
+    public void setUltimaVendaId(String ultimaVendaId) {
+        this.ultimaVendaId = ultimaVendaId;
+    }
+
+    public long getProcessados() {
+        return processados;
+    }
+
+    public void setProcessados(long processados) {
+        this.processados = processados;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public LocalDateTime getIniciadoEm() {
+        return iniciadoEm;
+    }
+
+    public void setIniciadoEm(LocalDateTime iniciadoEm) {
+        this.iniciadoEm = iniciadoEm;
+    }
+
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
+
+    public Double getDocsPorSegundo() {
+        return docsPorSegundo;
+    }
+
+    public void setDocsPorSegundo(Double docsPorSegundo) {
+        this.docsPorSegundo = docsPorSegundo;
+    }
+
+    @Override
+    public String toString() {
+        return "LoteDocumento{" +
+                "id='" + id + '\'' +
+                ", status='" + status + '\'' +
+                ", processados=" + processados +
+                ", total=" + total +
+                ", docsPorSegundo=" + docsPorSegundo +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Confirmação de pagamento já processada, uma por sessão do Stripe.
+ * A chave é o id da sessão (= id da venda): o retorno do checkout, o webhook
+ * e as repetições do navegador disputam a mesma linha e só um deles vence.
+ */
+@Entity
+@Table(name = "pagamentos_processados")
+public class PagamentoProcessado {
+
+    public static final String ORIGEM_RETORNO = "RETORNO";
+    public static final String ORIGEM_WEBHOOK = "WEBHOOK";
+
+    @Id
+    @Column(name = "session_id")
+    private String sessionId;
+
+    @Column(nullable = false)
+    private String origem;
+
+    @Column(name = "evento_id")
+    private String eventoId; // id do evento Stripe, quando veio pelo webhook
+
+    @Column(name = "processado_em", nullable = false)
+    private LocalDateTime processadoEm;
+
+    public PagamentoProcessado() {}
+
+    // Getters e Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getOrigem() {
+        return origem;
+    }
+
+    public void setOrigem(String origem) {
+        this.origem = origem;
+    }
+
+    public String getEventoId() {
+        return eventoId;
+    }
+
+    public void setEventoId(String eventoId) {
+        this.eventoId = eventoId;
+    }
+
+    public LocalDateTime getProcessadoEm() {
+        return processadoEm;
+    }
+
+    public void setProcessadoEm(LocalDateTime processadoEm) {
+        this.processadoEm = processadoEm;
+    }
+
+    @Override
+    public String toString() {
+        return "PagamentoProcessado{" +
+                "sessionId='" + sessionId + '\'' +
+                ", origem='" + origem + '\'' +
+                ", processadoEm=" + processadoEm +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Reserva (fila de espera) de um título sem exemplares disponíveis.
+ * Enquanto houver reservas AGUARDANDO para um livro, os empréstimos
+ * ativos desse livro não podem ser renovados.
+ */
+@Entity
+@Table(name = "reservas", indexes = {
+    @Index(name = "idx_reservas_livro_status", columnList = "livro_id, status")
+})
+public class Reserva {
+
+    public static final String STATUS_AGUARDANDO = "AGUARDANDO";
+    public static final String STATUS_ATENDIDA = "ATENDIDA";
+    public static final String STATUS_CANCELADA = "CANCELADA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "usuario_id", nullable = false)
+    private Usuario usuario;
+
+    @ManyToOne
+    @JoinColumn(name = "livro_id", nullable = false)
+    private Livro livro;
+
+    @Column(name = "data_reserva", nullable = false)
+    private LocalDateTime dataReserva;
+
+    @Column(nullable = false)
+    private String status;
+
+    public Reserva() {}
+
+    public Reserva(Usuario usuario, Livro livro) {
+        this.usuario = usuario;
+        this.livro = livro;
+        this.dataReserva = LocalDateTime.now();
+        this.status = STATUS_AGUARDANDO;
+    }
+
+    // Getters e Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public void setUsuario(Usuario usuario) {
+        this.usuario = usuario;
+    }
+
+    public Livro getLivro() {
+        return livro;
+    }
+
+    public void setLivro(Livro livro) {
+        this.livro = livro;
+    }
+
+    public LocalDateTime getDataReserva() {
+        return dataReserva;
+    }
+
+    public void setDataReserva(LocalDateTime dataReserva) {
+        this.dataReserva = dataReserva;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "Reserva{" +
+                "id=" + id +
+                ", livro=" + (livro != null ? livro.getId() : null) +
+                ", usuario=" + (usuario != null ? usuario.getId() : null) +
+                ", dataReserva=" + dataReserva +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,85 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Reserva temporária de exemplares para uma linha de carrinho.
+ * Uma linha por (cliente, livro); expira em {@code expiraEm} se o carrinho não for finalizado.
+ */
+@Entity
+@Table(name = "reservas_estoque",
+       uniqueConstraints = @UniqueConstraint(name = "uk_reserva_estoque_cliente_livro", columnNames = {"cliente_id", "livro_id"}),
+       indexes = @Index(name = "idx_reservas_estoque_expira", columnList = "expira_em"))
+public class ReservaEstoque {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cliente_id", nullable = false)
+    private Long clienteId;
+
+    @Column(name = "livro_id", nullable = false)
+    private Long livroId;
+
+    @Column(nullable = false)
+    private int quantidade;
+
+    @Column(name = "expira_em", nullable = false)
+    private LocalDateTime expiraEm;
+
+    public ReservaEstoque() {}
+
+    // Getters e Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getClienteId() {
+        return clienteId;
+    }
+
+    public void setClienteId(Long clienteId) {
+        this.clienteId = clienteId;
+    }
+
+    public Long getLivroId() {
+        return livroId;
+    }
+
+    public void setLivroId(Long livroId) {
+        this.livroId = livroId;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public void setQuantidade(int quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    public LocalDateTime getExpiraEm() {
+        return expiraEm;
+    }
+
+    public void setExpiraEm(LocalDateTime expiraEm) {
+        this.expiraEm = expiraEm;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservaEstoque{" +
+                "id=" + id +
+                ", clienteId=" + clienteId +
+                ", livroId=" + livroId +
+                ", quantidade=" + quantidade +
+                ", expiraEm=" + expiraEm +
+                '}';
+    }
+}
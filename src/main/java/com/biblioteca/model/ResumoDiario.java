@@ -0,0 +1,188 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Consolidado operacional de um dia (empréstimos, multas, vendas, estoque).
+ * Preenchido uma vez por dia; os relatórios de dashboard leem só daqui.
+ * Ativos, atrasados e estoque baixo são a foto do momento da consolidação.
+ */
+@Entity
+@Table(name = "resumo_diario")
+public class ResumoDiario {
+
+    @Id
+    private LocalDate dia;
+
+    @Column(name = "emprestimos_novos", nullable = false)
+    private long emprestimosNovos;
+
+    @Column(nullable = false)
+    private long devolucoes;
+
+    @Column(name = "emprestimos_ativos", nullable = false)
+    private long emprestimosAtivos;
+
+    @Column(name = "emprestimos_atrasados", nullable = false)
+    private long emprestimosAtrasados;
+
+    @Column(name = "multas_valor", nullable = false)
+    private double multasValor; // multas das devoluções do dia
+
+    @Column(name = "vendas_qtd", nullable = false)
+    private long vendasQtd;
+
+    @Column(name = "vendas_valor", nullable = false)
+    private double vendasValor;
+
+    @Column(name = "vendas_cartao", nullable = false)
+    private long vendasCartao;
+
+    @Column(name = "valor_cartao", nullable = false)
+    private double valorCartao;
+
+    @Column(name = "vendas_boleto", nullable = false)
+    private long vendasBoleto;
+
+    @Column(name = "valor_boleto", nullable = false)
+    private double valorBoleto;
+
+    @Column(name = "livros_estoque_baixo", nullable = false)
+    private long livrosEstoqueBaixo;
+
+    @Column(name = "consolidado_em", nullable = false)
+    private LocalDateTime consolidadoEm;
+
+    public ResumoDiario() {}
+
+    public ResumoDiario(LocalDate dia) {
+        this.dia = dia;
+        this.consolidadoEm = LocalDateTime.now();
+    }
+
+    // Getters e Setters
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public void setDia(LocalDate dia) {
+        this.dia = dia;
+    }
+
+    public long getEmprestimosNovos() {
+        return emprestimosNovos;
+    }
+
+    public void setEmprestimosNovos(long emprestimosNovos) {
+        this.emprestimosNovos = emprestimosNovos;
+    }
+
+    public long getDevolucoes() {
+        return devolucoes;
+    }
+
+    public void setDevolucoes(long devolucoes) {
+        this.devolucoes = devolucoes;
+    }
+
+    public long getEmprestimosAtivos() {
+        return emprestimosAtivos;
+    }
+
+    public void setEmprestimosAtivos(long emprestimosAtivos) {
+        this.emprestimosAtivos = emprestimosAtivos;
+    }
+
+    public long getEmprestimosAtrasados() {
+        return emprestimosAtrasados;
+    }
+
+    public void setEmprestimosAtrasados(long emprestimosAtrasados) {
+        this.emprestimosAtrasados = emprestimosAtrasados;
+    }
+
+    public double getMultasValor() {
+        return multasValor;
+    }
+
+    public void setMultasValor(double multasValor) {
+        this.multasValor = multasValor;
+    }
+
+    public long getVendasQtd() {
+        return vendasQtd;
+    }
+
+    public void setVendasQtd(long vendasQtd) {
+        this.vendasQtd = vendasQtd;
+    }
+
+    public double getVendasValor() {
+        return vendasValor;
+    }
+
+    public void setVendasValor(double vendasValor) {
+        this.vendasValor = vendasValor;
+    }
+
+    public long getVendasCartao() {
+        return vendasCartao;
+    }
+
+    public void setVendasCartao(long vendasCartao) {
+        this.vendasCartao = vendasCartao;
+    }
+
+    public double getValorCartao() {
+        return valorCartao;
+    }
+
+    public void setValorCartao(double valorCartao) {
+        this.valorCartao = valorCartao;
+    }
+
+    public long getVendasBoleto() {
+        return vendasBoleto;
+    }
+
+    public void setVendasBoleto(long vendasBoleto) {
+        this.vendasBoleto = vendasBoleto;
+    }
+
+    public double getValorBoleto() {
+        return valorBoleto;
+    }
+
+    public void setValorBoleto(double valorBoleto) {
+        this.valorBoleto = valorBoleto;
+    }
+
+    public long getLivrosEstoqueBaixo() {
+        return livrosEstoqueBaixo;
+    }
+
+    public void setLivrosEstoqueBaixo(long livrosEstoqueBaixo) {
+        this.livrosEstoqueBaixo = livrosEstoqueBaixo;
+    }
+
+    public LocalDateTime getConsolidadoEm() {
+        return consolidadoEm;
+    }
+
+    public void setConsolidadoEm(LocalDateTime consolidadoEm) {
+        this.consolidadoEm = consolidadoEm;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumoDiario{" +
+                "dia=" + dia +
+                ", emprestimosNovos=" + emprestimosNovos +
+                ", emprestimosAtrasados=" + emprestimosAtrasados +
+                ", vendasQtd=" + vendasQtd +
+                ", vendasValor=" + vendasValor +
+                '}';
+    }
+}
@@ -7,7 +7,10 @@ import java.util.List;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
-@Table(name = "vendas")
+@Table(name = "vendas", indexes = {
+    // Varredura keyset das vendas pagas do período em ordem (data, id) nos lotes mensais
+    @Index(name = "idx_vendas_status_data_id", columnList = "status, data_venda, id")
+})
 public class Venda {
     @Id
     private String id; // Stripe session ID
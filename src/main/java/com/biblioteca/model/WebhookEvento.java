@@ -0,0 +1,159 @@
+package com.biblioteca.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Evento de webhook recebido e ainda não (ou já) processado — a "caixa de entrada".
+ * O id do evento é único: reenvios do gateway não geram uma segunda linha.
+ * A sequência define a ordem de processamento dentro de uma mesma sessão.
+ */
+@Entity
+@Table(name = "webhook_inbox", indexes = {
+    @Index(name = "idx_webhook_inbox_status_proxima", columnList = "status, proxima_tentativa"),
+    @Index(name = "idx_webhook_inbox_sessao", columnList = "session_id, seq")
+})
+public class WebhookEvento {
+
+    public static final String STATUS_PENDENTE = "PENDENTE";
+    public static final String STATUS_PROCESSANDO = "PROCESSANDO";
+    public static final String STATUS_CONCLUIDO = "CONCLUIDO";
+    public static final String STATUS_MORTO = "MORTO"; // esgotou as tentativas (dead letter)
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(name = "evento_id", nullable = false, unique = true)
+    private String eventoId;
+
+    @Column(name = "session_id")
+    private String sessionId;
+
+    @Column(nullable = false)
+    private String tipo;
+
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(nullable = false)
+    private int tentativas;
+
+    @Column(name = "proxima_tentativa", nullable = false)
+    private LocalDateTime proximaTentativa;
+
+    @Column(name = "ultimo_erro", length = 1000)
+    private String ultimoErro;
+
+    @Column(name = "recebido_em", nullable = false)
+    private LocalDateTime recebidoEm;
+
+    @Column(name = "atualizado_em")
+    private LocalDateTime atualizadoEm;
+
+    public WebhookEvento() {}
+
+    // Getters e Setters
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getEventoId() {
+        return eventoId;
+    }
+
+    public void setEventoId(String eventoId) {
+        this.eventoId = eventoId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTentativas() {
+        return tentativas;
+    }
+
+    public void setTentativas(int tentativas) {
+        this.tentativas = tentativas;
+    }
+
+    public LocalDateTime getProximaTentativa() {
+        return proximaTentativa;
+    }
+
+    public void setProximaTentativa(LocalDateTime proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+
+    public void setUltimoErro(String ultimoErro) {
+        this.ultimoErro = ultimoErro;
+    }
+
+    public LocalDateTime getRecebidoEm() {
+        return recebidoEm;
+    }
+
+    public void setRecebidoEm(LocalDateTime recebidoEm) {
+        this.recebidoEm = recebidoEm;
+    }
+
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
+
+    @Override
+    public String toString() {
+        return "WebhookEvento{" +
+                "seq=" + seq +
+                ", eventoId='" + eventoId + '\'' +
+                ", tipo='" + tipo + '\'' +
+                ", status='" + status + '\'' +
+                ", tentativas=" + tentativas +
+                '}';
+    }
+}
@@ -2,9 +2,18 @@ package com.biblioteca.repository;
 
 import com.biblioteca.model.Carrinho;
 import com.biblioteca.model.Usuario;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,5 +21,70 @@ import java.util.Optional;
  */
 @Repository
 public interface CarrinhoRepository extends JpaRepository<Carrinho, Long> {
-    Optional<Carrinho> findByCliente(Usuario cliente);
+    // Carrinho de compras do cliente (carrinhos de compras de fornecedor ficam de fora)
+    @Query("SELECT c FROM Carrinho c WHERE c.cliente = :cliente AND c.ativo = true")
+    Optional<Carrinho> findByCliente(@Param("cliente") Usuario cliente);
+
+    // Cria o carrinho do cliente se ainda não existe; duplicado no índice único uk_carrinhos_cliente_ativo é ignorado (0)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO carrinhos (cliente_id, ativo, total, total_aluguel, nome, cpf, email, endereco, atualizado_em) " +
+                   "VALUES (:clienteId, 1, 0, 0, :nome, :cpf, :email, :endereco, :agora)", nativeQuery = true)
+    int insertIfAbsent(@Param("clienteId") Long clienteId, @Param("nome") String nome, @Param("cpf") String cpf,
+                       @Param("email") String email, @Param("endereco") String endereco,
+                       @Param("agora") LocalDateTime agora);
+
+    // Leitura com lock: enxerga o carrinho criado por outra transação depois do snapshot desta
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Carrinho c WHERE c.cliente.id = :clienteId AND c.ativo = true")
+    Optional<Carrinho> findByClienteIdForUpdate(@Param("clienteId") Long clienteId);
+
+    // Preços da linha atualizados na revalidação do checkout
+    @Modifying
+    @Query("UPDATE LivroCarrinho lc SET lc.valorUnitario = :valorUnitario, lc.valorAluguel = :valorAluguel WHERE lc.id = :id")
+    int updateLinePrices(@Param("id") Long id, @Param("valorUnitario") double valorUnitario,
+                         @Param("valorAluguel") double valorAluguel);
+
+    // Linhas anteriores à cópia de preços (schema via ddl-auto) recebem o preço atual do livro
+    @Modifying
+    @Query(value = "UPDATE livros_carrinho lc JOIN livros l ON l.id = lc.livro_id " +
+                   "SET lc.titulo = l.titulo, lc.valor_unitario = l.valor, lc.valor_aluguel = l.valor * 0.10 " +
+                   "WHERE lc.valor_unitario IS NULL", nativeQuery = true)
+    int fillMissingLinePrices();
+
+    // Carrinhos anteriores à coluna ativo (schema via ddl-auto): os de compras de fornecedor ficam NULL
+    @Modifying
+    @Query(value = "UPDATE carrinhos c SET c.ativo = 1 WHERE c.ativo IS NULL " +
+                   "AND NOT EXISTS (SELECT 1 FROM compras co WHERE co.carrinho_id = c.id)", nativeQuery = true)
+    int fillMissingActive();
+
+    // Carrinhos de compras duplicados do mesmo cliente, exceto o alterado por último (empate: maior id)
+    @Query(value = "SELECT DISTINCT c.id FROM carrinhos c JOIN carrinhos o ON o.cliente_id = c.cliente_id AND o.ativo = 1 " +
+                   "AND (COALESCE(o.atualizado_em, '1970-01-01') > COALESCE(c.atualizado_em, '1970-01-01') " +
+                   "OR (COALESCE(o.atualizado_em, '1970-01-01') = COALESCE(c.atualizado_em, '1970-01-01') AND o.id > c.id)) " +
+                   "WHERE c.ativo = 1", nativeQuery = true)
+    List<Long> findDuplicateActiveIds();
+
+    // Carrinhos anteriores à coluna atualizado_em (schema via ddl-auto) passam a contar o TTL a partir de agora
+    @Modifying
+    @Query("UPDATE Carrinho c SET c.atualizadoEm = :agora WHERE c.atualizadoEm IS NULL")
+    int fillMissingUpdatedAt(@Param("agora") LocalDateTime agora);
+
+    // Carrinhos parados desde antes do limite (id, cliente_id), mais antigos primeiro; usa idx_carrinhos_atualizado_em.
+    // Carrinhos de compras de fornecedor não entram
+    @Query("SELECT c.id, c.cliente.id FROM Carrinho c WHERE c.atualizadoEm < :limite " +
+           "AND NOT EXISTS (SELECT 1 FROM Compra co WHERE co.carrinho = c) ORDER BY c.atualizadoEm")
+    List<Object[]> findIdleBefore(@Param("limite") LocalDateTime limite, Pageable pageable);
+
+    // Bloqueia os que continuam parados (quem foi editado desde a leitura fica de fora)
+    @Query(value = "SELECT id FROM carrinhos WHERE id IN (:ids) AND atualizado_em < :limite FOR UPDATE",
+           nativeQuery = true)
+    List<Long> lockIdle(@Param("ids") Collection<Long> ids, @Param("limite") LocalDateTime limite);
+
+    @Modifying
+    @Query(value = "DELETE FROM livros_carrinho WHERE carrinho_id IN (:ids)", nativeQuery = true)
+    int deleteLinesByCarrinhoIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM carrinhos WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
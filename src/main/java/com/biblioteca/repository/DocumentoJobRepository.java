@@ -0,0 +1,57 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.DocumentoJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository Spring Data JPA para a fila de documentos fiscais.
+ */
+@Repository
+public interface DocumentoJobRepository extends JpaRepository<DocumentoJob, String> {
+
+    // Enfileira uma vez por venda: se já existir job (em qualquer status) nada muda
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO documento_jobs (venda_id, status, tentativas, proxima_tentativa, criado_em) " +
+                   "VALUES (:vendaId, 'PENDENTE', 0, :agora, :agora)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("vendaId") String vendaId, @Param("agora") LocalDateTime agora);
+
+    // Jobs prontos para execução, mais antigos primeiro
+    @Query("SELECT j.vendaId FROM DocumentoJob j WHERE j.status = 'PENDENTE' AND j.proximaTentativa <= :agora " +
+           "ORDER BY j.proximaTentativa")
+    List<String> findDueIds(@Param("agora") LocalDateTime agora, Pageable pageable);
+
+    @Query("SELECT COUNT(j) FROM DocumentoJob j WHERE j.status = 'PENDENTE'")
+    long countPending();
+
+    // Reivindica o job para um worker (só um consegue)
+    @Modifying
+    @Query("UPDATE DocumentoJob j SET j.status = 'PROCESSANDO', j.tentativas = j.tentativas + 1, j.atualizadoEm = :agora " +
+           "WHERE j.vendaId = :vendaId AND j.status = 'PENDENTE'")
+    int claim(@Param("vendaId") String vendaId, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE DocumentoJob j SET j.status = 'CONCLUIDO', j.ultimoErro = NULL, j.atualizadoEm = :agora " +
+           "WHERE j.vendaId = :vendaId")
+    int markDone(@Param("vendaId") String vendaId, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE DocumentoJob j SET j.status = :status, j.proximaTentativa = :proxima, j.ultimoErro = :erro, " +
+           "j.atualizadoEm = :agora WHERE j.vendaId = :vendaId")
+    int markFailed(@Param("vendaId") String vendaId, @Param("status") String status,
+                   @Param("proxima") LocalDateTime proxima, @Param("erro") String erro,
+                   @Param("agora") LocalDateTime agora);
+
+    // Recuperação após queda: jobs que estavam em execução voltam para a fila
+    @Modifying
+    @Query("UPDATE DocumentoJob j SET j.status = 'PENDENTE' WHERE j.status = 'PROCESSANDO'")
+    int resetInProgress();
+}
@@ -0,0 +1,53 @@
+package com.biblioteca.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Critérios de busca de empréstimos. Campos nulos/vazios são ignorados.
+ */
+public class EmprestimoFiltro {
+
+    private String usuario;       // prefixo do nome ou CPF (somente dígitos)
+    private String livro;         // prefixo do título
+    private String status;        // ATIVO / DEVOLVIDO
+    private boolean somenteAtrasados;
+    private LocalDate emprestimoDe;
+    private LocalDate emprestimoAte;
+    private LocalDate previstaDe;
+    private LocalDate previstaAte;
+
+    public boolean isVazio() {
+        return isBlank(usuario) && isBlank(livro) && isBlank(status) && !somenteAtrasados
+                && emprestimoDe == null && emprestimoAte == null
+                && previstaDe == null && previstaAte == null;
+    }
+
+    static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    // Getters e Setters
+    public String getUsuario() { return usuario; }
+    public void setUsuario(String usuario) { this.usuario = usuario; }
+
+    public String getLivro() { return livro; }
+    public void setLivro(String livro) { this.livro = livro; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public boolean isSomenteAtrasados() { return somenteAtrasados; }
+    public void setSomenteAtrasados(boolean somenteAtrasados) { this.somenteAtrasados = somenteAtrasados; }
+
+    public LocalDate getEmprestimoDe() { return emprestimoDe; }
+    public void setEmprestimoDe(LocalDate emprestimoDe) { this.emprestimoDe = emprestimoDe; }
+
+    public LocalDate getEmprestimoAte() { return emprestimoAte; }
+    public void setEmprestimoAte(LocalDate emprestimoAte) { this.emprestimoAte = emprestimoAte; }
+
+    public LocalDate getPrevistaDe() { return previstaDe; }
+    public void setPrevistaDe(LocalDate previstaDe) { this.previstaDe = previstaDe; }
+
+    public LocalDate getPrevistaAte() { return previstaAte; }
+    public void setPrevistaAte(LocalDate previstaAte) { this.previstaAte = previstaAte; }
+}
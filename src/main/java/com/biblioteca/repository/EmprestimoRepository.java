@@ -5,6 +5,8 @@ import com.biblioteca.model.Emprestimo;
 import com.biblioteca.model.Usuario;
 import com.biblioteca.model.Livro;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,7 +18,8 @@ import java.util.List;
  * Repository Spring Data JPA para Emprestimo.
  */
 @Repository
-public interface EmprestimoRepository extends JpaRepository<Emprestimo, Long> {
+public interface EmprestimoRepository extends JpaRepository<Emprestimo, Long>,
+        JpaSpecificationExecutor<Emprestimo>, EmprestimoRepositoryCustom {
     
     // Buscas por usuário
     List<Emprestimo> findByUsuario(Usuario usuario);
@@ -37,6 +40,14 @@ public interface EmprestimoRepository extends JpaRepository<Emprestimo, Long> {
     @Query("SELECT e FROM Emprestimo e WHERE e.dataPrevista < :today AND e.devolvido = false")
     List<Emprestimo> findOverdueLoans(@Param("today") LocalDate today);
     
+    // Projeções leves para a previsão de disponibilidade (carga inicial)
+    @Query("SELECT e.livro.id, e.usuario.id, e.dataPrevista, e.dataDevolucao FROM Emprestimo e " +
+           "WHERE e.devolvido = true AND e.dataDevolucao IS NOT NULL")
+    List<Object[]> findReturnDelays();
+    
+    @Query("SELECT e.id, e.livro.id, e.usuario.id, e.dataPrevista FROM Emprestimo e WHERE e.devolvido = false")
+    List<Object[]> findActiveLoanDueDates();
+    
     // Buscas por data
     List<Emprestimo> findByDataEmprestimoBetween(LocalDate startDate, LocalDate endDate);
     List<Emprestimo> findByDataPrevistaBetween(LocalDate startDate, LocalDate endDate);
@@ -48,6 +59,30 @@ public interface EmprestimoRepository extends JpaRepository<Emprestimo, Long> {
     @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.dataPrevista < :today AND e.devolvido = false")
     long countOverdueLoans(@Param("today") LocalDate today);
     
+    // Consolidado diário: movimento do dia e situação ao final do dia
+    long countByDataEmprestimo(LocalDate dia);
+    long countByDataDevolucao(LocalDate dia);
+    
+    @Query("SELECT COALESCE(SUM(e.multaTotal), 0) FROM Emprestimo e WHERE e.dataDevolucao = :dia")
+    Double sumFinesReturnedOn(@Param("dia") LocalDate dia);
+    
+    // Situação num dia sem consolidado anterior (lê o histórico todo; só no início da cadeia)
+    @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.dataEmprestimo <= :dia " +
+           "AND (e.dataDevolucao IS NULL OR e.dataDevolucao > :dia)")
+    long countActiveLoansAt(@Param("dia") LocalDate dia);
+    
+    @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.dataEmprestimo <= :dia AND e.dataPrevista < :dia " +
+           "AND (e.dataDevolucao IS NULL OR e.dataDevolucao > :dia)")
+    long countOverdueLoansAt(@Param("dia") LocalDate dia);
+    
+    // Variação dos atrasados no dia: venceram na véspera e seguem abertos / atrasados devolvidos no dia
+    @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.dataPrevista = :vespera AND e.dataEmprestimo <= :dia " +
+           "AND (e.dataDevolucao IS NULL OR e.dataDevolucao > :dia)")
+    long countBecameOverdueOn(@Param("dia") LocalDate dia, @Param("vespera") LocalDate vespera);
+    
+    @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.dataDevolucao = :dia AND e.dataPrevista < :vespera")
+    long countOverdueReturnedOn(@Param("dia") LocalDate dia, @Param("vespera") LocalDate vespera);
+    
     @Query("SELECT COUNT(e) FROM Emprestimo e WHERE e.usuario = :usuario AND e.devolvido = false")
     long countActiveLoansByUser(@Param("usuario") Usuario usuario);
     
@@ -65,4 +100,32 @@ public interface EmprestimoRepository extends JpaRepository<Emprestimo, Long> {
            "((e.devolvido = false AND e.dataPrevista < :today) OR " +
            "(e.devolvido = true AND e.dataDevolucao > e.dataPrevista AND e.multaTotal > 0))")
     List<Emprestimo> findLoansWithFinesByUser(@Param("usuario") Usuario usuario, @Param("today") LocalDate today);
+    
+    // Renovação: estende data_prevista em prazo_dias numa única UPDATE condicional.
+    // Rejeita (0 linhas) se o título tiver reservas aguardando ou se o usuário tiver multas.
+    // A subconsulta sobre emprestimos fica numa tabela derivada agrupada para que o MySQL
+    // a materialize (evita o erro 1093 de referenciar a tabela alvo do UPDATE).
+    String RENOVACAO_SET =
+           "UPDATE emprestimos e " +
+           "SET e.data_prevista = DATE_ADD(e.data_prevista, INTERVAL COALESCE(e.prazo_dias, :prazoPadrao) DAY) " +
+           "WHERE e.devolvido = false " +
+           "AND NOT EXISTS (SELECT 1 FROM reservas r WHERE r.livro_id = e.livro_id AND r.status = 'AGUARDANDO') " +
+           "AND NOT EXISTS (SELECT 1 FROM (" +
+           "    SELECT m.usuario_id FROM emprestimos m " +
+           "    WHERE (m.devolvido = false AND m.data_prevista < :today) " +
+           "       OR (m.devolvido = true AND m.data_devolucao > m.data_prevista AND m.multa_total > 0) " +
+           "    GROUP BY m.usuario_id) f WHERE f.usuario_id = e.usuario_id) ";
+    
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query(value = RENOVACAO_SET + "AND e.id = :id", nativeQuery = true)
+    int renewLoanIfAllowed(@Param("id") Long id, @Param("prazoPadrao") int prazoPadrao, @Param("today") LocalDate today);
+    
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query(value = RENOVACAO_SET + "AND e.usuario_id = :usuarioId", nativeQuery = true)
+    int renewAllLoansOfUserIfAllowed(@Param("usuarioId") Long usuarioId, @Param("prazoPadrao") int prazoPadrao, @Param("today") LocalDate today);
+    
+    @Query("SELECT COUNT(e) > 0 FROM Emprestimo e WHERE e.usuario = :usuario AND " +
+           "((e.devolvido = false AND e.dataPrevista < :today) OR " +
+           "(e.devolvido = true AND e.dataDevolucao > e.dataPrevista AND e.multaTotal > 0))")
+    boolean hasFinesByUser(@Param("usuario") Usuario usuario, @Param("today") LocalDate today);
 } 
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Emprestimo;
+
+import java.util.List;
+
+/**
+ * Consultas de empréstimos que precisam de controle direto sobre a query (keyset/fetch).
+ */
+public interface EmprestimoRepositoryCustom {
+
+    /**
+     * Busca uma página de empréstimos ordenada por id DESC.
+     * Se ultimoId for informado usa keyset (id &lt; ultimoId) e ignora o offset.
+     */
+    List<Emprestimo> buscarPorFiltro(EmprestimoFiltro filtro, Long ultimoId, int offset, int limite);
+}
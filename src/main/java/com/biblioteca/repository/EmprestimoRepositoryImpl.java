@@ -0,0 +1,41 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Emprestimo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Implementação do fragmento customizado de EmprestimoRepository.
+ */
+public class EmprestimoRepositoryImpl implements EmprestimoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<Emprestimo> buscarPorFiltro(EmprestimoFiltro filtro, Long ultimoId, int offset, int limite) {
+        Specification<Emprestimo> spec = EmprestimoSpecifications.comFiltro(filtro)
+                .and(EmprestimoSpecifications.idMenorQue(ultimoId));
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Emprestimo> cq = cb.createQuery(Emprestimo.class);
+        Root<Emprestimo> root = cq.from(Emprestimo.class);
+        // Evita um SELECT extra por linha para usuario/livro no grid; os filtros usam estes mesmos joins
+        root.fetch("usuario");
+        root.fetch("livro");
+        cq.select(root)
+          .where(spec.toPredicate(root, cq, cb))
+          .orderBy(cb.desc(root.get("id")));
+
+        return em.createQuery(cq)
+                .setFirstResult(ultimoId != null ? 0 : offset)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+}
@@ -0,0 +1,111 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Emprestimo;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Usuario;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specifications dinâmicas para consulta de empréstimos.
+ *
+ * Buscas textuais usam prefixo (LIKE 'termo%') para aproveitar os índices
+ * de usuarios.nome, usuarios.cpf e livros.titulo (collation já é case-insensitive).
+ * Curingas digitados pelo usuário (% e _) são escapados e valem como texto.
+ *
+ * Quando a consulta já faz fetch de usuario/livro o filtro usa o mesmo join, em vez
+ * de juntar a tabela uma segunda vez.
+ */
+public final class EmprestimoSpecifications {
+
+    private static final char ESCAPE = '!';
+
+    private EmprestimoSpecifications() {}
+
+    public static Specification<Emprestimo> comFiltro(EmprestimoFiltro filtro) {
+        return (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>();
+            if (filtro == null) {
+                return cb.conjunction();
+            }
+
+            if (!EmprestimoFiltro.isBlank(filtro.getUsuario())) {
+                Join<Emprestimo, Usuario> usuario = juntar(root, "usuario");
+                String termo = filtro.getUsuario().trim();
+                String digitos = termo.replaceAll("[^0-9]", "");
+                if (!digitos.isEmpty() && digitos.length() == termo.replaceAll("[.\\-\\s]", "").length()) {
+                    predicados.add(cb.like(usuario.get("cpf"), digitos + "%"));
+                } else {
+                    predicados.add(cb.like(usuario.get("nome"), prefixo(termo), ESCAPE));
+                }
+            }
+
+            if (!EmprestimoFiltro.isBlank(filtro.getLivro())) {
+                Join<Emprestimo, Livro> livro = juntar(root, "livro");
+                predicados.add(cb.like(livro.get("titulo"), prefixo(filtro.getLivro().trim()), ESCAPE));
+            }
+
+            if (!EmprestimoFiltro.isBlank(filtro.getStatus())) {
+                predicados.add(cb.equal(root.get("status"), filtro.getStatus()));
+            }
+
+            if (filtro.isSomenteAtrasados()) {
+                predicados.add(cb.isFalse(root.get("devolvido")));
+                predicados.add(cb.lessThan(root.get("dataPrevista"), LocalDate.now()));
+            }
+
+            if (filtro.getEmprestimoDe() != null) {
+                predicados.add(cb.greaterThanOrEqualTo(root.get("dataEmprestimo"), filtro.getEmprestimoDe()));
+            }
+            if (filtro.getEmprestimoAte() != null) {
+                predicados.add(cb.lessThanOrEqualTo(root.get("dataEmprestimo"), filtro.getEmprestimoAte()));
+            }
+            if (filtro.getPrevistaDe() != null) {
+                predicados.add(cb.greaterThanOrEqualTo(root.get("dataPrevista"), filtro.getPrevistaDe()));
+            }
+            if (filtro.getPrevistaAte() != null) {
+                predicados.add(cb.lessThanOrEqualTo(root.get("dataPrevista"), filtro.getPrevistaAte()));
+            }
+
+            return cb.and(predicados.toArray(new Predicate[0]));
+        };
+    }
+
+    /** Padrão LIKE de prefixo com os curingas do termo escapados (escape '!') */
+    public static String prefixo(String termo) {
+        StringBuilder sb = new StringBuilder(termo.length() + 1);
+        for (char c : termo.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) sb.append(ESCAPE);
+            sb.append(c);
+        }
+        return sb.append('%').toString();
+    }
+
+    /** Reaproveita o fetch (ou join) já feito no atributo; só cria um join se não houver */
+    @SuppressWarnings("unchecked")
+    private static <Y> Join<Emprestimo, Y> juntar(Root<Emprestimo> root, String atributo) {
+        for (Fetch<Emprestimo, ?> fetch : root.getFetches()) {
+            if (fetch instanceof Join<?, ?> join && atributo.equals(fetch.getAttribute().getName())) {
+                return (Join<Emprestimo, Y>) join;
+            }
+        }
+        for (Join<Emprestimo, ?> join : root.getJoins()) {
+            if (atributo.equals(join.getAttribute().getName())) {
+                return (Join<Emprestimo, Y>) join;
+            }
+        }
+        return root.join(atributo);
+    }
+
+    /** Keyset: apenas registros com id menor que o último já carregado (ordem id DESC). */
+    public static Specification<Emprestimo> idMenorQue(Long ultimoId) {
+        return (root, query, cb) -> ultimoId == null ? cb.conjunction() : cb.lessThan(root.get("id"), ultimoId);
+    }
+}
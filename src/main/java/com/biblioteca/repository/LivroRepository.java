@@ -1,6 +1,7 @@
 package com.biblioteca.repository;
 
 import com.biblioteca.model.Livro;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,7 +13,7 @@ import java.util.List;
  * Repository Spring Data JPA para Livro.
  */
 @Repository
-public interface LivroRepository extends JpaRepository<Livro, Long> {
+public interface LivroRepository extends JpaRepository<Livro, Long>, LivroRepositoryCustom {
     
     // Buscas básicas
     List<Livro> findByTituloContainingIgnoreCase(String titulo);
@@ -35,6 +36,14 @@ public interface LivroRepository extends JpaRepository<Livro, Long> {
     @Query("SELECT l FROM Livro l WHERE l.quantidadeEstoque IS NOT NULL AND l.quantidadeEstoque > 0")
     List<Livro> findBooksWithStock();
     
+    // Disponíveis por prefixo do título (índice livros(titulo, quantidade_estoque)).
+    // O padrão vem de EmprestimoSpecifications.prefixo: curingas escapados com '!' e '%' no fim
+    @Query("SELECT l FROM Livro l WHERE l.quantidadeEstoque > 0 AND l.titulo LIKE :padrao ESCAPE '!' ORDER BY l.titulo")
+    List<Livro> findAvailableByTitlePrefix(@Param("padrao") String padrao, Pageable pageable);
+    
+    @Query("SELECT COUNT(l) FROM Livro l WHERE l.quantidadeEstoque > 0 AND l.titulo LIKE :padrao ESCAPE '!'")
+    long countAvailableByTitlePrefix(@Param("padrao") String padrao);
+    
     // Buscas por preço
     @Query("SELECT l FROM Livro l WHERE l.valor BETWEEN :precoMin AND :precoMax")
     List<Livro> findByPrecoBetween(@Param("precoMin") Double precoMin, @Param("precoMax") Double precoMax);
@@ -43,12 +52,19 @@ public interface LivroRepository extends JpaRepository<Livro, Long> {
     @Query("SELECT COUNT(l) FROM Livro l WHERE l.quantidadeEstoque IS NOT NULL AND l.quantidadeEstoque > 0")
     long countAvailableBooks();
     
+    @Query("SELECT COUNT(l) FROM Livro l WHERE l.quantidadeEstoque IS NOT NULL AND l.quantidadeEstoque < :limite")
+    long countLowStock(@Param("limite") int limite);
+    
     @Query("SELECT COALESCE(SUM(l.quantidadeEstoque), 0) FROM Livro l WHERE l.quantidadeEstoque IS NOT NULL")
     Long sumTotalQuantity();
     
     @Query("SELECT COALESCE(SUM(l.quantidadeEstoque), 0) FROM Livro l WHERE l.quantidadeEstoque > 0")
     Long sumAvailableQuantity();
     
+    // Preços atuais (id, valor) sem carregar as entidades - revalidação do carrinho
+    @Query("SELECT l.id, l.valor FROM Livro l WHERE l.id IN :ids")
+    List<Object[]> findPricesByIds(@Param("ids") java.util.Collection<Long> ids);
+    
     // Verificações
     boolean existsByIsbn(String isbn);
     boolean existsByIsbnAndIdNot(String isbn, Long id);
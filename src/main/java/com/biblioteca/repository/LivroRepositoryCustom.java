@@ -0,0 +1,22 @@
+package com.biblioteca.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operações de estoque que precisam de SQL montado sob medida.
+ */
+public interface LivroRepositoryCustom {
+
+    /**
+     * Baixa o estoque de vários livros num único UPDATE, após travar as linhas
+     * em ordem crescente de id. Tudo ou nada: se algum livro não tiver estoque
+     * suficiente nenhuma linha é alterada.
+     *
+     * @param quantidadesPorLivro livroId -&gt; quantidade a baixar
+     * @param reservadoPorOutros  livroId -&gt; unidades seguradas por outros clientes
+     *                            (não podem ser vendidas; ausente = 0)
+     * @return ids dos livros sem estoque suficiente (vazio em caso de sucesso)
+     */
+    List<Long> baixarEstoqueEmLote(Map<Long, Integer> quantidadesPorLivro, Map<Long, Integer> reservadoPorOutros);
+}
@@ -0,0 +1,64 @@
+package com.biblioteca.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Implementação do fragmento customizado de LivroRepository.
+ */
+public class LivroRepositoryImpl implements LivroRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<Long> baixarEstoqueEmLote(Map<Long, Integer> quantidadesPorLivro, Map<Long, Integer> reservadoPorOutros) {
+        if (quantidadesPorLivro.isEmpty()) return Collections.emptyList();
+        TreeMap<Long, Integer> ordenado = new TreeMap<>(quantidadesPorLivro);
+        List<Long> ids = new ArrayList<>(ordenado.keySet());
+
+        // Trava as linhas em ordem crescente de id: finalizações concorrentes
+        // sempre disputam os livros na mesma ordem e não entram em deadlock
+        @SuppressWarnings("unchecked")
+        List<Object[]> estoques = em.createNativeQuery(
+                        "SELECT id, quantidade_estoque FROM livros WHERE id IN (?1) ORDER BY id FOR UPDATE")
+                .setParameter(1, ids)
+                .getResultList();
+
+        List<Long> insuficientes = new ArrayList<>(ids);
+        for (Object[] linha : estoques) {
+            Long id = ((Number) linha[0]).longValue();
+            Number estoque = (Number) linha[1];
+            // Estoque nulo = não controlado; unidades reservadas por outros clientes não contam
+            if (estoque == null || estoque.intValue() - reservadoPorOutros.getOrDefault(id, 0) >= ordenado.get(id)) {
+                insuficientes.remove(id);
+            }
+        }
+        if (!insuficientes.isEmpty()) return insuficientes;
+
+        // Todas as baixas num único UPDATE
+        StringBuilder sql = new StringBuilder("UPDATE livros SET quantidade_estoque = quantidade_estoque - CASE id");
+        for (int i = 0; i < ordenado.size(); i++) {
+            sql.append(" WHEN ?").append(2 * i + 1).append(" THEN ?").append(2 * i + 2);
+        }
+        int parametroIds = 2 * ordenado.size() + 1;
+        sql.append(" END WHERE id IN (?").append(parametroIds).append(")");
+
+        Query update = em.createNativeQuery(sql.toString());
+        int p = 1;
+        for (Map.Entry<Long, Integer> e : ordenado.entrySet()) {
+            update.setParameter(p++, e.getKey());
+            update.setParameter(p++, e.getValue());
+        }
+        update.setParameter(parametroIds, ids);
+        update.executeUpdate();
+        return Collections.emptyList();
+    }
+}
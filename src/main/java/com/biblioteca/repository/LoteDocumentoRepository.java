@@ -0,0 +1,12 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.LoteDocumento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository Spring Data JPA para os checkpoints de lotes de documentos.
+ */
+@Repository
+public interface LoteDocumentoRepository extends JpaRepository<LoteDocumento, String> {
+}
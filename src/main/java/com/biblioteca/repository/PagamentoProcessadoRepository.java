@@ -0,0 +1,25 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.PagamentoProcessado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository Spring Data JPA para as confirmações de pagamento processadas.
+ */
+@Repository
+public interface PagamentoProcessadoRepository extends JpaRepository<PagamentoProcessado, String> {
+
+    // Registra a confirmação uma única vez: 0 linhas = outra origem já processou a sessão
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO pagamentos_processados (session_id, origem, evento_id, processado_em) " +
+                   "VALUES (:sessionId, :origem, :eventoId, :agora)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("sessionId") String sessionId, @Param("origem") String origem,
+                       @Param("eventoId") String eventoId, @Param("agora") LocalDateTime agora);
+}
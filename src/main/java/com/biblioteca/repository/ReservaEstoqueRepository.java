@@ -0,0 +1,47 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ReservaEstoque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository Spring Data JPA para ReservaEstoque.
+ */
+@Repository
+public interface ReservaEstoqueRepository extends JpaRepository<ReservaEstoque, Long> {
+
+    @Query("SELECT r FROM ReservaEstoque r WHERE r.expiraEm > :agora")
+    List<ReservaEstoque> findActive(@Param("agora") LocalDateTime agora);
+
+    // Cria ou atualiza a reserva da linha (cliente, livro) num único comando
+    @Modifying
+    @Query(value = "INSERT INTO reservas_estoque (cliente_id, livro_id, quantidade, expira_em) " +
+                   "VALUES (:clienteId, :livroId, :quantidade, :expiraEm) " +
+                   "ON DUPLICATE KEY UPDATE quantidade = VALUES(quantidade), expira_em = VALUES(expira_em)",
+           nativeQuery = true)
+    int upsert(@Param("clienteId") Long clienteId, @Param("livroId") Long livroId,
+               @Param("quantidade") int quantidade, @Param("expiraEm") LocalDateTime expiraEm);
+
+    @Modifying
+    @Query("DELETE FROM ReservaEstoque r WHERE r.clienteId = :clienteId AND r.livroId = :livroId")
+    int deleteByClienteAndLivro(@Param("clienteId") Long clienteId, @Param("livroId") Long livroId);
+
+    @Modifying
+    @Query("DELETE FROM ReservaEstoque r WHERE r.clienteId = :clienteId")
+    int deleteByCliente(@Param("clienteId") Long clienteId);
+
+    @Modifying
+    @Query("DELETE FROM ReservaEstoque r WHERE r.clienteId IN :clienteIds")
+    int deleteByClienteIn(@Param("clienteIds") Collection<Long> clienteIds);
+
+    @Modifying
+    @Query("DELETE FROM ReservaEstoque r WHERE r.expiraEm <= :agora")
+    int deleteExpired(@Param("agora") LocalDateTime agora);
+}
@@ -0,0 +1,33 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Reserva;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository Spring Data JPA para Reserva (fila de espera por título).
+ */
+@Repository
+public interface ReservaRepository extends JpaRepository<Reserva, Long> {
+
+    // Fila de espera de um título, na ordem de chegada
+    List<Reserva> findByLivroIdAndStatusOrderByDataReservaAsc(Long livroId, String status);
+
+    List<Reserva> findByUsuarioIdAndStatus(Long usuarioId, String status);
+
+    // Verificações
+    @Query("SELECT COUNT(r) > 0 FROM Reserva r WHERE r.livro.id = :livroId AND r.status = 'AGUARDANDO'")
+    boolean existsWaitingForBook(@Param("livroId") Long livroId);
+
+    @Query("SELECT COUNT(r) FROM Reserva r WHERE r.livro.id = :livroId AND r.status = 'AGUARDANDO'")
+    long countWaitingForBook(@Param("livroId") Long livroId);
+
+    // Tamanho da fila por título (livroId, quantidade), para vários títulos de uma vez
+    @Query("SELECT r.livro.id, COUNT(r) FROM Reserva r WHERE r.livro.id IN :livroIds AND r.status = 'AGUARDANDO' GROUP BY r.livro.id")
+    List<Object[]> countWaitingByBookIds(@Param("livroIds") Collection<Long> livroIds);
+}
@@ -0,0 +1,24 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ResumoDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository Spring Data JPA para os consolidados diários do dashboard.
+ */
+@Repository
+public interface ResumoDiarioRepository extends JpaRepository<ResumoDiario, LocalDate> {
+
+    // Dias de um período (inclusive), em ordem
+    List<ResumoDiario> findByDiaBetweenOrderByDia(LocalDate inicio, LocalDate fim);
+
+    // Dias já consolidados no período, para preencher só os que faltam
+    @Query("SELECT r.dia FROM ResumoDiario r WHERE r.dia BETWEEN :inicio AND :fim")
+    List<LocalDate> findDiasConsolidados(@Param("inicio") LocalDate inicio, @Param("fim") LocalDate fim);
+}
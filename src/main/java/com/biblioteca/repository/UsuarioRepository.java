@@ -1,6 +1,7 @@
 package com.biblioteca.repository;
 
 import com.biblioteca.model.Usuario;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -25,6 +26,10 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     List<Usuario> findByRole(String role);
     List<Usuario> findByStatus(Boolean status);
     
+    // Busca paginada por prefixo do nome (índice usuarios(nome))
+    List<Usuario> findByNomeStartingWithOrderByNome(String prefixo, Pageable pageable);
+    long countByNomeStartingWith(String prefixo);
+    
     // Queries customizadas para funcionalidades existentes
     @Query("SELECT u FROM Usuario u WHERE u.login = :login AND u.senha = :senha")
     Optional<Usuario> findByLoginAndSenha(@Param("login") String login, @Param("senha") String senha);
@@ -1,19 +1,22 @@
 package com.biblioteca.repository;
 
 import com.biblioteca.model.Venda;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Repository Spring Data JPA para Venda.
  */
 @Repository
-public interface VendaRepository extends JpaRepository<Venda, String> {
+public interface VendaRepository extends JpaRepository<Venda, String>, VendaRepositoryCustom {
     
     // Buscas por cliente
     List<Venda> findByClienteNomeContainingIgnoreCase(String nomeCliente);
@@ -57,4 +60,30 @@ public interface VendaRepository extends JpaRepository<Venda, String> {
     
     @Query("SELECT SUM(v.valorTotal) FROM Venda v WHERE v.tipoPagamento = :tipo AND v.status = 'PAGO'")
     Double sumPaidSalesByPaymentType(@Param("tipo") String tipo);
-} 
\ No newline at end of file
+    
+    // Lote de documentos: chaves das vendas pagas do período após o checkpoint (keyset por data, id)
+    @Query("SELECT v.id, v.dataVenda FROM Venda v WHERE v.status = 'PAGO' " +
+           "AND v.dataVenda >= :inicio AND v.dataVenda < :fim " +
+           "AND (v.dataVenda > :ultimaData OR (v.dataVenda = :ultimaData AND v.id > :ultimoId)) " +
+           "ORDER BY v.dataVenda, v.id")
+    List<Object[]> findPaidKeysAfter(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim,
+                                     @Param("ultimaData") LocalDateTime ultimaData, @Param("ultimoId") String ultimoId,
+                                     Pageable pageable);
+    
+    @Query("SELECT COUNT(v) FROM Venda v WHERE v.status = 'PAGO' AND v.dataVenda >= :inicio AND v.dataVenda < :fim")
+    long countPaidInPeriod(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
+    
+    // Vendas com itens e livros numa única consulta
+    @Query("SELECT DISTINCT v FROM Venda v LEFT JOIN FETCH v.itens i LEFT JOIN FETCH i.livro WHERE v.id IN :ids")
+    List<Venda> findWithItemsByIds(@Param("ids") Collection<String> ids);
+    
+    // Consolidado diário: vendas pagas do período por tipo de pagamento (tipo, quantidade, valor)
+    @Query("SELECT v.tipoPagamento, COUNT(v), COALESCE(SUM(v.valorTotal), 0) FROM Venda v WHERE v.status = 'PAGO' " +
+           "AND v.dataVenda >= :inicio AND v.dataVenda < :fim GROUP BY v.tipoPagamento")
+    List<Object[]> summarizePaidByPaymentTypeInPeriod(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
+    
+    // Confirmação de pagamento: só a primeira transição PENDENTE -> PAGO altera a linha
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Venda v SET v.status = 'PAGO' WHERE v.id = :id AND v.status = 'PENDENTE'")
+    int markPaidIfPending(@Param("id") String id);
+}
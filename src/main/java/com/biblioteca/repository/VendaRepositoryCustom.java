@@ -0,0 +1,15 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Venda;
+
+/**
+ * Gravações de vendas feitas direto em JDBC.
+ */
+public interface VendaRepositoryCustom {
+
+    /**
+     * Insere a venda e todos os seus itens em lote (um round-trip para os itens).
+     * Os itens de {@code venda} não recebem id; use o repositório para relê-los se precisar.
+     */
+    void inserirComItensEmLote(Venda venda);
+}
@@ -0,0 +1,182 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ItemVenda;
+import com.biblioteca.model.Venda;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Implementação do fragmento customizado de VendaRepository.
+ *
+ * ItemVenda usa id IDENTITY, o que impede o Hibernate de agrupar os INSERTs;
+ * aqui os itens vão num único executeBatch (com rewriteBatchedStatements o
+ * driver MySQL envia um INSERT multi-linha).
+ *
+ * {@link #salvarComItens(Connection, Venda)} é o caminho de gravação de
+ * PagamentoService (modo console e checkout): upsert do cabeçalho e só os
+ * itens que mudaram, todos em lote.
+ */
+public class VendaRepositoryImpl implements VendaRepositoryCustom {
+
+    private static final String INSERT_VENDA = "INSERT INTO vendas (id, cliente_nome, cliente_cpf, cliente_email, " +
+            "cliente_endereco, valor_total, tipo_pagamento, tipo_compra, data_venda, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_ITEM = "INSERT INTO itens_venda (venda_id, livro_id, quantidade, valor_unitario, valor_total) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_VENDA = INSERT_VENDA + " ON DUPLICATE KEY UPDATE " +
+            "cliente_nome = VALUES(cliente_nome), cliente_cpf = VALUES(cliente_cpf), cliente_email = VALUES(cliente_email), " +
+            "cliente_endereco = VALUES(cliente_endereco), valor_total = VALUES(valor_total), " +
+            "tipo_pagamento = VALUES(tipo_pagamento), tipo_compra = VALUES(tipo_compra), " +
+            "data_venda = VALUES(data_venda), status = VALUES(status)";
+
+    private static final String SELECT_ITENS = "SELECT id, livro_id, quantidade, valor_unitario, valor_total " +
+            "FROM itens_venda WHERE venda_id = ? ORDER BY id";
+
+    private static final String UPDATE_ITEM = "UPDATE itens_venda SET quantidade = ?, valor_unitario = ?, valor_total = ? " +
+            "WHERE id = ?";
+
+    private static final String DELETE_ITEM = "DELETE FROM itens_venda WHERE id = ?";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public void inserirComItensEmLote(Venda venda) {
+        // Garante que alterações pendentes do contexto cheguem antes do JDBC direto
+        em.flush();
+        em.unwrap(Session.class).doWork(conexao -> {
+            try (PreparedStatement ps = conexao.prepareStatement(INSERT_VENDA)) {
+                preencherVenda(ps, venda);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conexao.prepareStatement(INSERT_ITEM)) {
+                for (ItemVenda item : venda.getItens()) {
+                    preencherItem(ps, venda.getId(), item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Grava a venda (nova ou existente) na conexão informada, sem commit.
+     *
+     * O cabeçalho vai num único upsert. Os itens gravados são comparados com os da
+     * venda (por livro, na ordem) e só as diferenças vão ao banco, em até três lotes
+     * (UPDATE, INSERT, DELETE); venda nova vira um único INSERT em lote.
+     */
+    public static void salvarComItens(Connection conexao, Venda venda) throws SQLException {
+        try (PreparedStatement ps = conexao.prepareStatement(UPSERT_VENDA)) {
+            preencherVenda(ps, venda);
+            ps.executeUpdate();
+        }
+
+        // Itens já gravados (nenhum se a venda é nova), agrupados por livro na ordem do id.
+        // O retorno do upsert não serve para isso: com useAffectedRows=false (padrão do
+        // Connector/J) "inserida" e "sem mudança" devolvem ambos 1
+        Map<Long, Deque<Object[]>> gravados = new HashMap<>();
+        try (PreparedStatement ps = conexao.prepareStatement(SELECT_ITENS)) {
+            ps.setString(1, venda.getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Object[] linha = {rs.getLong(1), rs.getInt(3), getDouble(rs, 4), getDouble(rs, 5)};
+                    gravados.computeIfAbsent(rs.getLong(2), k -> new ArrayDeque<>()).add(linha);
+                }
+            }
+        }
+
+        try (PreparedStatement atualizar = conexao.prepareStatement(UPDATE_ITEM);
+             PreparedStatement inserir = conexao.prepareStatement(INSERT_ITEM);
+             PreparedStatement remover = conexao.prepareStatement(DELETE_ITEM)) {
+            int atualizados = 0, inseridos = 0, removidos = 0;
+            for (ItemVenda item : venda.getItens()) {
+                Deque<Object[]> doLivro = gravados.get(item.getLivro().getId());
+                Object[] linha = doLivro != null ? doLivro.pollFirst() : null;
+                if (linha == null) {
+                    preencherItem(inserir, venda.getId(), item);
+                    inserir.addBatch();
+                    inseridos++;
+                } else if (!Objects.equals(linha[1], item.getQuantidade())
+                        || !Objects.equals(linha[2], valorUnitario(item))
+                        || !Objects.equals(linha[3], valorTotal(item))) {
+                    atualizar.setInt(1, item.getQuantidade());
+                    setDouble(atualizar, 2, valorUnitario(item));
+                    setDouble(atualizar, 3, valorTotal(item));
+                    atualizar.setLong(4, (Long) linha[0]);
+                    atualizar.addBatch();
+                    atualizados++;
+                }
+            }
+            // O que sobrou não está mais na venda
+            for (Deque<Object[]> restantes : gravados.values()) {
+                for (Object[] linha : restantes) {
+                    remover.setLong(1, (Long) linha[0]);
+                    remover.addBatch();
+                    removidos++;
+                }
+            }
+            if (atualizados > 0) atualizar.executeBatch();
+            if (inseridos > 0) inserir.executeBatch();
+            if (removidos > 0) remover.executeBatch();
+        }
+    }
+
+    private static void preencherVenda(PreparedStatement ps, Venda venda) throws SQLException {
+        ps.setString(1, venda.getId());
+        ps.setString(2, venda.getClienteNome());
+        ps.setString(3, venda.getClienteCpf());
+        ps.setString(4, venda.getClienteEmail());
+        ps.setString(5, venda.getClienteEndereco());
+        setDouble(ps, 6, venda.getValorTotal());
+        ps.setString(7, venda.getTipoPagamento());
+        ps.setString(8, venda.getTipoCompra());
+        ps.setTimestamp(9, Timestamp.valueOf(venda.getDataVenda()));
+        ps.setString(10, venda.getStatus());
+    }
+
+    private static void preencherItem(PreparedStatement ps, String vendaId, ItemVenda item) throws SQLException {
+        ps.setString(1, vendaId);
+        ps.setLong(2, item.getLivro().getId());
+        ps.setInt(3, item.getQuantidade());
+        setDouble(ps, 4, valorUnitario(item));
+        setDouble(ps, 5, valorTotal(item));
+    }
+
+    // Itens montados sem preço (modo console) usam o valor atual do livro
+    private static Double valorUnitario(ItemVenda item) {
+        return item.getValorUnitario() != null ? item.getValorUnitario() : Double.valueOf(item.getLivro().getValor());
+    }
+
+    private static Double valorTotal(ItemVenda item) {
+        return item.getValorTotal() != null ? item.getValorTotal() : valorUnitario(item) * item.getQuantidade();
+    }
+
+    private static Double getDouble(ResultSet rs, int indice) throws SQLException {
+        double valor = rs.getDouble(indice);
+        return rs.wasNull() ? null : valor;
+    }
+
+    private static void setDouble(PreparedStatement ps, int indice, Double valor) throws SQLException {
+        if (valor != null) {
+            ps.setDouble(indice, valor);
+        } else {
+            ps.setNull(indice, Types.DOUBLE);
+        }
+    }
+}
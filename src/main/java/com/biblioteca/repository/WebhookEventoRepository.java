@@ -0,0 +1,79 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.WebhookEvento;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository Spring Data JPA para a caixa de entrada de webhooks.
+ */
+@Repository
+public interface WebhookEventoRepository extends JpaRepository<WebhookEvento, Long> {
+
+    // Grava o evento uma única vez: reenvio com o mesmo id do evento é ignorado (0 linhas)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO webhook_inbox (evento_id, session_id, tipo, payload, status, tentativas, " +
+                   "proxima_tentativa, recebido_em) VALUES (:eventoId, :sessionId, :tipo, :payload, 'PENDENTE', 0, :agora, :agora)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("eventoId") String eventoId, @Param("sessionId") String sessionId,
+                       @Param("tipo") String tipo, @Param("payload") String payload, @Param("agora") LocalDateTime agora);
+
+    // Eventos prontos (evento_id, session_id), na ordem de chegada
+    @Query("SELECT w.eventoId, w.sessionId FROM WebhookEvento w WHERE w.status = 'PENDENTE' AND w.proximaTentativa <= :agora " +
+           "ORDER BY w.seq")
+    List<Object[]> findDue(@Param("agora") LocalDateTime agora, Pageable pageable);
+
+    WebhookEvento findByEventoId(String eventoId);
+
+    // Há evento anterior da mesma sessão ainda em aberto? (preserva a ordem por sessão)
+    @Query("SELECT COUNT(w) > 0 FROM WebhookEvento w WHERE w.sessionId = :sessionId AND w.seq < :seq " +
+           "AND w.status IN ('PENDENTE', 'PROCESSANDO')")
+    boolean existsEarlierOpen(@Param("sessionId") String sessionId, @Param("seq") Long seq);
+
+    @Query("SELECT COUNT(w) FROM WebhookEvento w WHERE w.status = 'PENDENTE'")
+    long countPending();
+
+    @Query("SELECT COUNT(w) FROM WebhookEvento w WHERE w.status = 'MORTO'")
+    long countDead();
+
+    // Reivindica o evento para um worker (só um consegue)
+    @Modifying
+    @Query("UPDATE WebhookEvento w SET w.status = 'PROCESSANDO', w.tentativas = w.tentativas + 1, w.atualizadoEm = :agora " +
+           "WHERE w.eventoId = :eventoId AND w.status = 'PENDENTE'")
+    int claim(@Param("eventoId") String eventoId, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE WebhookEvento w SET w.status = 'CONCLUIDO', w.ultimoErro = NULL, w.atualizadoEm = :agora " +
+           "WHERE w.eventoId = :eventoId")
+    int markDone(@Param("eventoId") String eventoId, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE WebhookEvento w SET w.status = :status, w.proximaTentativa = :proxima, w.ultimoErro = :erro, " +
+           "w.atualizadoEm = :agora WHERE w.eventoId = :eventoId")
+    int markFailed(@Param("eventoId") String eventoId, @Param("status") String status,
+                   @Param("proxima") LocalDateTime proxima, @Param("erro") String erro,
+                   @Param("agora") LocalDateTime agora);
+
+    // Dead letter de volta para a fila (reprocessamento manual)
+    @Modifying
+    @Query("UPDATE WebhookEvento w SET w.status = 'PENDENTE', w.tentativas = 0, w.proximaTentativa = :agora " +
+           "WHERE w.eventoId = :eventoId AND w.status = 'MORTO'")
+    int requeueDead(@Param("eventoId") String eventoId, @Param("agora") LocalDateTime agora);
+
+    // Recuperação após queda: eventos que estavam em execução voltam para a fila
+    @Modifying
+    @Query("UPDATE WebhookEvento w SET w.status = 'PENDENTE' WHERE w.status = 'PROCESSANDO'")
+    int resetInProgress();
+
+    // Limpeza dos eventos já processados
+    @Modifying
+    @Query("DELETE FROM WebhookEvento w WHERE w.status = 'CONCLUIDO' AND w.recebidoEm < :limite")
+    int deleteDoneBefore(@Param("limite") LocalDateTime limite);
+}
@@ -20,6 +20,10 @@ public class SecurityConfig extends VaadinWebSecurity {
         // Primeiro, libera explicitamente a rota de recuperação de senha
         http.authorizeHttpRequests(authz -> authz
             .requestMatchers("/recuperar-senha", "/recuperar-senha/**").permitAll()
+            // Webhook do gateway: autenticado pela assinatura, não por sessão
+            .requestMatchers("/api/stripe/webhook").permitAll()
+            // Fechamento do mês (geração em lote pesada): só gestores
+            .requestMatchers("/api/docs/lotes/**").hasAnyRole("GERENTE", "ADMIN")
         );
 
         // Desabilita a proteção CSRF para endpoints REST usados pelo front-end
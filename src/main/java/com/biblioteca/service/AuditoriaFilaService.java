@@ -0,0 +1,311 @@
+package com.biblioteca.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gravação da auditoria fora do caminho das operações.
+ *
+ * Cada evento é um registro imutável; os eventos de uma transação só entram na fila
+ * depois do commit (rollback não deixa auditoria de algo que não aconteceu). Uma
+ * thread própria esvazia a fila e grava em lotes de até {@code auditoria.fila.lote}
+ * linhas com um único INSERT em batch por lote.
+ *
+ * A fila é uma ConcurrentLinkedQueue limitada por contador atômico
+ * ({@code auditoria.fila.capacidade}): sem lock para quem produz; fila cheia descarta
+ * o evento e conta em {@code auditoria.fila.descartados}.
+ *
+ * Modos ({@code auditoria.fila.modo}):
+ * - {@code assincrono} (padrão): a requisição não espera; a thread grava quando junta
+ *   um lote ou a cada {@code intervalo-ms}. Uma queda perde o que estava na fila;
+ * - {@code flush-no-commit}: após o commit a requisição acorda a thread e espera o
+ *   lote com os seus eventos ser gravado (até {@code espera-max-ms}); várias
+ *   requisições simultâneas dividem o mesmo INSERT.
+ *
+ * A thread grava com uma conexão própria, aberta pelo driver com os dados de
+ * {@code spring.datasource} e fora do pool: no afterCommit a requisição ainda segura a
+ * sua conexão do pool, e com o pool esgotado por requisições esperando a auditoria o
+ * gravador não conseguiria conexão para liberá-las. Sem URL configurada usa o DataSource.
+ */
+@Service
+public class AuditoriaFilaService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditoriaFilaService.class);
+
+    private static final String INSERT_AUDITORIA =
+            "INSERT INTO auditoria (usuario_id, data, nome_entidade, id_entidade, acao, dados_alterados) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_TENTATIVAS = 3;
+
+    /** Evento de auditoria (uma linha da tabela auditoria) */
+    public record Evento(Long usuarioId, LocalDateTime data, String nomeEntidade, Long idEntidade,
+                         String acao, String dadosAlterados) {}
+
+    // Evento na fila; gravado != null quando alguém espera a gravação (flush-no-commit)
+    private record Pendente(Evento evento, CountDownLatch gravado) {}
+
+    // Eventos da transação corrente, publicados no commit
+    private final class PublicacaoNoCommit implements TransactionSynchronization {
+        private final List<Evento> eventos = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            publicar(eventos);
+        }
+    }
+
+    @Value("${auditoria.fila.modo:assincrono}")
+    private String modo;
+
+    @Value("${auditoria.fila.capacidade:10000}")
+    private int capacidade;
+
+    @Value("${auditoria.fila.lote:200}")
+    private int tamanhoLote;
+
+    @Value("${auditoria.fila.intervalo-ms:200}")
+    private long intervaloMs;
+
+    @Value("${auditoria.fila.espera-max-ms:2000}")
+    private long esperaMaxMs;
+
+    @Value("${spring.datasource.url:}")
+    private String url;
+
+    @Value("${spring.datasource.username:}")
+    private String usuario;
+
+    @Value("${spring.datasource.password:}")
+    private String senha;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentLinkedQueue<Pendente> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
+
+    private boolean esperarGravacao;
+    private volatile boolean ativo;
+    private Thread gravador;
+    // Conexão exclusiva do gravador (só usada pela thread auditoria-gravador)
+    private Connection conexao;
+
+    private DistributionSummary tamanhoDosLotes;
+    private Counter descartadosFilaCheia;
+    private Counter descartadosErro;
+
+    @PostConstruct
+    public void iniciar() {
+        esperarGravacao = !"assincrono".equalsIgnoreCase(modo);
+        if (meterRegistry != null) {
+            Gauge.builder("auditoria.fila.profundidade", tamanho, AtomicInteger::get)
+                    .description("Eventos de auditoria aguardando gravação")
+                    .register(meterRegistry);
+            tamanhoDosLotes = DistributionSummary.builder("auditoria.fila.lote")
+                    .description("Eventos gravados por lote")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            descartadosFilaCheia = Counter.builder("auditoria.fila.descartados")
+                    .description("Eventos de auditoria descartados")
+                    .tag("motivo", "fila_cheia")
+                    .register(meterRegistry);
+            descartadosErro = Counter.builder("auditoria.fila.descartados")
+                    .description("Eventos de auditoria descartados")
+                    .tag("motivo", "erro_gravacao")
+                    .register(meterRegistry);
+        }
+        if (dataSource == null) return;
+        ativo = true;
+        gravador = new Thread(this::executar, "auditoria-gravador");
+        gravador.setDaemon(true);
+        gravador.start();
+    }
+
+    /** Fila disponível (sem DataSource a auditoria é gravada direto pelo repository) */
+    public boolean isAtiva() {
+        return ativo;
+    }
+
+    /**
+     * Registra o evento: dentro de transação vai para a fila no commit; fora, na hora.
+     */
+    public void enfileirar(Evento evento) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+                if (s instanceof PublicacaoNoCommit publicacao) {
+                    publicacao.eventos.add(evento);
+                    return;
+                }
+            }
+            PublicacaoNoCommit publicacao = new PublicacaoNoCommit();
+            publicacao.eventos.add(evento);
+            TransactionSynchronizationManager.registerSynchronization(publicacao);
+        } else {
+            publicar(List.of(evento));
+        }
+    }
+
+    private void publicar(List<Evento> eventos) {
+        CountDownLatch gravado = esperarGravacao ? new CountDownLatch(eventos.size()) : null;
+        boolean acordar = esperarGravacao;
+        for (Evento evento : eventos) {
+            // Reserva a vaga antes de inserir: a fila nunca passa da capacidade
+            if (tamanho.incrementAndGet() > capacidade) {
+                tamanho.decrementAndGet();
+                if (descartadosFilaCheia != null) descartadosFilaCheia.increment();
+                log.warn("Fila de auditoria cheia; evento descartado: {} {} {}",
+                        evento.acao(), evento.nomeEntidade(), evento.idEntidade());
+                if (gravado != null) gravado.countDown();
+                continue;
+            }
+            fila.offer(new Pendente(evento, gravado));
+            if (tamanho.get() >= tamanhoLote) acordar = true;
+        }
+        if (acordar) LockSupport.unpark(gravador);
+        if (gravado != null) {
+            try {
+                if (!gravado.await(esperaMaxMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("Auditoria não gravada em {} ms; segue em segundo plano", esperaMaxMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ========== GRAVAÇÃO ==========
+
+    private void executar() {
+        List<Pendente> lote = new ArrayList<>(tamanhoLote);
+        long intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+        while (ativo || !fila.isEmpty()) {
+            Pendente pendente;
+            while (lote.size() < tamanhoLote && (pendente = fila.poll()) != null) {
+                lote.add(pendente);
+            }
+            if (lote.isEmpty()) {
+                LockSupport.parkNanos(this, intervaloNanos);
+                continue;
+            }
+            tamanho.addAndGet(-lote.size());
+            gravar(lote);
+            lote.clear();
+        }
+        fecharConexao();
+    }
+
+    private void gravar(List<Pendente> lote) {
+        for (int tentativa = 1; tentativa <= MAX_TENTATIVAS; tentativa++) {
+            try {
+                inserir(lote);
+                if (tamanhoDosLotes != null) tamanhoDosLotes.record(lote.size());
+                liberar(lote);
+                return;
+            } catch (SQLException e) {
+                fecharConexao();
+                log.warn("Erro ao gravar lote de auditoria ({} eventos), tentativa {}/{}: {}",
+                        lote.size(), tentativa, MAX_TENTATIVAS, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200L * tentativa));
+            }
+        }
+        log.error("Lote de auditoria descartado após {} tentativas ({} eventos)", MAX_TENTATIVAS, lote.size());
+        if (descartadosErro != null) descartadosErro.increment(lote.size());
+        liberar(lote);
+    }
+
+    private void inserir(List<Pendente> lote) throws SQLException {
+        Connection con = conexao();
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement(INSERT_AUDITORIA)) {
+            for (Pendente p : lote) {
+                Evento e = p.evento();
+                if (e.usuarioId() != null) ps.setLong(1, e.usuarioId()); else ps.setNull(1, Types.BIGINT);
+                ps.setTimestamp(2, e.data() != null ? Timestamp.valueOf(e.data()) : null);
+                ps.setString(3, e.nomeEntidade());
+                if (e.idEntidade() != null) ps.setLong(4, e.idEntidade()); else ps.setNull(4, Types.BIGINT);
+                ps.setString(5, e.acao());
+                ps.setString(6, e.dadosAlterados());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Connection conexao() throws SQLException {
+        if (conexao == null || !conexao.isValid(2)) {
+            fecharConexao();
+            conexao = url.isBlank() ? dataSource.getConnection() : DriverManager.getConnection(url, usuario, senha);
+        }
+        return conexao;
+    }
+
+    private void fecharConexao() {
+        if (conexao == null) return;
+        try {
+            conexao.close();
+        } catch (SQLException e) {
+            log.debug("Erro ao fechar conexão da auditoria: {}", e.getMessage());
+        }
+        conexao = null;
+    }
+
+    private static void liberar(List<Pendente> lote) {
+        for (Pendente p : lote) {
+            if (p.gravado() != null) p.gravado().countDown();
+        }
+    }
+
+    /** Grava o que sobrou na fila antes de encerrar */
+    @PreDestroy
+    public void encerrar() {
+        if (gravador == null) return;
+        ativo = false;
+        LockSupport.unpark(gravador);
+        try {
+            gravador.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!fila.isEmpty()) {
+            log.warn("Auditoria encerrada com {} eventos não gravados", tamanho.get());
+        }
+    }
+}
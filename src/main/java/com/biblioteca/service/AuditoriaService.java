@@ -4,12 +4,14 @@ import com.biblioteca.model.Auditoria;
 import com.biblioteca.model.Usuario;
 import com.biblioteca.repository.AuditoriaRepository;
 import com.biblioteca.util.JPAUtil;
+import com.biblioteca.util.MetadadosEntidade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityManager;
-import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 
 import static com.biblioteca.Main.usuarioAtivo;
@@ -20,15 +22,23 @@ import static com.biblioteca.Main.usuarioAtivo;
  * COMPATIBILIDADE DUAL:
  * - Web: Usa Spring Data JPA (@Autowired repository)
  * - Console: Usa JPAUtil tradicional (métodos estáticos mantidos)
+ *
+ * Na web os eventos vão para o {@link AuditoriaFilaService}, que grava em lote
+ * depois do commit da operação.
  */
 @Service
 @Transactional
 public class AuditoriaService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuditoriaService.class);
+
     // ========== DEPENDÊNCIAS SPRING (VERSÃO WEB) ==========
     @Autowired(required = false) // required=false para compatibilidade console
     private AuditoriaRepository auditoriaRepository;
 
+    @Autowired(required = false)
+    private AuditoriaFilaService auditoriaFilaService;
+
     // ========== MÉTODOS WEB (SPRING DATA JPA) ==========
     
     /**
@@ -41,9 +51,7 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = buildAuditoriaWeb(entidade, "INSERT", usuario);
-        auditoria.setDadosAlterados(getDadosAlteradosInsertAndDelete(entidade));
-        auditoriaRepository.save(auditoria);
+        registrarEntidade(entidade, "INSERT", usuario, getDadosAlteradosInsertAndDelete(entidade));
     }
     
     /**
@@ -56,9 +64,7 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = buildAuditoriaWeb(entidadePersistida, "UPDATE", usuario);
-        auditoria.setDadosAlterados(getDadosAlteradosUpdate(entidadeAtualizada, entidadePersistida));
-        auditoriaRepository.save(auditoria);
+        registrarEntidade(entidadePersistida, "UPDATE", usuario, getDadosAlteradosUpdate(entidadeAtualizada, entidadePersistida));
     }
     
     /**
@@ -69,15 +75,8 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = new Auditoria();
-        auditoria.setUsuario(usuario);
-        auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade("Sistema");
-        auditoria.setIdEntidade(usuario != null ? usuario.getId() : null);
-        auditoria.setAcao(sucesso ? "LOGIN_SUCESSO" : "LOGIN_FALHA");
-        auditoria.setDadosAlterados(detalhes);
-        
-        auditoriaRepository.save(auditoria);
+        gravar(usuario, "Sistema", usuario != null ? usuario.getId() : null,
+                sucesso ? "LOGIN_SUCESSO" : "LOGIN_FALHA", detalhes);
     }
 
     /**
@@ -88,15 +87,7 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = new Auditoria();
-        auditoria.setUsuario(usuario);
-        auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade("Sistema");
-        auditoria.setIdEntidade(usuario.getId());
-        auditoria.setAcao("LOGOUT");
-        auditoria.setDadosAlterados("Usuário realizou logout do sistema");
-        
-        auditoriaRepository.save(auditoria);
+        gravar(usuario, "Sistema", usuario.getId(), "LOGOUT", "Usuário realizou logout do sistema");
     }
 
     /**
@@ -107,15 +98,7 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = new Auditoria();
-        auditoria.setUsuario(usuario);
-        auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade("Usuario");
-        auditoria.setIdEntidade(usuario.getId());
-        auditoria.setAcao("MUDANCA_SENHA");
-        auditoria.setDadosAlterados(detalhes);
-        
-        auditoriaRepository.save(auditoria);
+        gravar(usuario, "Usuario", usuario.getId(), "MUDANCA_SENHA", detalhes);
     }
 
     /**
@@ -126,15 +109,8 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = new Auditoria();
-        auditoria.setUsuario(usuario);
-        auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade("Sistema");
-        auditoria.setIdEntidade(usuario != null ? usuario.getId() : null);
-        auditoria.setAcao("ACESSO_NEGADO");
-        auditoria.setDadosAlterados("Tentativa de acesso negado ao recurso: " + recurso + ". " + detalhes);
-        
-        auditoriaRepository.save(auditoria);
+        gravar(usuario, "Sistema", usuario != null ? usuario.getId() : null, "ACESSO_NEGADO",
+                "Tentativa de acesso negado ao recurso: " + recurso + ". " + detalhes);
     }
 
     /**
@@ -145,15 +121,7 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = new Auditoria();
-        auditoria.setUsuario(usuario);
-        auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade(entidade);
-        auditoria.setIdEntidade(idEntidade);
-        auditoria.setAcao(acao);
-        auditoria.setDadosAlterados(detalhes);
-        
-        auditoriaRepository.save(auditoria);
+        gravar(usuario, entidade, idEntidade, acao, detalhes);
     }
 
     /**
@@ -166,22 +134,34 @@ public class AuditoriaService {
             return;
         }
         
-        Auditoria auditoria = buildAuditoriaWeb(entidade, "DELETE", usuario);
-        auditoria.setDadosAlterados(getDadosAlteradosInsertAndDelete(entidade));
-        auditoriaRepository.save(auditoria);
+        registrarEntidade(entidade, "DELETE", usuario, getDadosAlteradosInsertAndDelete(entidade));
     }
     
     /**
-     * Build auditoria para versão web (com usuário parametrizado)
+     * Auditoria de uma entidade para versão web (com usuário parametrizado)
+     */
+    private <E> void registrarEntidade(E entidade, String acao, Usuario usuario, String dadosAlterados) {
+        gravar(usuario, entidade.getClass().getSimpleName(), getEntityIdFromEntityFields(entidade), acao, dadosAlterados);
+    }
+
+    /**
+     * Grava o evento: pela fila em lote (AuditoriaFilaService) ou, sem ela, direto pelo repository
      */
-    private <E> Auditoria buildAuditoriaWeb(E entidade, String acao, Usuario usuario) {
+    private void gravar(Usuario usuario, String entidade, Long idEntidade, String acao, String detalhes) {
+        if (auditoriaFilaService != null && auditoriaFilaService.isAtiva()) {
+            auditoriaFilaService.enfileirar(new AuditoriaFilaService.Evento(usuario != null ? usuario.getId() : null,
+                    LocalDateTime.now(), entidade, idEntidade, acao, detalhes));
+            return;
+        }
+
         Auditoria auditoria = new Auditoria();
         auditoria.setUsuario(usuario);
         auditoria.setData(LocalDateTime.now());
-        auditoria.setNomeEntidade(entidade.getClass().getSimpleName());
-        auditoria.setIdEntidade(getEntityIdFromEntityFields(entidade));
+        auditoria.setNomeEntidade(entidade);
+        auditoria.setIdEntidade(idEntidade);
         auditoria.setAcao(acao);
-        return auditoria;
+        auditoria.setDadosAlterados(detalhes);
+        auditoriaRepository.save(auditoria);
     }
 
     // ========== MÉTODOS CONSOLE (COMPATIBILIDADE) ==========
@@ -216,42 +196,32 @@ public class AuditoriaService {
         return auditoria;
     }
 
+    // Metadados (id e toString) resolvidos uma vez por classe em MetadadosEntidade
     public static <E> String getDadosAlteradosInsertAndDelete(E entidade) {
         try {
-            return (String) entidade.getClass().getDeclaredMethod("toString").invoke(entidade, null);
+            return MetadadosEntidade.de(entidade.getClass()).serializar(entidade);
         } catch (Exception e) {
-            System.out.println(e.getMessage());
+            log.warn("Erro ao serializar {} para auditoria: {}", entidade.getClass().getSimpleName(), e.getMessage());
         }
         return "";
     }
 
     public static <E, T> String getDadosAlteradosUpdate(E entidadeAtualizada, T entidadePersistida) {
         try {
-            String dadosAtualizados = (String) entidadeAtualizada.getClass().getDeclaredMethod("toString").invoke(entidadeAtualizada, null);
-            String dadosPersistidos = (String) entidadePersistida.getClass().getDeclaredMethod("toString").invoke(entidadePersistida, null);
+            String dadosAtualizados = MetadadosEntidade.de(entidadeAtualizada.getClass()).serializar(entidadeAtualizada);
+            String dadosPersistidos = MetadadosEntidade.de(entidadePersistida.getClass()).serializar(entidadePersistida);
             return "Dados Atualizados = " + dadosAtualizados + "; Dados Anteriores = " + dadosPersistidos;
         } catch (Exception e) {
-            System.out.println(e.getMessage());
+            log.warn("Erro ao serializar {} para auditoria: {}", entidadeAtualizada.getClass().getSimpleName(), e.getMessage());
         }
         return "";
     }
 
     public static <E> Long getEntityIdFromEntityFields(E entity) {
-        Field[] entityFields = entity.getClass().getDeclaredFields();
-
         try {
-            for (Field entityField : entityFields) {
-                entityField.setAccessible(Boolean.TRUE);
-                String entityFieldName = entityField.getName();
-                Object entityFieldValue = entityField.get(entity);
-                entityField.setAccessible(Boolean.FALSE);
-
-                if (entityFieldName.equals("id")) {
-                    return Long.parseLong(entityFieldValue.toString());
-                }
-            }
+            return MetadadosEntidade.de(entity.getClass()).id(entity);
         } catch(Exception e) {
-            System.out.println("Erro na busca do entityId ao criar auditoria");
+            log.warn("Erro na busca do entityId ao criar auditoria: {}", e.getMessage());
         }
         return null;
     }
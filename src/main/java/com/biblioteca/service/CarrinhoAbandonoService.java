@@ -0,0 +1,175 @@
+package com.biblioteca.service;
+
+import com.biblioteca.repository.CarrinhoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remove carrinhos abandonados: parados há mais de {@code carrinho.abandono.ttl-dias}
+ * (coluna indexada {@code atualizado_em}).
+ *
+ * Trabalha em lotes de {@code carrinho.abandono.lote} carrinhos, cada um na sua
+ * transação: bloqueia os que continuam parados e apaga linhas e carrinhos com dois
+ * DELETE ... IN, sem carregar entidades. Depois do commit libera as reservas de
+ * estoque dos clientes (um DELETE para o lote) e invalida carrinhos em sessão.
+ * Carrinhos usados em compras de fornecedor não são tocados.
+ */
+@Service
+public class CarrinhoAbandonoService {
+
+    private static final Logger log = LoggerFactory.getLogger(CarrinhoAbandonoService.class);
+
+    /** Resultado de uma execução */
+    public record Resultado(LocalDateTime executadoEm, int carrinhos, int linhas, int reservas, int lotes) {}
+
+    @Value("${carrinho.abandono.ttl-dias:7}")
+    private int ttlDias;
+
+    @Value("${carrinho.abandono.lote:500}")
+    private int tamanhoLote;
+
+    @Value("${carrinho.abandono.max-lotes:100}")
+    private int maxLotes;
+
+    @Autowired(required = false)
+    private CarrinhoRepository carrinhoRepository;
+
+    @Autowired(required = false)
+    private ReservaEstoqueService reservaEstoqueService;
+
+    @Autowired(required = false)
+    private CarrinhoWriteBehindService carrinhoWriteBehindService;
+
+    @Autowired(required = false)
+    private CarrinhoPorCliente carrinhoPorCliente;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Counter carrinhosRemovidos;
+    private Counter linhasRemovidas;
+
+    private volatile Resultado ultimaExecucao;
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            carrinhosRemovidos = Counter.builder("carrinhos.abandonados.removidos")
+                    .description("Carrinhos abandonados removidos")
+                    .register(meterRegistry);
+            linhasRemovidas = Counter.builder("carrinhos.abandonados.linhas")
+                    .description("Linhas de carrinhos abandonados removidas")
+                    .register(meterRegistry);
+        }
+    }
+
+    /** Carrinhos sem data de alteração (criados antes da coluna) começam a contar o TTL agora. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preencherDatas() {
+        if (carrinhoRepository == null || transactionManager == null) return;
+        try {
+            Integer preenchidos = new TransactionTemplate(transactionManager)
+                    .execute(status -> carrinhoRepository.fillMissingUpdatedAt(LocalDateTime.now()));
+            if (preenchidos != null && preenchidos > 0) {
+                log.info("Carrinhos sem data de alteração marcados: {}", preenchidos);
+            }
+        } catch (Exception e) {
+            log.error("Erro ao preencher datas de alteração dos carrinhos", e);
+        }
+    }
+
+    @Scheduled(cron = "${carrinho.abandono.cron:0 0 4 * * *}")
+    public void executarAgendado() {
+        try {
+            executar();
+        } catch (Exception e) {
+            log.error("Erro na limpeza de carrinhos abandonados", e);
+        }
+    }
+
+    /** Executa a limpeza até esgotar os carrinhos vencidos ou atingir {@code max-lotes}. */
+    public Resultado executar() {
+        if (carrinhoRepository == null || transactionManager == null) {
+            return new Resultado(LocalDateTime.now(), 0, 0, 0, 0);
+        }
+        LocalDateTime limite = LocalDateTime.now().minusDays(ttlDias);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int carrinhos = 0, linhas = 0, reservas = 0, lotes = 0;
+
+        while (lotes < maxLotes) {
+            List<Object[]> candidatos = carrinhoRepository.findIdleBefore(limite, PageRequest.of(0, tamanhoLote));
+            if (candidatos.isEmpty()) break;
+            Map<Long, Long> clientePorCarrinho = new HashMap<>();
+            for (Object[] linha : candidatos) {
+                clientePorCarrinho.put((Long) linha[0], (Long) linha[1]);
+            }
+
+            int[] removidos = tx.execute(status -> {
+                List<Long> bloqueados = carrinhoRepository.lockIdle(clientePorCarrinho.keySet(), limite);
+                if (bloqueados.isEmpty()) return new int[]{0, 0};
+                int l = carrinhoRepository.deleteLinesByCarrinhoIds(bloqueados);
+                int c = carrinhoRepository.deleteByIds(bloqueados);
+                clientePorCarrinho.keySet().retainAll(bloqueados);
+                return new int[]{c, l};
+            });
+            lotes++;
+            if (removidos == null || removidos[0] == 0) {
+                // Todos editados desde a leitura; a próxima leitura já não os traz
+                if (candidatos.size() < tamanhoLote) break;
+                continue;
+            }
+            carrinhos += removidos[0];
+            linhas += removidos[1];
+
+            List<Long> clientes = new ArrayList<>(clientePorCarrinho.values());
+            if (carrinhoPorCliente != null) {
+                clientes.forEach(carrinhoPorCliente::esquecer);
+            }
+            if (carrinhoWriteBehindService != null) {
+                clientes.forEach(carrinhoWriteBehindService::invalidar);
+            }
+            if (reservaEstoqueService != null) {
+                reservas += reservaEstoqueService.liberarTodas(clientes);
+            }
+            if (candidatos.size() < tamanhoLote) break;
+        }
+
+        if (carrinhosRemovidos != null) {
+            carrinhosRemovidos.increment(carrinhos);
+            linhasRemovidas.increment(linhas);
+        }
+        Resultado resultado = new Resultado(LocalDateTime.now(), carrinhos, linhas, reservas, lotes);
+        ultimaExecucao = resultado;
+        if (carrinhos > 0 || lotes >= maxLotes) {
+            log.info("Carrinhos abandonados removidos: {} ({} linhas, {} reservas liberadas) em {} lote(s){}",
+                    carrinhos, linhas, reservas, lotes, lotes >= maxLotes ? "; restante fica para a próxima execução" : "");
+        }
+        return resultado;
+    }
+
+    /** Última execução (null se ainda não rodou) */
+    public Resultado getUltimaExecucao() {
+        return ultimaExecucao;
+    }
+}
@@ -0,0 +1,178 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Carrinho;
+import com.biblioteca.model.Usuario;
+import com.biblioteca.repository.CarrinhoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Carrinho de cada cliente: um por cliente (índice único {@code uk_carrinhos_cliente_ativo}
+ * sobre cliente_id + ativo; carrinhos de compras de fornecedor têm ativo NULL e ficam fora).
+ *
+ * A criação é um INSERT IGNORE sobre o índice: duas requisições simultâneas do mesmo
+ * cliente (duas abas, clique duplo) criam um único carrinho, sem exceção para quem
+ * perde a corrida. A releitura depois do insert é com lock (lê o último commit, não o
+ * snapshot da transação). Se o carrinho some entre o insert e a leitura (finalizado
+ * ou removido pela limpeza), tenta de novo.
+ *
+ * O id do carrinho de cada cliente fica em cache: a busca vira um find pela chave
+ * primária (resolvido no contexto de persistência quando já carregado) e a criação
+ * nem é tentada. Id em cache de carrinho apagado só custa uma busca vazia, porque ids
+ * não se repetem; mesmo assim quem apaga carrinhos chama {@link #esquecer(Long)}.
+ *
+ * Deve ser chamado dentro de transação (INSERT e SELECT ... FOR UPDATE).
+ *
+ * O schema vem do ddl-auto, que não consegue criar o índice se já houver duplicados;
+ * na subida {@link #garantirUnicidade()} marca a coluna ativo, remove os duplicados e
+ * cria o índice se ele não existir.
+ */
+@Component
+public class CarrinhoPorCliente {
+
+    private static final Logger log = LoggerFactory.getLogger(CarrinhoPorCliente.class);
+
+    private static final int MAX_TENTATIVAS = 3;
+    private static final String INDICE_UNICO = "uk_carrinhos_cliente_ativo";
+    private static final String INDICE_ANTIGO = "uk_carrinhos_cliente";
+
+    /** Carrinho obtido e se foi criado nesta chamada */
+    public record Resultado(Carrinho carrinho, boolean criado) {}
+
+    @Autowired(required = false)
+    private CarrinhoRepository carrinhoRepository;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    private final Map<Long, Long> idPorCliente = new ConcurrentHashMap<>();
+
+    /**
+     * Carrinhos de compras duplicados (criados antes do índice) saem, fica o alterado por
+     * último; depois cria o índice único se o ddl-auto não conseguiu.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void garantirUnicidade() {
+        if (carrinhoRepository == null || transactionManager == null || dataSource == null) return;
+        try {
+            int[] resultado = new TransactionTemplate(transactionManager).execute(status -> {
+                int marcados = carrinhoRepository.fillMissingActive();
+                List<Long> duplicados = carrinhoRepository.findDuplicateActiveIds();
+                if (!duplicados.isEmpty()) {
+                    carrinhoRepository.deleteLinesByCarrinhoIds(duplicados);
+                    carrinhoRepository.deleteByIds(duplicados);
+                }
+                return new int[]{marcados, duplicados.size()};
+            });
+            if (resultado != null && resultado[1] > 0) {
+                log.warn("Carrinhos duplicados removidos: {}", resultado[1]);
+            }
+            criarIndiceSeAusente();
+        } catch (Exception e) {
+            log.error("Erro ao garantir um carrinho por cliente", e);
+        }
+    }
+
+    private void criarIndiceSeAusente() throws Exception {
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            // Versão anterior do índice (só cliente_id) barrava carrinhos de compras de fornecedor
+            if (indiceExiste(con, INDICE_ANTIGO)) {
+                st.execute("DROP INDEX " + INDICE_ANTIGO + " ON carrinhos");
+            }
+            if (!indiceExiste(con, INDICE_UNICO)) {
+                st.execute("CREATE UNIQUE INDEX " + INDICE_UNICO + " ON carrinhos(cliente_id, ativo)");
+                log.info("Índice {} criado", INDICE_UNICO);
+            }
+        }
+    }
+
+    private static boolean indiceExiste(Connection con, String nome) throws Exception {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'carrinhos' AND index_name = ?")) {
+            ps.setString(1, nome);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /** Carrinho existente do cliente, sem criar um novo */
+    public Optional<Carrinho> buscar(Usuario cliente) {
+        Long clienteId = cliente.getId();
+        Long id = idPorCliente.get(clienteId);
+        if (id != null) {
+            Optional<Carrinho> emCache = carrinhoRepository.findById(id);
+            if (emCache.isPresent()) {
+                return emCache;
+            }
+            idPorCliente.remove(clienteId, id);
+        }
+        Optional<Carrinho> existente = carrinhoRepository.findByCliente(cliente);
+        existente.ifPresent(c -> lembrar(clienteId, c, false));
+        return existente;
+    }
+
+    public Resultado obterOuCriar(Usuario cliente) {
+        Long clienteId = cliente.getId();
+        for (int tentativa = 1; tentativa <= MAX_TENTATIVAS; tentativa++) {
+            Long id = idPorCliente.get(clienteId);
+            if (id != null) {
+                Optional<Carrinho> emCache = carrinhoRepository.findById(id);
+                if (emCache.isPresent()) {
+                    return new Resultado(emCache.get(), false);
+                }
+                idPorCliente.remove(clienteId, id);
+            }
+
+            Optional<Carrinho> existente = carrinhoRepository.findByCliente(cliente);
+            if (existente.isPresent()) {
+                return lembrar(clienteId, existente.get(), false);
+            }
+
+            int inseridos = carrinhoRepository.insertIfAbsent(clienteId,
+                    cliente.getNome() != null ? cliente.getNome() : "",
+                    cliente.getCpf() != null ? cliente.getCpf() : "",
+                    cliente.getEmail() != null ? cliente.getEmail() : "",
+                    cliente.getEndereco() != null ? cliente.getEndereco() : "",
+                    LocalDateTime.now());
+            Optional<Carrinho> criado = carrinhoRepository.findByClienteIdForUpdate(clienteId);
+            if (criado.isPresent()) {
+                return lembrar(clienteId, criado.get(), inseridos > 0);
+            }
+        }
+        throw new IllegalStateException("Não foi possível obter o carrinho do cliente " + clienteId);
+    }
+
+    /** Descarta o id em cache (carrinho apagado) */
+    public void esquecer(Long clienteId) {
+        if (clienteId != null) {
+            idPorCliente.remove(clienteId);
+        }
+    }
+
+    private Resultado lembrar(Long clienteId, Carrinho carrinho, boolean criado) {
+        idPorCliente.put(clienteId, carrinho.getId());
+        return new Resultado(carrinho, criado);
+    }
+}
@@ -5,14 +5,16 @@ import com.biblioteca.repository.CarrinhoRepository;
 import com.biblioteca.repository.LivroRepository;
 import com.biblioteca.repository.VendaRepository;
 import com.biblioteca.service.DocumentoFiscalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
-import java.util.Optional;
-
 /**
  * Service para operações de Carrinho e fechamento de Venda.
  */
@@ -20,6 +22,8 @@ import java.util.Optional;
 @Transactional
 public class CarrinhoService {
 
+    private static final Logger log = LoggerFactory.getLogger(CarrinhoService.class);
+
     @Autowired(required = false)
     private CarrinhoRepository carrinhoRepository;
 
@@ -34,32 +38,41 @@ public class CarrinhoService {
     
     @Autowired(required = false)
     private UsuarioService usuarioService;
+    
+    @Autowired(required = false)
+    private CarrinhoWriteBehindService carrinhoWriteBehindService;
+
+    @Autowired(required = false)
+    private CarrinhoPorCliente carrinhoPorCliente;
+
+    @Autowired(required = false)
+    private ReservaEstoqueService reservaEstoqueService;
+
+    @Autowired(required = false)
+    private DocumentoFiscalFilaService documentoFiscalFilaService;
+
+    /** Copia título e preço para linhas gravadas antes da cópia (sem isso exibir o carrinho carregaria o Livro). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preencherPrecosDasLinhas(){
+        if(carrinhoRepository==null) return;
+        int preenchidas = carrinhoRepository.fillMissingLinePrices();
+        if(preenchidas > 0){
+            log.info("Linhas de carrinho com preço copiado do livro: {}", preenchidas);
+        }
+    }
 
-    /** Obtém o carrinho ativo do cliente ou cria um novo */
+    /** Obtém o carrinho ativo do cliente ou cria um novo (um por cliente, seguro sob concorrência) */
     public Carrinho obterOuCriarCarrinho(Usuario cliente){
-        if(carrinhoRepository!=null){
-            Carrinho car = carrinhoRepository.findByCliente(cliente).orElseGet(() -> {
-                Carrinho c = new Carrinho();
-                c.setCliente(cliente);
-
-                // Preenche dados do cliente para evitar campos NOT NULL nulos
-                String nome = cliente.getNome()!=null ? cliente.getNome() : "";
-                String cpf = cliente.getCpf()!=null ? cliente.getCpf() : "";
-                String email = cliente.getEmail()!=null ? cliente.getEmail() : "";
-                String endereco = cliente.getEndereco()!=null ? cliente.getEndereco() : "";
-                c.setDadosCliente(new DadosCliente(nome, cpf, email, endereco));
-
-                c.setTotal(0.0);
-                Carrinho carrinhoSalvo = carrinhoRepository.save(c);
-                
-                // Registrar auditoria de criação do carrinho
-                if (auditoriaService != null) {
-                    auditoriaService.registrarOperacao(cliente, "Carrinho", carrinhoSalvo.getId(), "CRIAR_CARRINHO", 
-                        "Carrinho criado para o cliente: " + cliente.getNome());
-                }
-                
-                return carrinhoSalvo;
-            });
+        if(carrinhoRepository!=null && carrinhoPorCliente!=null){
+            CarrinhoPorCliente.Resultado resultado = carrinhoPorCliente.obterOuCriar(cliente);
+            Carrinho car = resultado.carrinho();
+
+            // Registrar auditoria de criação do carrinho (só quem de fato inseriu)
+            if (resultado.criado() && auditoriaService != null) {
+                auditoriaService.registrarOperacao(cliente, "Carrinho", car.getId(), "CRIAR_CARRINHO", 
+                    "Carrinho criado para o cliente: " + cliente.getNome());
+            }
+
             // Inicializa coleção para uso fora da transação
             car.getLivros().size();
             return car;
@@ -71,15 +84,26 @@ public class CarrinhoService {
         return c;
     }
 
+    /** Carrinho já existente do cliente, sem criar (nem auditar) um novo */
+    public java.util.Optional<Carrinho> buscarCarrinho(Usuario cliente){
+        if(carrinhoRepository!=null && carrinhoPorCliente!=null){
+            return carrinhoPorCliente.buscar(cliente);
+        }
+        return java.util.Optional.empty();
+    }
+
     /** Adiciona livro ao carrinho */
     public Carrinho adicionarLivro(Carrinho carrinho, Livro livro, int quantidade){
-        // atualiza quantidade estoque
-        if(livro.getQuantidadeEstoque()!=null && livro.getQuantidadeEstoque() < quantidade){
+        if(reservaEstoqueService!=null && carrinho.getCliente()!=null){
+            // reserva temporária das unidades (falha se não houver estoque livre)
+            reservaEstoqueService.reservar(carrinho.getCliente().getId(), livro,
+                    carrinho.quantidadeDoLivro(livro.getId()) + quantidade);
+        } else if(livro.getQuantidadeEstoque()!=null && livro.getQuantidadeEstoque() < quantidade){
             throw new RuntimeException("Estoque insuficiente");
         }
         carrinho.adicionarLivro(livro, quantidade);
-        carrinho.calcularTotal();
         if(carrinhoRepository!=null){
+            carrinho.setAtualizadoEm(java.time.LocalDateTime.now());
             carrinho = carrinhoRepository.save(carrinho);
             
             // Registrar auditoria de adição de livro
@@ -93,9 +117,12 @@ public class CarrinhoService {
 
     /** Remove livro ou quantidade */
     public Carrinho removerLivro(Carrinho carrinho, Livro livro, int quantidade){
-        carrinho.removerLivro(livro.getTitulo(), quantidade);
-        carrinho.calcularTotal();
+        carrinho.removerLivro(livro.getId(), quantidade);
+        if(reservaEstoqueService!=null && carrinho.getCliente()!=null){
+            reservaEstoqueService.reservar(carrinho.getCliente().getId(), livro, carrinho.quantidadeDoLivro(livro.getId()));
+        }
         if(carrinhoRepository!=null){
+            carrinho.setAtualizadoEm(java.time.LocalDateTime.now());
             carrinho = carrinhoRepository.save(carrinho);
             
             // Registrar auditoria de remoção de livro
@@ -119,6 +146,7 @@ public class CarrinhoService {
                 
                 // Remove o carrinho do banco de dados
                 carrinhoRepository.delete(carrinho);
+                invalidarCarrinhoEmSessao(carrinho);
             } else {
                 // Se não tem repository, limpa os itens em memória
                 carrinho.getLivros().clear();
@@ -132,8 +160,8 @@ public class CarrinhoService {
         if(carrinho.getLivros().isEmpty()){
             throw new RuntimeException("Carrinho vazio");
         }
-        // Recalcula total com base nos itens e tipo (COMPRA padrão)
-        carrinho.calcularTotal("ALUGUEL".equalsIgnoreCase(tipoPagamento));
+        // Total mantido pelo carrinho, conforme o tipo (COMPRA padrão)
+        double totalVenda = carrinho.calcularTotal("ALUGUEL".equalsIgnoreCase(tipoPagamento));
 
         // Cria venda
         Venda venda = new Venda();
@@ -142,29 +170,43 @@ public class CarrinhoService {
         venda.setClienteCpf(carrinho.getCliente().getCpf());
         venda.setClienteEmail(carrinho.getCliente().getEmail());
         venda.setClienteEndereco(carrinho.getCliente().getEndereco());
-        venda.setValorTotal(carrinho.getTotal());
+        venda.setValorTotal(totalVenda);
         venda.setDataVenda(java.time.LocalDateTime.now());
         venda.setTipoPagamento(tipoPagamento);
         venda.setStatus("PAGO");
 
-        // Converte itens
+        // Converte itens e agrega as quantidades por livro
+        java.util.Map<Long, Integer> quantidades = new java.util.HashMap<>();
         for(LivroCarrinho lc: carrinho.getLivros()){
-            ItemVenda iv = new ItemVenda(lc.getLivro(), lc.getQuantidade());
-            venda.addItem(iv);
-            // diminuir estoque
-            Livro livro = lc.getLivro();
-            if(livroRepository!=null){
-                Optional<Livro> opt = livroRepository.findById(livro.getId());
-                if(opt.isPresent()){
-                    Livro l = opt.get();
-                    l.setQuantidadeEstoque(l.getQuantidadeEstoque()==null?null:l.getQuantidadeEstoque()-lc.getQuantidade());
-                    livroRepository.save(l);
+            venda.addItem(new ItemVenda(lc.getLivro(), lc.getQuantidade(), lc.getValorUnitario()));
+            quantidades.merge(lc.getLivroId(), lc.getQuantidade(), Integer::sum);
+        }
+
+        // Baixa o estoque de todos os livros num único UPDATE (tudo ou nada),
+        // sem vender unidades reservadas nos carrinhos de outros clientes
+        if(livroRepository!=null){
+            java.util.Map<Long, Integer> reservadoPorOutros = new java.util.HashMap<>();
+            if(reservaEstoqueService!=null){
+                for(Long livroId: quantidades.keySet()){
+                    reservadoPorOutros.put(livroId, reservaEstoqueService.reservadoPorOutros(livroId, carrinho.getCliente().getId()));
                 }
             }
+            java.util.List<Long> semEstoque = livroRepository.baixarEstoqueEmLote(quantidades, reservadoPorOutros);
+            if(!semEstoque.isEmpty()){
+                StringBuilder titulos = new StringBuilder();
+                for(LivroCarrinho lc: carrinho.getLivros()){
+                    if(semEstoque.contains(lc.getLivroId())){
+                        if(titulos.length()>0) titulos.append(", ");
+                        titulos.append(lc.getTitulo());
+                    }
+                }
+                throw new RuntimeException("Estoque insuficiente: " + titulos);
+            }
         }
 
         if(vendaRepository!=null){
-            vendaRepository.save(venda);
+            vendaRepository.inserirComItensEmLote(venda);
+            HistoricoVendas.registrarAposCommit(venda);
         }
         
         // Registrar auditoria da finalização da compra
@@ -174,19 +216,74 @@ public class CarrinhoService {
                     venda.getId(), venda.getValorTotal(), tipoPagamento));
         }
 
-        // Gera documentos fiscais (pdf) de forma assíncrona simples
-        new Thread(() -> {
-            try {
-                DocumentoFiscalService.gerarNotaFiscal(venda);
-                DocumentoFiscalService.gerarRecibo(venda);
-            } catch (Exception ignored) {}
-        }).start();
+        // Documentos fiscais (pdf) vão para a fila; gerados após o commit
+        if (documentoFiscalFilaService != null) {
+            documentoFiscalFilaService.enfileirar(venda);
+        } else {
+            DocumentoFiscalService.gerarNotaFiscal(venda);
+            DocumentoFiscalService.gerarRecibo(venda);
+        }
 
         // Remove carrinho
         if(carrinhoRepository!=null){
+            long inicio = CheckoutMetricas.iniciar();
             carrinhoRepository.delete(carrinho);
+            invalidarCarrinhoEmSessao(carrinho);
+            CheckoutMetricas.registrar(CheckoutMetricas.Etapa.LIMPEZA_CARRINHO, inicio);
         }
 
         return venda;
     }
+
+    /** Preço de um livro que mudou desde que entrou no carrinho */
+    public record PrecoAlterado(String titulo, double anterior, double atual) {}
+
+    /**
+     * Confere os preços copiados nas linhas com os atuais (uma consulta por id, sem
+     * carregar Livro); linhas com preço diferente são atualizadas e os totais recalculados.
+     *
+     * @return alterações encontradas (vazia se nada mudou)
+     */
+    public java.util.List<PrecoAlterado> revalidarPrecos(Carrinho carrinho){
+        if(livroRepository==null || carrinho==null || carrinho.getLivros().isEmpty()){
+            return java.util.List.of();
+        }
+        java.util.Set<Long> ids = new java.util.HashSet<>();
+        for(LivroCarrinho lc: carrinho.getLivros()){
+            if(lc.getLivroId()!=null) ids.add(lc.getLivroId());
+        }
+        java.util.Map<Long, Double> atuais = new java.util.HashMap<>();
+        for(Object[] linha: livroRepository.findPricesByIds(ids)){
+            atuais.put((Long) linha[0], ((Number) linha[1]).doubleValue());
+        }
+
+        java.util.List<PrecoAlterado> alteracoes = new java.util.ArrayList<>();
+        for(LivroCarrinho lc: carrinho.getLivros()){
+            Double atual = atuais.get(lc.getLivroId());
+            if(atual==null || Double.compare(atual, lc.getValorUnitario())==0) continue;
+            alteracoes.add(new PrecoAlterado(lc.getTitulo(), lc.getValorUnitario(), atual));
+            lc.atualizarPrecos(atual);
+            if(lc.getId()!=null && carrinhoRepository!=null){
+                carrinhoRepository.updateLinePrices(lc.getId(), lc.getValorUnitario(), lc.getValorAluguel());
+            }
+        }
+        if(!alteracoes.isEmpty()){
+            carrinho.recalcularTotais();
+        }
+        return alteracoes;
+    }
+
+    /** Descarta edições pendentes em sessão de um carrinho que saiu do banco e libera suas reservas */
+    private void invalidarCarrinhoEmSessao(Carrinho carrinho) {
+        if (carrinho.getCliente() == null) return;
+        if (carrinhoPorCliente != null) {
+            carrinhoPorCliente.esquecer(carrinho.getCliente().getId());
+        }
+        if (carrinhoWriteBehindService != null) {
+            carrinhoWriteBehindService.invalidar(carrinho.getCliente().getId());
+        }
+        if (reservaEstoqueService != null) {
+            reservaEstoqueService.liberarTodasAposCommit(carrinho.getCliente().getId());
+        }
+    }
 } 
\ No newline at end of file
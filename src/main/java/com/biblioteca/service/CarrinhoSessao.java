@@ -0,0 +1,206 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Carrinho;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.LivroCarrinho;
+import com.biblioteca.model.Usuario;
+import com.vaadin.flow.spring.annotation.VaadinSessionScope;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Carrinhos editados na sessão Vaadin.
+ *
+ * As edições (+ / − / excluir / adicionar) são aplicadas apenas em memória e
+ * gravadas de forma agrupada pelo {@link CarrinhoWriteBehindService}. Antes do
+ * checkout a view chama {@link #descarregar(Usuario)} para garantir o banco atualizado.
+ *
+ * O carrinho em memória de cada cliente é único no processo (fica no
+ * CarrinhoWriteBehindService); esta classe só lembra quais clientes a sessão editou
+ * para gravá-los quando a sessão termina.
+ */
+@Component
+@VaadinSessionScope
+public class CarrinhoSessao {
+
+    @Autowired
+    private CarrinhoService carrinhoService;
+
+    @Autowired
+    private CarrinhoWriteBehindService writeBehind;
+
+    @Autowired
+    private ReservaEstoqueService reservaEstoqueService;
+
+    private final Set<Long> clientes = ConcurrentHashMap.newKeySet();
+
+    /** Carrinho do cliente (carregado do banco apenas na primeira vez ou após invalidação). */
+    public Carrinho obter(Usuario cliente) {
+        return comEntrada(cliente, entrada -> entrada.carrinho);
+    }
+
+    /** Cópia das linhas do carrinho (o carrinho é compartilhado; a grid não itera a lista viva) */
+    public List<LivroCarrinho> linhas(Usuario cliente) {
+        return comEntrada(cliente, entrada -> new ArrayList<>(entrada.carrinho.getLivros()));
+    }
+
+    /** Reserva as unidades, adiciona livro ao carrinho em memória e agenda a gravação */
+    public Carrinho adicionarLivro(Usuario cliente, Livro livro, int quantidade) {
+        Entrada entrada = comEntrada(cliente, e -> {
+            int novaQuantidade = e.carrinho.quantidadeDoLivro(livro.getId()) + quantidade;
+            reservaEstoqueService.reservar(cliente.getId(), livro, novaQuantidade);
+            // Livro já no carrinho pode ser só uma referência: o título vem da linha
+            LivroCarrinho linha = e.carrinho.linhaDoLivro(livro);
+            String titulo = linha != null ? linha.getTitulo() : livro.getTitulo();
+            e.carrinho.adicionarLivro(livro, quantidade);
+            e.registrarAlteracao(titulo, quantidade);
+            return e;
+        });
+        writeBehind.agendar(entrada);
+        return entrada.carrinho;
+    }
+
+    /** Remove livro ou quantidade do carrinho em memória, ajusta a reserva e agenda a gravação */
+    public Carrinho removerLivro(Usuario cliente, Livro livro, int quantidade) {
+        Entrada entrada = comEntrada(cliente, e -> {
+            LivroCarrinho linha = e.carrinho.linhaDoLivro(livro);
+            if (linha == null) return e;
+            String titulo = linha.getTitulo();
+            e.carrinho.removerLivro(livro.getId(), quantidade);
+            reservaEstoqueService.reservar(cliente.getId(), livro, e.carrinho.quantidadeDoLivro(livro.getId()));
+            e.registrarAlteracao(titulo, -quantidade);
+            return e;
+        });
+        writeBehind.agendar(entrada);
+        return entrada.carrinho;
+    }
+
+    /**
+     * Revalida os preços do carrinho em memória contra os atuais (antes do checkout).
+     *
+     * @return alterações encontradas; as linhas e os totais já ficam atualizados
+     */
+    public List<CarrinhoService.PrecoAlterado> revalidarPrecos(Usuario cliente) {
+        return comEntrada(cliente, entrada -> carrinhoService.revalidarPrecos(entrada.carrinho));
+    }
+
+    /**
+     * Grava imediatamente as alterações pendentes do cliente (usar antes do checkout).
+     *
+     * @return false se o banco não ficou atualizado (falha na gravação ou carrinho
+     *         finalizado em outro lugar); o checkout não deve prosseguir
+     */
+    public boolean descarregar(Usuario cliente) {
+        Entrada entrada = writeBehind.entradaExistente(cliente.getId());
+        return entrada == null || writeBehind.descarregarAgora(entrada);
+    }
+
+    @PreDestroy
+    public void descarregarTodos() {
+        for (Long clienteId : clientes) {
+            Entrada entrada = writeBehind.entradaExistente(clienteId);
+            if (entrada != null) writeBehind.descarregarAgora(entrada);
+        }
+    }
+
+    // Executa com a entrada travada; entrada liberada por ociosidade entre a busca e o lock é recarregada
+    private <T> T comEntrada(Usuario cliente, Function<Entrada, T> acao) {
+        clientes.add(cliente.getId());
+        while (true) {
+            Entrada entrada = writeBehind.entrada(cliente, carrinhoService::obterOuCriarCarrinho);
+            synchronized (entrada) {
+                if (!entrada.descartada) {
+                    entrada.ultimoUso = System.currentTimeMillis();
+                    return acao.apply(entrada);
+                }
+            }
+        }
+    }
+
+    /** Dados imutáveis capturados para uma gravação. */
+    record Snapshot(Usuario cliente, long geracao, Map<Long, Linha> linhas, double total, double totalAluguel,
+                    Map<String, Integer> alteracoes) {}
+
+    /** Linha agregada por livro, com os preços copiados */
+    record Linha(int quantidade, String titulo, double valorUnitario, double valorAluguel) {}
+
+    /**
+     * Carrinho em memória de um cliente (uma por cliente no processo). Edições
+     * sincronizam na própria entrada; gravações sincronizam em {@link #getLockGravacao()}.
+     */
+    public static class Entrada {
+        private final Usuario cliente;
+        private final Carrinho carrinho;
+        private final long geracao;
+        private final Object lockGravacao = new Object();
+        private boolean sujo;
+        private boolean descartada;
+        private long ultimoUso = System.currentTimeMillis();
+        private Map<String, Integer> alteracoes = new LinkedHashMap<>();
+
+        Entrada(Usuario cliente, Carrinho carrinho, long geracao) {
+            this.cliente = cliente;
+            this.carrinho = carrinho;
+            this.geracao = geracao;
+        }
+
+        public Long getClienteId() {
+            return cliente.getId();
+        }
+
+        long getGeracao() {
+            return geracao;
+        }
+
+        synchronized boolean isDescartada() {
+            return descartada;
+        }
+
+        /** Sai da memória se não há edição pendente e não foi usada desde {@code limite} */
+        synchronized boolean descartarSeOciosa(long limite) {
+            if (!sujo && ultimoUso < limite) {
+                descartada = true;
+            }
+            return descartada;
+        }
+
+        Object getLockGravacao() {
+            return lockGravacao;
+        }
+
+        void registrarAlteracao(String titulo, int delta) {
+            alteracoes.merge(titulo, delta, Integer::sum);
+            sujo = true;
+        }
+
+        synchronized Snapshot capturarSeSujo() {
+            if (!sujo) return null;
+            Map<Long, Linha> linhas = new LinkedHashMap<>();
+            for (LivroCarrinho lc : carrinho.getLivros()) {
+                linhas.merge(lc.getLivroId(),
+                        new Linha(lc.getQuantidade(), lc.getTitulo(), lc.getValorUnitario(), lc.getValorAluguel()),
+                        (a, b) -> new Linha(a.quantidade() + b.quantidade(), a.titulo(), a.valorUnitario(), a.valorAluguel()));
+            }
+            Snapshot snapshot = new Snapshot(cliente, geracao, linhas,
+                    carrinho.calcularTotal(false), carrinho.calcularTotal(true), alteracoes);
+            alteracoes = new LinkedHashMap<>();
+            sujo = false;
+            return snapshot;
+        }
+
+        /** Falha na gravação: mantém a entrada suja para a próxima tentativa. */
+        synchronized void restaurar(Snapshot snapshot) {
+            snapshot.alteracoes().forEach((titulo, delta) -> alteracoes.merge(titulo, delta, Integer::sum));
+            sujo = true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Carrinho;
+import com.biblioteca.model.LivroCarrinho;
+import com.biblioteca.model.Usuario;
+import com.biblioteca.repository.CarrinhoRepository;
+import com.biblioteca.repository.LivroRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Persistência write-behind dos carrinhos mantidos em sessão (ver {@link CarrinhoSessao}).
+ *
+ * Cada edição reagenda a gravação do carrinho; só a última dentro da janela
+ * ({@code carrinho.write-behind.atraso-ms}) chega ao banco, com uma única linha
+ * de auditoria agregando todas as alterações.
+ *
+ * Quando o carrinho é limpo/finalizado no banco, {@link #invalidar(Long)} incrementa
+ * a geração do cliente: gravações pendentes são descartadas e as sessões recarregam.
+ *
+ * As entradas em memória são uma por cliente no processo (não por sessão): o
+ * funcionário editando o carrinho de um cliente e o próprio cliente em outra sessão
+ * mexem no mesmo carrinho, e uma gravação não apaga a edição da outra. Entradas sem
+ * edição pendente e sem uso há {@code carrinho.memoria.ocioso-minutos} saem da memória.
+ */
+@Service
+public class CarrinhoWriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(CarrinhoWriteBehindService.class);
+
+    @Value("${carrinho.write-behind.atraso-ms:2000}")
+    private long atrasoMs;
+
+    @Value("${carrinho.memoria.ocioso-minutos:30}")
+    private long ociosoMinutos;
+
+    @Autowired(required = false)
+    private CarrinhoRepository carrinhoRepository;
+
+    @Autowired(required = false)
+    private LivroRepository livroRepository;
+
+    @Autowired(required = false)
+    private CarrinhoPorCliente carrinhoPorCliente;
+
+    @Autowired(required = false)
+    private AuditoriaService auditoriaService;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "carrinho-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Long, ScheduledFuture<?>> pendentes = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> geracoes = new ConcurrentHashMap<>();
+    private final Map<Long, CarrinhoSessao.Entrada> entradas = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void iniciar() {
+        agendador.scheduleAtFixedRate(this::liberarOciosas, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /** Entrada do cliente, compartilhada por todas as sessões; recarrega se o carrinho foi invalidado. */
+    CarrinhoSessao.Entrada entrada(Usuario cliente, Function<Usuario, Carrinho> carregar) {
+        return entradas.compute(cliente.getId(), (id, atual) -> {
+            long geracao = geracao(id);
+            if (atual == null || atual.getGeracao() != geracao || atual.isDescartada()) {
+                return new CarrinhoSessao.Entrada(cliente, carregar.apply(cliente), geracao);
+            }
+            return atual;
+        });
+    }
+
+    /** Entrada do cliente se estiver em memória */
+    CarrinhoSessao.Entrada entradaExistente(Long clienteId) {
+        return entradas.get(clienteId);
+    }
+
+    private void liberarOciosas() {
+        long limite = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ociosoMinutos);
+        entradas.forEach((clienteId, entrada) -> {
+            if (entrada.descartarSeOciosa(limite)) {
+                entradas.remove(clienteId, entrada);
+            }
+        });
+    }
+
+    /** Geração atual do carrinho do cliente no banco. */
+    public long geracao(Long clienteId) {
+        return geracoes.computeIfAbsent(clienteId, k -> new AtomicLong()).get();
+    }
+
+    /** Carrinho do cliente foi limpo/finalizado no banco: descarta o que estiver pendente. */
+    public void invalidar(Long clienteId) {
+        if (clienteId == null) return;
+        geracoes.computeIfAbsent(clienteId, k -> new AtomicLong()).incrementAndGet();
+        entradas.remove(clienteId);
+        ScheduledFuture<?> pendente = pendentes.remove(clienteId);
+        if (pendente != null) pendente.cancel(false);
+    }
+
+    /** Agenda (ou reagenda) a gravação do carrinho após a janela de debounce. */
+    public void agendar(CarrinhoSessao.Entrada entrada) {
+        Long clienteId = entrada.getClienteId();
+        ScheduledFuture<?> novo = agendador.schedule(() -> descarregar(entrada), atrasoMs, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> anterior = pendentes.put(clienteId, novo);
+        if (anterior != null) anterior.cancel(false);
+    }
+
+    /**
+     * Grava imediatamente (antes do checkout ou no fim da sessão).
+     *
+     * @return true se o banco ficou com o carrinho em memória; false se a gravação
+     *         falhou (a entrada continua suja) ou se o carrinho foi limpo/finalizado
+     *         por outro caminho e as edições foram descartadas
+     */
+    public boolean descarregarAgora(CarrinhoSessao.Entrada entrada) {
+        ScheduledFuture<?> pendente = pendentes.remove(entrada.getClienteId());
+        if (pendente != null) pendente.cancel(false);
+        return descarregar(entrada);
+    }
+
+    private boolean descarregar(CarrinhoSessao.Entrada entrada) {
+        if (carrinhoRepository == null || carrinhoPorCliente == null || transactionManager == null) return true;
+        synchronized (entrada.getLockGravacao()) {
+            if (entrada.getGeracao() != geracao(entrada.getClienteId())) {
+                // Carrinho foi finalizado/limpo depois destas edições: nada a gravar
+                return false;
+            }
+            CarrinhoSessao.Snapshot snapshot = entrada.capturarSeSujo();
+            if (snapshot == null) return true;
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> gravar(snapshot));
+                return true;
+            } catch (Exception e) {
+                log.error("Erro ao gravar carrinho do cliente {}", entrada.getClienteId(), e);
+                entrada.restaurar(snapshot);
+                return false;
+            }
+        }
+    }
+
+    private void gravar(CarrinhoSessao.Snapshot snapshot) {
+        Usuario cliente = snapshot.cliente();
+        Carrinho gerenciado = carrinhoPorCliente.obterOuCriar(cliente).carrinho();
+
+        // Reconcilia as linhas por livro (diff), sem recriar as que não mudaram
+        Map<Long, CarrinhoSessao.Linha> desejado = new java.util.HashMap<>(snapshot.linhas());
+        Iterator<LivroCarrinho> it = gerenciado.getLivros().iterator();
+        while (it.hasNext()) {
+            LivroCarrinho lc = it.next();
+            CarrinhoSessao.Linha linha = desejado.remove(lc.getLivroId());
+            if (linha == null || linha.quantidade() <= 0) {
+                it.remove();
+            } else if (lc.getQuantidade() != linha.quantidade()) {
+                lc.setQuantidade(linha.quantidade());
+            }
+        }
+        // Linhas novas levam os preços copiados; o livro entra só como referência
+        desejado.forEach((livroId, linha) -> {
+            if (linha.quantidade() > 0) {
+                gerenciado.getLivros().add(new LivroCarrinho(livroRepository.getReferenceById(livroId),
+                        linha.quantidade(), linha.titulo(), linha.valorUnitario(), linha.valorAluguel()));
+            }
+        });
+        gerenciado.setTotal(snapshot.total());
+        gerenciado.setTotalAluguel(snapshot.totalAluguel());
+        // Mudança só nas linhas não suja o carrinho; marca a atualização explicitamente
+        gerenciado.setAtualizadoEm(java.time.LocalDateTime.now());
+        Carrinho salvo = carrinhoRepository.save(gerenciado);
+
+        if (auditoriaService != null && !snapshot.alteracoes().isEmpty()) {
+            StringBuilder sb = new StringBuilder("Carrinho atualizado:");
+            snapshot.alteracoes().forEach((titulo, delta) ->
+                    sb.append(' ').append(delta > 0 ? "+" : "").append(delta).append(" '").append(titulo).append("';"));
+            auditoriaService.registrarOperacao(cliente, "Carrinho", salvo.getId(), "ATUALIZAR_CARRINHO", sb.toString());
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdown();
+        try {
+            agendador.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.biblioteca.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo de cada etapa do checkout ({@code checkout.etapa}, tag {@code etapa}).
+ *
+ * O checkout passa por código estático (PagamentoService, CheckoutDialog), por isso
+ * os timers ficam em campo estático: até o Spring subir (ou no modo console) vão
+ * para um SimpleMeterRegistry local; depois, para o registry do actuator.
+ *
+ * Uso: {@code long t = CheckoutMetricas.iniciar(); ...; CheckoutMetricas.registrar(Etapa.X, t);}
+ * — só System.nanoTime() e o registro no histograma do Timer, sem lambdas nem alocação.
+ */
+@Component
+public class CheckoutMetricas {
+
+    public enum Etapa {
+        VALIDACAO_CPF("validacao_cpf", "Validação do CPF"),
+        CALCULO_TOTAL("calculo_total", "Cálculo do total"),
+        SESSAO_GATEWAY("sessao_gateway", "Criação da sessão no gateway"),
+        PERSISTENCIA("persistencia", "Gravação da venda"),
+        SESSAO_TOTAL("sessao_total", "Criação da sessão (total)"),
+        AUDITORIA("auditoria", "Auditoria da venda"),
+        CHECKOUT_DIALOGO("checkout_dialogo", "Checkout na tela (clique até redirecionar)"),
+        CONFIRMACAO_RETORNO("confirmacao_retorno", "Confirmação no retorno"),
+        CONFIRMACAO_WEBHOOK("confirmacao_webhook", "Confirmação via webhook"),
+        LIMPEZA_CARRINHO("limpeza_carrinho", "Remoção do carrinho");
+
+        private final String tag;
+        private final String descricao;
+
+        Etapa(String tag, String descricao) {
+            this.tag = tag;
+            this.descricao = descricao;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+
+    /** Resumo de uma etapa para exibição (tempos em milissegundos) */
+    public record ResumoEtapa(Etapa etapa, long amostras, double mediaMs, double p50Ms, double p95Ms,
+                              double p99Ms, double maxMs) {}
+
+    private static volatile Timer[] timers = criarTimers(new SimpleMeterRegistry());
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            timers = criarTimers(meterRegistry);
+        }
+    }
+
+    private static Timer[] criarTimers(MeterRegistry registry) {
+        Etapa[] etapas = Etapa.values();
+        Timer[] novos = new Timer[etapas.length];
+        for (Etapa etapa : etapas) {
+            novos[etapa.ordinal()] = Timer.builder("checkout.etapa")
+                    .description("Duração das etapas do checkout")
+                    .tag("etapa", etapa.getTag())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+        }
+        return novos;
+    }
+
+    public static long iniciar() {
+        return System.nanoTime();
+    }
+
+    /** Registra o tempo decorrido desde {@code inicio} (valor de {@link #iniciar()}) */
+    public static void registrar(Etapa etapa, long inicio) {
+        timers[etapa.ordinal()].record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+    }
+
+    /** Estado atual de todas as etapas, na ordem do checkout */
+    public static List<ResumoEtapa> resumo() {
+        Timer[] atuais = timers;
+        List<ResumoEtapa> resumo = new ArrayList<>(atuais.length);
+        for (Etapa etapa : Etapa.values()) {
+            HistogramSnapshot snapshot = atuais[etapa.ordinal()].takeSnapshot();
+            double p50 = 0, p95 = 0, p99 = 0;
+            for (ValueAtPercentile p : snapshot.percentileValues()) {
+                double ms = p.value(TimeUnit.MILLISECONDS);
+                if (p.percentile() == 0.5) p50 = ms;
+                else if (p.percentile() == 0.95) p95 = ms;
+                else if (p.percentile() == 0.99) p99 = ms;
+            }
+            resumo.add(new ResumoEtapa(etapa, snapshot.count(), snapshot.mean(TimeUnit.MILLISECONDS),
+                    p50, p95, p99, snapshot.max(TimeUnit.MILLISECONDS)));
+        }
+        return resumo;
+    }
+}
@@ -0,0 +1,125 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Usuario;
+import com.biblioteca.model.Venda;
+import com.biblioteca.repository.PagamentoProcessadoRepository;
+import com.biblioteca.repository.VendaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Confirmação idempotente de pagamento, chamada pelo retorno do checkout
+ * ({@code /api/stripe/success}) e pelo webhook {@code checkout.session.completed}.
+ *
+ * Numa única transação: registra a sessão em {@code pagamentos_processados}
+ * (INSERT IGNORE) e faz a transição condicional PENDENTE -> PAGO. Só quem vence
+ * as duas etapas executa os efeitos colaterais (auditoria, fila de documentos,
+ * limpeza do carrinho); os demais retornam sem escrever nada além do INSERT ignorado.
+ */
+@Service
+public class ConfirmacaoPagamentoService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfirmacaoPagamentoService.class);
+
+    @Autowired private VendaRepository vendaRepository;
+    @Autowired private PagamentoProcessadoRepository pagamentoProcessadoRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired(required = false) private UsuarioService usuarioService;
+    @Autowired(required = false) private CarrinhoService carrinhoService;
+    @Autowired(required = false) private AuditoriaService auditoriaService;
+    @Autowired(required = false) private DocumentoFiscalFilaService documentoFiscalFilaService;
+
+    /**
+     * Confirma o pagamento da sessão.
+     *
+     * @return true se esta chamada efetivou o pagamento; false se a sessão já havia
+     *         sido processada (ou a venda não estava pendente)
+     * @throws IllegalStateException se a venda não existir (o webhook será reenviado pelo Stripe)
+     */
+    @Transactional
+    public boolean confirmar(String sessionId, String origem, String eventoId) {
+        int registrada = pagamentoProcessadoRepository.insertIfAbsent(sessionId, origem, eventoId, LocalDateTime.now());
+        if (registrada == 0) {
+            log.debug("Pagamento da sessão {} já processado ({} ignorado)", sessionId, origem);
+            return false;
+        }
+
+        if (vendaRepository.markPaidIfPending(sessionId) == 0) {
+            if (!vendaRepository.existsById(sessionId)) {
+                // Desfaz o registro para que uma nova tentativa possa confirmar
+                throw new IllegalStateException("Venda não encontrada para o ID: " + sessionId);
+            }
+            log.info("Venda {} não estava pendente; confirmação via {} sem efeitos", sessionId, origem);
+            return false;
+        }
+
+        Venda venda = vendaRepository.findById(sessionId).orElseThrow();
+        Usuario usuario = null;
+        if (usuarioService != null && venda.getClienteCpf() != null) {
+            usuario = usuarioService.buscarUsuarioPorCpf(venda.getClienteCpf()).orElse(null);
+        }
+
+        if (auditoriaService != null && usuario != null) {
+            Venda vendaAnterior = new Venda();
+            vendaAnterior.setId(venda.getId());
+            vendaAnterior.setStatus("PENDENTE");
+            vendaAnterior.setClienteNome(venda.getClienteNome());
+            vendaAnterior.setClienteCpf(venda.getClienteCpf());
+            vendaAnterior.setValorTotal(venda.getValorTotal());
+            vendaAnterior.setDataVenda(venda.getDataVenda());
+            vendaAnterior.setTipoPagamento(venda.getTipoPagamento());
+            auditoriaService.createAuditoriaUpdateWeb(venda, vendaAnterior, usuario);
+        }
+
+        // Job de documentos entra na mesma transação (uma vez por venda)
+        if (documentoFiscalFilaService != null) {
+            documentoFiscalFilaService.enfileirar(venda);
+        }
+
+        if (usuario != null) {
+            limparCarrinhoAposCommit(usuario);
+        }
+        HistoricoVendas.atualizarStatusAposCommit(venda, "PENDENTE");
+        log.info("Pagamento da venda {} confirmado via {}", sessionId, origem);
+        return true;
+    }
+
+    // Falha ao limpar o carrinho não pode desfazer a confirmação do pagamento
+    private void limparCarrinhoAposCommit(Usuario usuario) {
+        if (carrinhoService == null) return;
+        Runnable limpar = () -> {
+            try {
+                long inicio = CheckoutMetricas.iniciar();
+                TransactionTemplate novaTransacao = new TransactionTemplate(transactionManager);
+                novaTransacao.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                // Sem carrinho (já limpo) não há o que fazer: nada de criar um só para apagar
+                novaTransacao.executeWithoutResult(status ->
+                        carrinhoService.buscarCarrinho(usuario).ifPresent(carrinhoService::limparCarrinho));
+                CheckoutMetricas.registrar(CheckoutMetricas.Etapa.LIMPEZA_CARRINHO, inicio);
+                log.info("Carrinho limpo após pagamento confirmado para usuário: {}", usuario.getLogin());
+            } catch (Exception e) {
+                log.warn("Erro ao limpar carrinho de {} após pagamento", usuario.getLogin(), e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    limpar.run();
+                }
+            });
+        } else {
+            limpar.run();
+        }
+    }
+}
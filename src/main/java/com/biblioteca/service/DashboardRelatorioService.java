@@ -0,0 +1,285 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.ResumoDiario;
+import com.biblioteca.repository.EmprestimoRepository;
+import com.biblioteca.repository.LivroRepository;
+import com.biblioteca.repository.ResumoDiarioRepository;
+import com.biblioteca.repository.VendaRepository;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Relatório operacional (dashboard) em PDF, diário e mensal.
+ *
+ * Uma vez por dia o dia anterior é consolidado em {@code resumo_diario} com consultas
+ * limitadas àquele dia; os relatórios leem apenas os consolidados (no máximo 31 linhas),
+ * então o custo não cresce com o histórico de vendas e empréstimos. Empréstimos ativos
+ * e atrasados ao fim do dia partem do consolidado da véspera mais o movimento do dia;
+ * só o primeiro dia sem véspera consolidada conta sobre o histórico inteiro.
+ *
+ * Os PDFs ficam no {@link DocumentoStore} como Dashboard_diario_&lt;aaaa-mm-dd&gt;.pdf e
+ * Dashboard_mensal_&lt;aaaa-mm&gt;.pdf e são servidos pelo DocumentoController.
+ */
+@Service
+public class DashboardRelatorioService {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardRelatorioService.class);
+
+    private static final String TEMPLATE = "relatorios/dashboard_template.jrxml";
+    private static final String PREFIXO = "Dashboard_";
+
+    /** Dias para trás consolidados na inicialização, se estiverem faltando */
+    @Value("${relatorios.dashboard.retroativo-dias:35}")
+    private int retroativoDias;
+
+    /** Dias recentes recalculados todo dia (boletos compensados depois da data da venda) */
+    @Value("${relatorios.dashboard.reconsolidar-dias:3}")
+    private int reconsolidarDias;
+
+    @Autowired(required = false)
+    private ResumoDiarioRepository resumoDiarioRepository;
+
+    @Autowired(required = false)
+    private VendaRepository vendaRepository;
+
+    @Autowired(required = false)
+    private EmprestimoRepository emprestimoRepository;
+
+    @Autowired(required = false)
+    private LivroRepository livroRepository;
+
+    @Autowired(required = false)
+    private DocumentoStore documentoStore;
+
+    // ========== AGENDAMENTO ==========
+
+    /** Logo após a meia-noite: consolida ontem, gera o diário e, na virada do mês, o mensal. */
+    @Scheduled(cron = "${relatorios.dashboard.cron:0 15 0 * * *}")
+    public void gerarRelatoriosDoDia() {
+        if (resumoDiarioRepository == null) return;
+        LocalDate ontem = LocalDate.now().minusDays(1);
+        try {
+            for (LocalDate dia = ontem.minusDays(reconsolidarDias); !dia.isAfter(ontem); dia = dia.plusDays(1)) {
+                consolidar(dia);
+            }
+            preencherFaltantes(ontem.minusDays(retroativoDias), ontem);
+            gerarDiario(ontem);
+            if (ontem.getDayOfMonth() == ontem.lengthOfMonth()) {
+                gerarMensal(YearMonth.from(ontem));
+            }
+        } catch (Exception e) {
+            log.error("Erro ao gerar relatórios de dashboard de {}", ontem, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preencherNaInicializacao() {
+        if (resumoDiarioRepository == null) return;
+        LocalDate ontem = LocalDate.now().minusDays(1);
+        try {
+            int consolidados = preencherFaltantes(ontem.minusDays(retroativoDias), ontem);
+            if (consolidados > 0) log.info("Consolidados {} dias do dashboard", consolidados);
+        } catch (Exception e) {
+            log.warn("Não foi possível consolidar os dias pendentes do dashboard", e);
+        }
+    }
+
+    // ========== CONSOLIDAÇÃO ==========
+
+    /** Consolida os dias do intervalo que ainda não têm resumo. */
+    public int preencherFaltantes(LocalDate inicio, LocalDate fim) {
+        Set<LocalDate> existentes = new HashSet<>(resumoDiarioRepository.findDiasConsolidados(inicio, fim));
+        int consolidados = 0;
+        for (LocalDate dia = inicio; !dia.isAfter(fim); dia = dia.plusDays(1)) {
+            if (!existentes.contains(dia)) {
+                consolidar(dia);
+                consolidados++;
+            }
+        }
+        return consolidados;
+    }
+
+    /**
+     * Calcula (ou recalcula) o resumo de um dia. As consultas filtram pela data
+     * (índices de data); o estoque baixo não tem histórico e reflete o momento
+     * da primeira consolidação. Dias devem ser consolidados em ordem crescente, para
+     * que a véspera já esteja atualizada.
+     */
+    public ResumoDiario consolidar(LocalDate dia) {
+        ResumoDiario resumo = new ResumoDiario(dia);
+
+        resumo.setEmprestimosNovos(emprestimoRepository.countByDataEmprestimo(dia));
+        resumo.setDevolucoes(emprestimoRepository.countByDataDevolucao(dia));
+        Double multas = emprestimoRepository.sumFinesReturnedOn(dia);
+        resumo.setMultasValor(multas != null ? multas : 0.0);
+        LocalDate vespera = dia.minusDays(1);
+        Optional<ResumoDiario> resumoVespera = resumoDiarioRepository.findById(vespera);
+        if (resumoVespera.isPresent()) {
+            // Ativos: entraram os novos, saíram os devolvidos (inclusive os do próprio dia)
+            resumo.setEmprestimosAtivos(resumoVespera.get().getEmprestimosAtivos()
+                    + resumo.getEmprestimosNovos() - resumo.getDevolucoes());
+            resumo.setEmprestimosAtrasados(resumoVespera.get().getEmprestimosAtrasados()
+                    + emprestimoRepository.countBecameOverdueOn(dia, vespera)
+                    - emprestimoRepository.countOverdueReturnedOn(dia, vespera));
+        } else {
+            resumo.setEmprestimosAtivos(emprestimoRepository.countActiveLoansAt(dia));
+            resumo.setEmprestimosAtrasados(emprestimoRepository.countOverdueLoansAt(dia));
+        }
+
+        List<Object[]> porTipo = vendaRepository.summarizePaidByPaymentTypeInPeriod(
+                dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+        for (Object[] linha : porTipo) {
+            String tipo = (String) linha[0];
+            long quantidade = ((Number) linha[1]).longValue();
+            double valor = ((Number) linha[2]).doubleValue();
+            resumo.setVendasQtd(resumo.getVendasQtd() + quantidade);
+            resumo.setVendasValor(resumo.getVendasValor() + valor);
+            if ("card".equals(tipo)) {
+                resumo.setVendasCartao(quantidade);
+                resumo.setValorCartao(valor);
+            } else if ("boleto".equals(tipo)) {
+                resumo.setVendasBoleto(quantidade);
+                resumo.setValorBoleto(valor);
+            }
+        }
+
+        // Ao recalcular um dia antigo, mantém a foto do estoque tirada na época
+        Optional<ResumoDiario> anterior = dia.isBefore(LocalDate.now().minusDays(1))
+                ? resumoDiarioRepository.findById(dia) : Optional.empty();
+        resumo.setLivrosEstoqueBaixo(anterior.isPresent() ? anterior.get().getLivrosEstoqueBaixo()
+                : livroRepository.countLowStock(EstoqueMonitorService.LIMIAR_ESTOQUE));
+        return resumoDiarioRepository.save(resumo);
+    }
+
+    // ========== RELATÓRIOS ==========
+
+    public static String arquivoDiario(LocalDate dia) {
+        return PREFIXO + "diario_" + dia + ".pdf";
+    }
+
+    public static String arquivoMensal(YearMonth mes) {
+        return PREFIXO + "mensal_" + mes + ".pdf";
+    }
+
+    /** Nomes de arquivo de dashboard só podem ser baixados por gerente / admin */
+    public static boolean isRelatorioDashboard(String nomeArquivo) {
+        return nomeArquivo != null && nomeArquivo.startsWith(PREFIXO);
+    }
+
+    public String gerarDiario(LocalDate dia) throws JRException, IOException {
+        ResumoDiario resumo = resumoDiarioRepository.findById(dia).orElseGet(() -> consolidar(dia));
+        String nome = arquivoDiario(dia);
+        gravar(nome, List.of(resumo), dia.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+        return nome;
+    }
+
+    public String gerarMensal(YearMonth mes) throws JRException, IOException {
+        LocalDate fim = mes.atEndOfMonth();
+        LocalDate ontem = LocalDate.now().minusDays(1);
+        if (fim.isAfter(ontem)) fim = ontem; // mês corrente: até ontem
+        preencherFaltantes(mes.atDay(1), fim);
+        List<ResumoDiario> dias = resumoDiarioRepository.findByDiaBetweenOrderByDia(mes.atDay(1), fim);
+        String nome = arquivoMensal(mes);
+        gravar(nome, dias, mes.format(DateTimeFormatter.ofPattern("MM/yyyy")));
+        return nome;
+    }
+
+    /**
+     * Nome do relatório do período ("aaaa-mm-dd" ou "aaaa-mm"), gerando-o se ainda
+     * não estiver arquivado. Períodos futuros (ou o dia de hoje, ainda em aberto) não têm relatório.
+     */
+    public Optional<String> obterRelatorio(String periodo) throws JRException, IOException {
+        if (resumoDiarioRepository == null) return Optional.empty();
+        LocalDate hoje = LocalDate.now();
+        try {
+            if (periodo.length() == 10) {
+                LocalDate dia = LocalDate.parse(periodo);
+                if (!dia.isBefore(hoje)) return Optional.empty();
+                String nome = arquivoDiario(dia);
+                return Optional.of(store().existe(nome) ? nome : gerarDiario(dia));
+            }
+            YearMonth mes = YearMonth.parse(periodo);
+            if (mes.isAfter(YearMonth.from(hoje)) || mes.atDay(1).equals(hoje)) return Optional.empty();
+            String nome = arquivoMensal(mes);
+            // Mês corrente é sempre regerado: ganhou dias desde a última geração
+            boolean fechado = mes.isBefore(YearMonth.from(hoje));
+            return Optional.of(fechado && store().existe(nome) ? nome : gerarMensal(mes));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void gravar(String nome, List<ResumoDiario> dias, String periodo) throws JRException, IOException {
+        long inicio = System.nanoTime();
+
+        long emprestimosNovos = 0, devolucoes = 0, transacoes = 0, cartao = 0, boleto = 0;
+        double multas = 0, valor = 0;
+        List<Map<String, ?>> linhas = new ArrayList<>(dias.size());
+        for (ResumoDiario d : dias) {
+            emprestimosNovos += d.getEmprestimosNovos();
+            devolucoes += d.getDevolucoes();
+            multas += d.getMultasValor();
+            transacoes += d.getVendasQtd();
+            valor += d.getVendasValor();
+            cartao += d.getVendasCartao();
+            boleto += d.getVendasBoleto();
+
+            Map<String, Object> linha = new HashMap<>();
+            linha.put("data", d.getDia().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+            linha.put("valor", d.getVendasValor());
+            linhas.add(linha);
+        }
+        // Situação (ativos, atrasados, estoque) é a do último dia do período
+        ResumoDiario ultimo = dias.isEmpty() ? null : dias.get(dias.size() - 1);
+
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("DATA_GERACAO", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        parametros.put("PERIODO", periodo);
+        parametros.put("TOTAL_VENDAS", String.format("%.2f", valor));
+        parametros.put("TOTAL_TRANSACOES", (int) transacoes);
+        parametros.put("VENDAS_CARTAO", (int) cartao);
+        parametros.put("VENDAS_BOLETO", (int) boleto);
+        parametros.put("TICKET_MEDIO", String.format("%.2f", transacoes > 0 ? valor / transacoes : 0.0));
+        parametros.put("EMPRESTIMOS_NOVOS", emprestimosNovos);
+        parametros.put("DEVOLUCOES", devolucoes);
+        parametros.put("TOTAL_MULTAS", String.format("%.2f", multas));
+        parametros.put("EMPRESTIMOS_ATIVOS", ultimo != null ? ultimo.getEmprestimosAtivos() : 0L);
+        parametros.put("EMPRESTIMOS_ATRASADOS", ultimo != null ? ultimo.getEmprestimosAtrasados() : 0L);
+        parametros.put("LIVROS_ESTOQUE_BAIXO", ultimo != null ? ultimo.getLivrosEstoqueBaixo() : 0L);
+
+        JasperReport relatorio = JasperTemplateCache.obter(TEMPLATE);
+        JasperPrint preenchido = JasperFillManager.fillReport(relatorio, parametros, new JRMapCollectionDataSource(linhas));
+        store().gravar(nome, JasperExportManager.exportReportToPdf(preenchido));
+        log.info("Relatório {} gerado em {} ms ({} dias)", nome, (System.nanoTime() - inicio) / 1_000_000, dias.size());
+    }
+
+    private DocumentoStore store() {
+        return documentoStore != null ? documentoStore : DocumentoFiscalService.getStore();
+    }
+}
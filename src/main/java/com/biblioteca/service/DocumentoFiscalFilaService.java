@@ -0,0 +1,265 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.DocumentoJob;
+import com.biblioteca.model.Venda;
+import com.biblioteca.repository.DocumentoJobRepository;
+import com.biblioteca.repository.VendaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fila de geração dos documentos fiscais (nota fiscal + recibo) de cada venda.
+ *
+ * O pedido só grava o job na tabela {@code documento_jobs} (um por venda) e
+ * volta; a renderização Jasper roda num pool limitado de workers. Se a fila em
+ * memória estiver cheia o job continua pendente no banco e o varredor o
+ * reenvia quando houver vaga, então nenhum pedido fica esperando o Jasper.
+ * Falhas são retentadas com espera exponencial até {@code documentos.fila.max-tentativas}.
+ */
+@Service
+public class DocumentoFiscalFilaService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentoFiscalFilaService.class);
+
+    @Value("${documentos.fila.workers:2}")
+    private int workers;
+
+    @Value("${documentos.fila.capacidade:100}")
+    private int capacidade;
+
+    @Value("${documentos.fila.max-tentativas:5}")
+    private int maxTentativas;
+
+    @Value("${documentos.fila.espera-base-segundos:10}")
+    private long esperaBaseSegundos;
+
+    @Autowired(required = false)
+    private DocumentoJobRepository documentoJobRepository;
+
+    @Autowired(required = false)
+    private VendaRepository vendaRepository;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private DocumentoSobDemandaService documentoSobDemanda;
+
+    private ThreadPoolExecutor executor;
+
+    /** Vendas já na fila em memória ou em execução (evita envio duplicado ao pool) */
+    private final Set<String> emAndamento = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger pendentesNoBanco = new AtomicInteger();
+
+    private Timer tempoRenderizacao;
+    private Counter falhas;
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidade), r -> {
+                    Thread t = new Thread(r, "documentos-fiscais-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        if (meterRegistry != null) {
+            Gauge.builder("documentos.fila.profundidade", executor, e -> e.getQueue().size())
+                    .description("Jobs aguardando worker na fila em memória")
+                    .register(meterRegistry);
+            Gauge.builder("documentos.fila.pendentes", pendentesNoBanco, AtomicInteger::get)
+                    .description("Jobs pendentes na tabela documento_jobs (última varredura)")
+                    .register(meterRegistry);
+            tempoRenderizacao = Timer.builder("documentos.renderizacao")
+                    .description("Tempo para gerar NF + recibo de uma venda")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            falhas = Counter.builder("documentos.falhas")
+                    .description("Tentativas de geração que falharam")
+                    .register(meterRegistry);
+        }
+    }
+
+    /** Jobs interrompidos por uma queda voltam para a fila; os templates já são compilados. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        executor.execute(() -> {
+            try {
+                JasperTemplateCache.obter("relatorios/danfe_template.jrxml");
+                JasperTemplateCache.obter("relatorios/recibo_template.jrxml");
+            } catch (Exception e) {
+                log.warn("Não foi possível pré-compilar os templates fiscais", e);
+            }
+        });
+        if (documentoJobRepository == null || transactionManager == null) return;
+        try {
+            Integer recuperados = new TransactionTemplate(transactionManager)
+                    .execute(status -> documentoJobRepository.resetInProgress());
+            if (recuperados != null && recuperados > 0) {
+                log.info("Jobs de documentos recolocados na fila: {}", recuperados);
+            }
+        } catch (Exception e) {
+            log.error("Erro ao recuperar fila de documentos", e);
+        }
+    }
+
+    /**
+     * Enfileira a geração dos documentos da venda. O job é gravado na transação
+     * corrente (se houver) e só segue para os workers após o commit.
+     * Chamadas repetidas para a mesma venda são ignoradas.
+     * Com a política LAZY nada é enfileirado: o download gera o documento.
+     */
+    public void enfileirar(Venda venda) {
+        if (venda == null || venda.getId() == null) return;
+        if (documentoSobDemanda != null && !documentoSobDemanda.isEager()) return;
+        String vendaId = venda.getId();
+        if (documentoJobRepository == null || transactionManager == null) {
+            // Sem fila persistente: apenas tira a renderização da thread do pedido
+            Runnable tarefa = () -> {
+                try {
+                    gerarDocumentos(venda);
+                } catch (Exception e) {
+                    log.error("Erro ao gerar documentos da venda {}", vendaId, e);
+                }
+            };
+            try {
+                executor.execute(tarefa);
+            } catch (RejectedExecutionException e) {
+                tarefa.run();
+            }
+            return;
+        }
+        Integer inseridos = new TransactionTemplate(transactionManager)
+                .execute(status -> documentoJobRepository.insertIfAbsent(vendaId, LocalDateTime.now()));
+        if (inseridos == null || inseridos == 0) {
+            log.debug("Documentos da venda {} já enfileirados", vendaId);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submeter(vendaId);
+                }
+            });
+        } else {
+            submeter(vendaId);
+        }
+    }
+
+    /**
+     * Reenvia ao pool os jobs pendentes (fila cheia, retentativas, recuperação).
+     */
+    @Scheduled(fixedDelayString = "${documentos.fila.varredura-ms:5000}")
+    public void varrerPendentes() {
+        if (documentoJobRepository == null) return;
+        try {
+            pendentesNoBanco.set((int) documentoJobRepository.countPending());
+            int vagas = executor.getQueue().remainingCapacity();
+            if (vagas <= 0) return;
+            for (String vendaId : documentoJobRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, vagas))) {
+                if (!submeter(vendaId)) break;
+            }
+        } catch (Exception e) {
+            log.error("Erro ao varrer fila de documentos", e);
+        }
+    }
+
+    /** @return false se a fila em memória está cheia (o job fica pendente no banco) */
+    private boolean submeter(String vendaId) {
+        if (!emAndamento.add(vendaId)) return true;
+        try {
+            executor.execute(() -> {
+                try {
+                    processar(vendaId);
+                } finally {
+                    emAndamento.remove(vendaId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            emAndamento.remove(vendaId);
+            log.debug("Fila de documentos cheia; venda {} aguardará a próxima varredura", vendaId);
+            return false;
+        }
+    }
+
+    private void processar(String vendaId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Integer reivindicado = tx.execute(status -> documentoJobRepository.claim(vendaId, LocalDateTime.now()));
+        if (reivindicado == null || reivindicado == 0) return;
+
+        try {
+            Venda venda = vendaRepository.findById(vendaId)
+                    .orElseThrow(() -> new IllegalStateException("Venda não encontrada: " + vendaId));
+            gerarDocumentos(venda);
+            tx.executeWithoutResult(status -> documentoJobRepository.markDone(vendaId, LocalDateTime.now()));
+        } catch (Exception e) {
+            if (falhas != null) falhas.increment();
+            int tentativas = documentoJobRepository.findById(vendaId).map(DocumentoJob::getTentativas).orElse(maxTentativas);
+            boolean desistir = tentativas >= maxTentativas;
+            LocalDateTime proxima = LocalDateTime.now().plusSeconds(esperaBaseSegundos << Math.min(tentativas - 1, 10));
+            String erro = e.getMessage() != null && e.getMessage().length() > 1000 ? e.getMessage().substring(0, 1000) : e.getMessage();
+            tx.executeWithoutResult(status -> documentoJobRepository.markFailed(vendaId,
+                    desistir ? DocumentoJob.STATUS_FALHOU : DocumentoJob.STATUS_PENDENTE, proxima, erro, LocalDateTime.now()));
+            if (desistir) {
+                log.error("Documentos da venda {} falharam após {} tentativas", vendaId, tentativas, e);
+            } else {
+                log.warn("Falha ao gerar documentos da venda {} (tentativa {}), nova tentativa em {}", vendaId, tentativas, proxima, e);
+            }
+        }
+    }
+
+    private void gerarDocumentos(Venda venda) {
+        long inicio = System.nanoTime();
+        try {
+            DocumentoFiscalService.emitirNotaFiscal(venda);
+            DocumentoFiscalService.emitirRecibo(venda);
+        } catch (net.sf.jasperreports.engine.JRException e) {
+            throw new RuntimeException("Erro ao gerar documentos da venda " + venda.getId(), e);
+        } finally {
+            if (tempoRenderizacao != null) tempoRenderizacao.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,113 +8,144 @@ import java.util.HashMap;
 import java.util.Map;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.io.File;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.io.FileOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DocumentoFiscalService {
-    private static final String OUTPUT_PATH = "output/";
     private static final Logger log = LoggerFactory.getLogger(DocumentoFiscalService.class);
 
-    static {
-        // Cria diretório de saída se não existir
-        new File(OUTPUT_PATH).mkdirs();
+    // Substituído pelo bean do Spring na inicialização; o padrão atende o modo console
+    private static volatile DocumentoStore store = new DocumentoStoreLocal(java.nio.file.Paths.get("output"));
+
+    public static void usarStore(DocumentoStore novoStore) {
+        store = novoStore;
+    }
+
+    public static DocumentoStore getStore() {
+        return store;
     }
 
     public static void gerarNotaFiscal(Venda venda) {
         try {
-            // Prepara os parâmetros
-            Map<String, Object> parametros = new HashMap<>();
-            parametros.put("NOTA_FISCAL_NUMERO", venda.getId());
-            parametros.put("DATA_EMISSAO", venda.getDataVenda().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
-            parametros.put("CLIENTE_NOME", venda.getClienteNome());
-            parametros.put("CLIENTE_CPF", venda.getClienteCpf());
-            parametros.put("CLIENTE_EMAIL", venda.getClienteEmail());
-            parametros.put("CLIENTE_ENDERECO", venda.getClienteEndereco());
-            parametros.put("TIPO_PAGAMENTO", venda.getTipoPagamento().equals("card") ? "Cartão de Crédito" : "Boleto Bancário");
-            parametros.put("TIPO_COMPRA", venda.getTipoCompra()!=null?venda.getTipoCompra():"COMPRA");
-            if("ALUGUEL".equalsIgnoreCase(venda.getTipoCompra())){
-                java.time.LocalDate limite = venda.getDataVenda().toLocalDate().plusDays(7);
-                parametros.put("DATA_DEVOLUCAO", limite.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")));
-            }
-            parametros.put("VALOR_TOTAL", String.format("%.2f", venda.getValorTotal()));
-
-            // Prepara os itens da nota
-            List<Map<String, Object>> itens = new ArrayList<>();
-            for (ItemVenda item : venda.getItens()) {
-                Map<String, Object> itemMap = new HashMap<>();
-                itemMap.put("codigo", item.getLivro().getId());
-                itemMap.put("descricao", item.getLivro().getTitulo());
-                itemMap.put("quantidade", item.getQuantidade());
-                itemMap.put("valorUnitario", item.getValorUnitario());
-                itemMap.put("valorTotal", item.getValorTotal());
-                itens.add(itemMap);
-            }
-
-            // Cria o datasource
-            JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(itens);
-
-            // Carrega e compila o template usando ClassLoader
-            InputStream templateStream = DocumentoFiscalService.class.getClassLoader().getResourceAsStream("relatorios/danfe_template.jrxml");
-            if (templateStream == null) {
-                throw new RuntimeException("Template DANFE não encontrado no classpath");
-            }
-            JasperReport jasperReport = JasperCompileManager.compileReport(templateStream);
-
-            // Preenche o relatório
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parametros, dataSource);
-
-            // Exporta para PDF
-            String outputFile = OUTPUT_PATH + "NF_" + venda.getId() + ".pdf";
-            JasperExportManager.exportReportToPdfFile(jasperPrint, outputFile);
-
-            log.info("Nota fiscal gerada com sucesso: {}", outputFile);
+            emitirNotaFiscal(venda);
         } catch (Exception e) {
             log.error("Erro ao gerar nota fiscal", e);
         }
     }
 
+    /** Gera a nota fiscal propagando o erro (usado pela fila de documentos para retentar). */
+    public static void emitirNotaFiscal(Venda venda) throws JRException {
+        String nome = arquivoNotaFiscal(venda.getId());
+        armazenar(nome, pdfNotaFiscal(venda));
+        log.info("Nota fiscal gerada com sucesso: {}", nome);
+    }
+
+    /** Nota fiscal em memória (geração sob demanda). */
+    public static byte[] pdfNotaFiscal(Venda venda) throws JRException {
+        return JasperExportManager.exportReportToPdf(preencherNotaFiscal(venda));
+    }
+
+    public static String arquivoNotaFiscal(String vendaId) {
+        return "NF_" + vendaId + ".pdf";
+    }
+
+    /** Relatório preenchido (sem exportar), para quem agrupa várias notas num PDF. */
+    public static JasperPrint preencherNotaFiscal(Venda venda) throws JRException {
+        // Prepara os parâmetros
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("NOTA_FISCAL_NUMERO", venda.getId());
+        parametros.put("DATA_EMISSAO", venda.getDataVenda().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        parametros.put("CLIENTE_NOME", venda.getClienteNome());
+        parametros.put("CLIENTE_CPF", venda.getClienteCpf());
+        parametros.put("CLIENTE_EMAIL", venda.getClienteEmail());
+        parametros.put("CLIENTE_ENDERECO", venda.getClienteEndereco());
+        parametros.put("TIPO_PAGAMENTO", venda.getTipoPagamento().equals("card") ? "Cartão de Crédito" : "Boleto Bancário");
+        parametros.put("TIPO_COMPRA", venda.getTipoCompra()!=null?venda.getTipoCompra():"COMPRA");
+        if("ALUGUEL".equalsIgnoreCase(venda.getTipoCompra())){
+            java.time.LocalDate limite = venda.getDataVenda().toLocalDate().plusDays(7);
+            parametros.put("DATA_DEVOLUCAO", limite.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+        }
+        parametros.put("VALOR_TOTAL", String.format("%.2f", venda.getValorTotal()));
+
+        // Prepara os itens da nota
+        List<Map<String, Object>> itens = new ArrayList<>();
+        for (ItemVenda item : venda.getItens()) {
+            Map<String, Object> itemMap = new HashMap<>();
+            itemMap.put("codigo", item.getLivro().getId());
+            itemMap.put("descricao", item.getLivro().getTitulo());
+            itemMap.put("quantidade", item.getQuantidade());
+            itemMap.put("valorUnitario", item.getValorUnitario());
+            itemMap.put("valorTotal", item.getValorTotal());
+            itens.add(itemMap);
+        }
+
+        // Cria o datasource
+        JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(itens);
+
+        // Template compilado uma única vez (cache compartilhado)
+        JasperReport jasperReport = JasperTemplateCache.obter("relatorios/danfe_template.jrxml");
+
+        // Preenche o relatório
+        return JasperFillManager.fillReport(jasperReport, parametros, dataSource);
+    }
+
     public static void gerarRecibo(Venda venda) {
         try {
-            // Prepara os parâmetros
-            Map<String, Object> parametros = new HashMap<>();
-            parametros.put("RECIBO_NUMERO", venda.getId());
-            parametros.put("DATA_EMISSAO", venda.getDataVenda().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
-            parametros.put("CLIENTE_NOME", venda.getClienteNome());
-            parametros.put("CLIENTE_CPF", venda.getClienteCpf());
-            parametros.put("TIPO_PAGAMENTO", venda.getTipoPagamento());
-            parametros.put("TIPO_COMPRA", venda.getTipoCompra()!=null?venda.getTipoCompra():"COMPRA");
-            if("ALUGUEL".equalsIgnoreCase(venda.getTipoCompra())){
-                java.time.LocalDate limite = venda.getDataVenda().toLocalDate().plusDays(7);
-                parametros.put("DATA_DEVOLUCAO", limite.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")));
-            }
-            parametros.put("VALOR_TOTAL", String.format("%.2f", venda.getValorTotal()));
-            parametros.put("VALOR_POR_EXTENSO", valorPorExtenso(venda.getValorTotal()));
-
-            // Carrega e compila o template usando ClassLoader
-            InputStream templateStream = DocumentoFiscalService.class.getClassLoader().getResourceAsStream("relatorios/recibo_template.jrxml");
-            if (templateStream == null) {
-                throw new RuntimeException("Template de recibo não encontrado no classpath");
-            }
-            JasperReport jasperReport = JasperCompileManager.compileReport(templateStream);
-
-            // Preenche o relatório
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parametros, new JREmptyDataSource());
-
-            // Exporta para PDF
-            String outputFile = OUTPUT_PATH + "Recibo_" + venda.getId() + ".pdf";
-            JasperExportManager.exportReportToPdfFile(jasperPrint, outputFile);
-
-            log.info("Recibo gerado com sucesso: {}", outputFile);
+            emitirRecibo(venda);
         } catch (Exception e) {
             log.error("Erro ao gerar recibo", e);
         }
     }
 
+    /** Gera o recibo propagando o erro (usado pela fila de documentos para retentar). */
+    public static void emitirRecibo(Venda venda) throws JRException {
+        String nome = arquivoRecibo(venda.getId());
+        armazenar(nome, pdfRecibo(venda));
+        log.info("Recibo gerado com sucesso: {}", nome);
+    }
+
+    /** Recibo em memória (geração sob demanda). */
+    public static byte[] pdfRecibo(Venda venda) throws JRException {
+        return JasperExportManager.exportReportToPdf(preencherRecibo(venda));
+    }
+
+    public static String arquivoRecibo(String vendaId) {
+        return "Recibo_" + vendaId + ".pdf";
+    }
+
+    private static JasperPrint preencherRecibo(Venda venda) throws JRException {
+        // Prepara os parâmetros
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("RECIBO_NUMERO", venda.getId());
+        parametros.put("DATA_EMISSAO", venda.getDataVenda().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        parametros.put("CLIENTE_NOME", venda.getClienteNome());
+        parametros.put("CLIENTE_CPF", venda.getClienteCpf());
+        parametros.put("TIPO_PAGAMENTO", venda.getTipoPagamento());
+        parametros.put("TIPO_COMPRA", venda.getTipoCompra()!=null?venda.getTipoCompra():"COMPRA");
+        if("ALUGUEL".equalsIgnoreCase(venda.getTipoCompra())){
+            java.time.LocalDate limite = venda.getDataVenda().toLocalDate().plusDays(7);
+            parametros.put("DATA_DEVOLUCAO", limite.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+        }
+        parametros.put("VALOR_TOTAL", String.format("%.2f", venda.getValorTotal()));
+        parametros.put("VALOR_POR_EXTENSO", valorPorExtenso(venda.getValorTotal()));
+
+        // Template compilado uma única vez (cache compartilhado)
+        JasperReport jasperReport = JasperTemplateCache.obter("relatorios/recibo_template.jrxml");
+
+        // Preenche o relatório
+        return JasperFillManager.fillReport(jasperReport, parametros, new JREmptyDataSource());
+    }
+
+    private static void armazenar(String nome, byte[] pdf) throws JRException {
+        try {
+            store.gravar(nome, pdf);
+        } catch (java.io.IOException e) {
+            throw new JRException("Erro ao gravar " + nome, e);
+        }
+    }
+
     private static String valorPorExtenso(double valor) {
         // Implementação simplificada - em um sistema real, usar uma biblioteca específica
         return String.format("%.2f", valor) + " reais";
@@ -0,0 +1,168 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Venda;
+import com.biblioteca.repository.VendaRepository;
+import com.biblioteca.service.DocumentoStore.DocumentoArmazenado;
+import jakarta.annotation.PostConstruct;
+import net.sf.jasperreports.engine.JRException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Geração de NF / recibo sob demanda, no primeiro download.
+ *
+ * Pedidos simultâneos do mesmo documento esperam uma única renderização.
+ * O PDF gerado é gravado no {@link DocumentoStore} (downloads seguintes saem do disco)
+ * e os mais recentes ficam num LRU em memória limitado por
+ * {@code documentos.cache.max-bytes}. Documento regravado ou removido no store (fila
+ * de NF, lote INDIVIDUAL, manutenção) sai do LRU na mesma hora.
+ *
+ * Com {@code documentos.geracao.politica=EAGER} os documentos continuam sendo
+ * gerados pela fila logo após o pagamento (ver {@link DocumentoFiscalFilaService}).
+ */
+@Service
+public class DocumentoSobDemandaService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentoSobDemandaService.class);
+
+    private static final Pattern NOME_DOCUMENTO = Pattern.compile("^(NF|Recibo)_(.+)\\.pdf$");
+
+    public static final String POLITICA_EAGER = "EAGER";
+    public static final String POLITICA_LAZY = "LAZY";
+
+    @Value("${documentos.geracao.politica:LAZY}")
+    private String politica;
+
+    @Value("${documentos.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Autowired(required = false)
+    private VendaRepository vendaRepository;
+
+    @Autowired(required = false)
+    private DocumentoStore documentoStore;
+
+    /** Renderizações em andamento, por nome de arquivo */
+    private final Map<String, CompletableFuture<Optional<DocumentoArmazenado>>> emVoo = new ConcurrentHashMap<>();
+
+    /** LRU em ordem de acesso; protegido por synchronized(lru) */
+    private final LinkedHashMap<String, DocumentoArmazenado> lru = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEmCache;
+
+    @PostConstruct
+    public void iniciar() {
+        store().aoAlterar(this::invalidar);
+    }
+
+    public boolean isEager() {
+        return POLITICA_EAGER.equalsIgnoreCase(politica);
+    }
+
+    /** Documento em memória, se estiver no LRU */
+    public Optional<DocumentoArmazenado> emCache(String nomeArquivo) {
+        synchronized (lru) {
+            return Optional.ofNullable(lru.get(nomeArquivo));
+        }
+    }
+
+    /** Descarta a cópia em memória (o documento mudou no store) */
+    public void invalidar(String nomeArquivo) {
+        synchronized (lru) {
+            DocumentoArmazenado removido = lru.remove(nomeArquivo);
+            if (removido != null) bytesEmCache -= removido.conteudo().length;
+        }
+    }
+
+    /**
+     * Renderiza o documento se o nome corresponder a uma venda paga.
+     * Chamadas concorrentes para o mesmo arquivo compartilham a mesma renderização.
+     */
+    public Optional<DocumentoArmazenado> obterOuRenderizar(String nomeArquivo) {
+        Optional<DocumentoArmazenado> cache = emCache(nomeArquivo);
+        if (cache.isPresent()) return cache;
+
+        Matcher m = NOME_DOCUMENTO.matcher(nomeArquivo);
+        if (!m.matches() || vendaRepository == null) return Optional.empty();
+
+        CompletableFuture<Optional<DocumentoArmazenado>> novo = new CompletableFuture<>();
+        CompletableFuture<Optional<DocumentoArmazenado>> existente = emVoo.putIfAbsent(nomeArquivo, novo);
+        if (existente != null) {
+            try {
+                return existente.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Erro ao gerar " + nomeArquivo, e.getCause());
+            }
+        }
+        try {
+            Optional<DocumentoArmazenado> doc = renderizar(nomeArquivo, m.group(1), m.group(2));
+            novo.complete(doc);
+            return doc;
+        } catch (RuntimeException e) {
+            novo.completeExceptionally(e);
+            throw e;
+        } finally {
+            emVoo.remove(nomeArquivo, novo);
+        }
+    }
+
+    private Optional<DocumentoArmazenado> renderizar(String nomeArquivo, String tipo, String vendaId) {
+        Optional<Venda> venda = vendaRepository.findById(vendaId).filter(v -> "PAGO".equals(v.getStatus()));
+        if (venda.isEmpty()) return Optional.empty();
+
+        long inicio = System.nanoTime();
+        byte[] pdf;
+        try {
+            pdf = "NF".equals(tipo) ? DocumentoFiscalService.pdfNotaFiscal(venda.get())
+                                    : DocumentoFiscalService.pdfRecibo(venda.get());
+        } catch (JRException e) {
+            throw new IllegalStateException("Erro ao gerar " + nomeArquivo, e);
+        }
+        DocumentoArmazenado doc = armazenar(nomeArquivo, pdf);
+        guardar(nomeArquivo, doc);
+        log.info("Documento {} gerado sob demanda em {} ms", nomeArquivo, (System.nanoTime() - inicio) / 1_000_000);
+        return Optional.of(doc);
+    }
+
+    /** Grava no store e devolve a versão em memória (com os bytes) para o LRU. */
+    private DocumentoArmazenado armazenar(String nomeArquivo, byte[] pdf) {
+        try {
+            DocumentoArmazenado gravado = store().gravar(nomeArquivo, pdf);
+            return new DocumentoArmazenado(nomeArquivo, gravado.hash(), pdf.length,
+                    gravado.modificadoEm(), null, pdf);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao gravar " + nomeArquivo, e);
+        }
+    }
+
+    private DocumentoStore store() {
+        return documentoStore != null ? documentoStore : DocumentoFiscalService.getStore();
+    }
+
+    private void guardar(String nomeArquivo, DocumentoArmazenado doc) {
+        if (doc.conteudo().length > maxBytes) return;
+        synchronized (lru) {
+            DocumentoArmazenado anterior = lru.put(nomeArquivo, doc);
+            if (anterior != null) bytesEmCache -= anterior.conteudo().length;
+            bytesEmCache += doc.conteudo().length;
+            Iterator<DocumentoArmazenado> it = lru.values().iterator();
+            while (bytesEmCache > maxBytes && it.hasNext()) {
+                bytesEmCache -= it.next().conteudo().length;
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.biblioteca.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Armazenamento dos documentos gerados (NF, recibo, relatórios), por nome lógico
+ * (ex.: {@code NF_<vendaId>.pdf}).
+ *
+ * Implementações endereçam o conteúdo pelo hash, então documentos idênticos
+ * ocupam espaço uma única vez. A implementação padrão é {@link DocumentoStoreLocal};
+ * um armazenamento compatível com S3 pode implementar a mesma interface.
+ */
+public interface DocumentoStore {
+
+    /**
+     * Documento localizado. {@code arquivo} é preenchido quando o conteúdo está
+     * num arquivo local (permite envio zero-copy); caso contrário {@code conteudo}
+     * traz os bytes. {@code hash} é o SHA-256 do conteúdo (serve como ETag forte).
+     */
+    record DocumentoArmazenado(String nome, String hash, long tamanho, long modificadoEm,
+                               Path arquivo, byte[] conteudo) {}
+
+    /** Grava (ou substitui) o documento com o nome lógico informado. */
+    DocumentoArmazenado gravar(String nome, byte[] conteudo) throws IOException;
+
+    Optional<DocumentoArmazenado> localizar(String nome) throws IOException;
+
+    default boolean existe(String nome) throws IOException {
+        return localizar(nome).isPresent();
+    }
+
+    boolean remover(String nome) throws IOException;
+
+    /**
+     * Registra quem deve saber quando um documento é gravado ou removido (recebe o
+     * nome lógico); usado para descartar cópias em memória desatualizadas.
+     */
+    void aoAlterar(Consumer<String> ouvinte);
+}
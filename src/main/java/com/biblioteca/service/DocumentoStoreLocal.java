@@ -0,0 +1,345 @@
+package com.biblioteca.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento de documentos no sistema de arquivos local.
+ *
+ * Layout em {@code documentos.store.diretorio} (padrão {@code output/}):
+ * <pre>
+ *   docs/ab/cd/NF_123.pdf.ref   nome lógico -&gt; hash do conteúdo (ab/cd = SHA-256 do nome)
+ *   blobs/ef/01/ef01...         conteúdo, endereçado pelo próprio SHA-256 (deduplicado)
+ *   arquivo/ef.zip              conteúdos frios compactados (um zip por prefixo do hash)
+ * </pre>
+ * Diretórios com no máximo 256 entradas por nível mantêm listagens e buscas rápidas.
+ *
+ * A manutenção diária remove referências além da retenção, apaga conteúdos sem
+ * referência e move para os zips os conteúdos mais antigos que {@code frio-dias}.
+ * Arquivos antigos gravados direto em {@code output/} são importados na inicialização.
+ */
+@Service
+public class DocumentoStoreLocal implements DocumentoStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentoStoreLocal.class);
+
+    /** Conteúdo recém-gravado ainda pode estar sem referência; a coleta espera este prazo. */
+    private static final Duration CARENCIA_COLETA = Duration.ofHours(1);
+
+    private final Path base;
+    private final Path docs;
+    private final Path blobs;
+    private final Path arquivo;
+    private final int retencaoDias;
+    private final int frioDias;
+
+    private final Map<Path, Object> locksZip = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> ouvintes = new CopyOnWriteArrayList<>();
+
+    /** Uso fora do Spring (modo console): retenção de 5 anos, frio após 180 dias */
+    public DocumentoStoreLocal(Path base) {
+        this(base, 1825, 180);
+    }
+
+    @Autowired
+    public DocumentoStoreLocal(@Value("${documentos.store.diretorio:output}") String diretorio,
+                               @Value("${documentos.store.retencao-dias:1825}") int retencaoDias,
+                               @Value("${documentos.store.frio-dias:180}") int frioDias) {
+        this(Paths.get(diretorio), retencaoDias, frioDias);
+    }
+
+    private DocumentoStoreLocal(Path base, int retencaoDias, int frioDias) {
+        this.base = base.toAbsolutePath().normalize();
+        this.docs = this.base.resolve("docs");
+        this.blobs = this.base.resolve("blobs");
+        this.arquivo = this.base.resolve("arquivo");
+        this.retencaoDias = retencaoDias;
+        this.frioDias = frioDias;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        DocumentoFiscalService.usarStore(this);
+        importarLegado();
+    }
+
+    // ========== OPERAÇÕES ==========
+
+    @Override
+    public DocumentoArmazenado gravar(String nome, byte[] conteudo) throws IOException {
+        validarNome(nome);
+        String hash = sha256(conteudo);
+        Path blob = caminhoBlob(hash);
+        if (Files.exists(blob)) {
+            // Conteúdo já existe: só renova a data para não ser considerado frio
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            gravarAtomico(blob, conteudo);
+        }
+        Path ref = caminhoRef(nome);
+        gravarAtomico(ref, (hash + "\n").getBytes(StandardCharsets.US_ASCII));
+        long modificado = Files.getLastModifiedTime(ref).toMillis();
+        notificar(nome);
+        return new DocumentoArmazenado(nome, hash, conteudo.length, modificado, blob, null);
+    }
+
+    @Override
+    public Optional<DocumentoArmazenado> localizar(String nome) throws IOException {
+        validarNome(nome);
+        Path ref = caminhoRef(nome);
+        String hash;
+        long modificado;
+        try {
+            hash = Files.readString(ref, StandardCharsets.US_ASCII).trim();
+            modificado = Files.getLastModifiedTime(ref).toMillis();
+        } catch (NoSuchFileException e) {
+            return importarSeLegado(nome);
+        }
+
+        Path blob = caminhoBlob(hash);
+        try {
+            long tamanho = Files.size(blob);
+            return Optional.of(new DocumentoArmazenado(nome, hash, tamanho, modificado, blob, null));
+        } catch (NoSuchFileException e) {
+            // Conteúdo frio: lê do zip
+            byte[] conteudo = lerDoArquivo(hash);
+            if (conteudo == null) {
+                log.warn("Documento {} referencia conteúdo inexistente {}", nome, hash);
+                return Optional.empty();
+            }
+            return Optional.of(new DocumentoArmazenado(nome, hash, conteudo.length, modificado, null, conteudo));
+        }
+    }
+
+    @Override
+    public boolean remover(String nome) throws IOException {
+        validarNome(nome);
+        boolean removido = Files.deleteIfExists(caminhoRef(nome));
+        if (removido) notificar(nome);
+        return removido;
+    }
+
+    @Override
+    public void aoAlterar(Consumer<String> ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    // ========== MANUTENÇÃO ==========
+
+    /**
+     * Aplica a retenção, coleta conteúdos sem referência e compacta os frios.
+     */
+    @Scheduled(cron = "${documentos.store.manutencao-cron:0 30 3 * * *}")
+    public void manutencao() {
+        long inicio = System.currentTimeMillis();
+        long limiteRetencao = inicio - Duration.ofDays(retencaoDias).toMillis();
+        long limiteFrio = inicio - Duration.ofDays(frioDias).toMillis();
+        long limiteColeta = inicio - CARENCIA_COLETA.toMillis();
+        int expirados = 0, coletados = 0, compactados = 0;
+        try {
+            // 1. Retenção + conjunto de hashes ainda referenciados
+            Set<String> referenciados = new HashSet<>();
+            if (Files.isDirectory(docs)) {
+                try (Stream<Path> refs = Files.walk(docs)) {
+                    for (Path ref : (Iterable<Path>) refs.filter(p -> p.toString().endsWith(".ref"))::iterator) {
+                        if (Files.getLastModifiedTime(ref).toMillis() < limiteRetencao) {
+                            Files.deleteIfExists(ref);
+                            expirados++;
+                        } else {
+                            referenciados.add(Files.readString(ref, StandardCharsets.US_ASCII).trim());
+                        }
+                    }
+                }
+            }
+
+            // 2. Conteúdos soltos: sem referência são apagados, frios vão para o zip
+            if (Files.isDirectory(blobs)) {
+                try (Stream<Path> arquivos = Files.walk(blobs)) {
+                    for (Path blob : (Iterable<Path>) arquivos
+                            .filter(p -> Files.isRegularFile(p) && !p.getFileName().toString().startsWith("."))::iterator) {
+                        String hash = blob.getFileName().toString();
+                        long modificado = Files.getLastModifiedTime(blob).toMillis();
+                        if (!referenciados.contains(hash)) {
+                            if (modificado < limiteColeta) {
+                                Files.deleteIfExists(blob);
+                                coletados++;
+                            }
+                        } else if (modificado < limiteFrio) {
+                            compactar(hash, blob);
+                            compactados++;
+                        }
+                    }
+                }
+            }
+
+            // 3. Entradas de zip sem referência
+            if (Files.isDirectory(arquivo)) {
+                try (DirectoryStream<Path> zips = Files.newDirectoryStream(arquivo, "*.zip")) {
+                    for (Path zip : zips) {
+                        coletados += coletarZip(zip, referenciados);
+                    }
+                }
+            }
+            log.info("Manutenção de documentos: {} expirados, {} conteúdos removidos, {} compactados em {} ms",
+                    expirados, coletados, compactados, System.currentTimeMillis() - inicio);
+        } catch (IOException e) {
+            log.error("Erro na manutenção do armazenamento de documentos", e);
+        }
+    }
+
+    // ========== AUXILIARES ==========
+
+    private void compactar(String hash, Path blob) throws IOException {
+        Path zip = caminhoZip(hash);
+        Files.createDirectories(zip.getParent());
+        synchronized (lockZip(zip)) {
+            try (FileSystem fs = abrirZip(zip, true)) {
+                Path entrada = fs.getPath(hash);
+                if (!Files.exists(entrada)) {
+                    Files.copy(blob, entrada);
+                }
+            }
+        }
+        Files.deleteIfExists(blob);
+    }
+
+    private int coletarZip(Path zip, Set<String> referenciados) throws IOException {
+        int removidos = 0;
+        synchronized (lockZip(zip)) {
+            try (FileSystem fs = abrirZip(zip, false);
+                 DirectoryStream<Path> entradas = Files.newDirectoryStream(fs.getPath("/"))) {
+                for (Path entrada : entradas) {
+                    String hash = entrada.getFileName().toString();
+                    if (!referenciados.contains(hash)) {
+                        Files.delete(entrada);
+                        removidos++;
+                    }
+                }
+            }
+        }
+        return removidos;
+    }
+
+    private byte[] lerDoArquivo(String hash) throws IOException {
+        Path zip = caminhoZip(hash);
+        if (!Files.exists(zip)) return null;
+        synchronized (lockZip(zip)) {
+            try (FileSystem fs = abrirZip(zip, false)) {
+                Path entrada = fs.getPath(hash);
+                return Files.exists(entrada) ? Files.readAllBytes(entrada) : null;
+            }
+        }
+    }
+
+    /** Importa os PDFs gravados no layout antigo (direto em output/). */
+    private void importarLegado() {
+        if (!Files.isDirectory(base)) return;
+        int importados = 0;
+        try (DirectoryStream<Path> antigos = Files.newDirectoryStream(base, "*.pdf")) {
+            for (Path antigo : antigos) {
+                if (importarSeLegado(antigo.getFileName().toString()).isPresent()) importados++;
+            }
+        } catch (IOException e) {
+            log.error("Erro ao importar documentos antigos de {}", base, e);
+        }
+        if (importados > 0) {
+            log.info("Documentos importados do diretório antigo: {}", importados);
+        }
+    }
+
+    private Optional<DocumentoArmazenado> importarSeLegado(String nome) throws IOException {
+        Path antigo = base.resolve(nome);
+        if (!Files.isRegularFile(antigo)) return Optional.empty();
+        BasicFileAttributes atributos = Files.readAttributes(antigo, BasicFileAttributes.class);
+        DocumentoArmazenado doc = gravar(nome, Files.readAllBytes(antigo));
+        Files.setLastModifiedTime(caminhoRef(nome), atributos.lastModifiedTime());
+        Files.deleteIfExists(antigo);
+        return Optional.of(new DocumentoArmazenado(nome, doc.hash(), doc.tamanho(),
+                atributos.lastModifiedTime().toMillis(), doc.arquivo(), null));
+    }
+
+    private static void gravarAtomico(Path destino, byte[] conteudo) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path temp = Files.createTempFile(destino.getParent(), ".grav", ".tmp");
+        try {
+            Files.write(temp, conteudo);
+            Files.move(temp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static FileSystem abrirZip(Path zip, boolean criar) throws IOException {
+        URI uri = URI.create("jar:" + zip.toUri());
+        return FileSystems.newFileSystem(uri, criar ? Map.of("create", "true") : Map.of());
+    }
+
+    private void notificar(String nome) {
+        for (Consumer<String> ouvinte : ouvintes) {
+            ouvinte.accept(nome);
+        }
+    }
+
+    private Object lockZip(Path zip) {
+        return locksZip.computeIfAbsent(zip, k -> new Object());
+    }
+
+    private Path caminhoRef(String nome) {
+        String h = sha256(nome.getBytes(StandardCharsets.UTF_8));
+        return docs.resolve(h.substring(0, 2)).resolve(h.substring(2, 4)).resolve(nome + ".ref");
+    }
+
+    private Path caminhoBlob(String hash) {
+        return blobs.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Path caminhoZip(String hash) {
+        return arquivo.resolve(hash.substring(0, 2) + ".zip");
+    }
+
+    private static void validarNome(String nome) {
+        if (nome == null || nome.isBlank() || nome.contains("/") || nome.contains("\\") || nome.startsWith(".")) {
+            throw new IllegalArgumentException("Nome de documento inválido: " + nome);
+        }
+    }
+
+    private static String sha256(byte[] dados) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(dados));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
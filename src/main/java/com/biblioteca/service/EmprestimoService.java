@@ -2,6 +2,7 @@ package com.biblioteca.service;
 
 import com.biblioteca.model.Emprestimo;
 import com.biblioteca.model.Livro;
+import com.biblioteca.model.Reserva;
 import com.biblioteca.model.Usuario;
 import com.biblioteca.repository.EmprestimoRepository;
 import com.biblioteca.util.JPAUtil;
@@ -40,6 +41,15 @@ public class EmprestimoService {
     @Autowired(required = false)
     private AuditoriaService auditoriaService;
     
+    @Autowired(required = false)
+    private com.biblioteca.repository.ReservaRepository reservaRepository;
+    
+    @Autowired(required = false)
+    private PrevisaoDisponibilidadeService previsaoDisponibilidadeService;
+
+    @Autowired(required = false)
+    private ReservaEstoqueService reservaEstoqueService;
+    
     @org.springframework.beans.factory.annotation.Value("${aluguel.prazo-dias:7}")
     private int prazoDiasPadrao;
     
@@ -70,8 +80,11 @@ public class EmprestimoService {
             throw new RuntimeException("Usuário possui multas pendentes. Regularize antes de novo empréstimo.");
         }
         
-        // Valida estoque
-        if (livro.getQuantidadeEstoque() != null && livro.getQuantidadeEstoque() <= 0) {
+        // Valida estoque (unidades reservadas em carrinhos de outros clientes não podem ser emprestadas)
+        Integer disponivel = reservaEstoqueService != null
+                ? reservaEstoqueService.disponivelPara(usuario.getId(), livro)
+                : livro.getQuantidadeEstoque();
+        if (disponivel != null && disponivel <= 0) {
             throw new RuntimeException("Livro sem estoque disponível");
         }
         
@@ -89,6 +102,21 @@ public class EmprestimoService {
             livroRepository.save(livro);
         }
         
+        // Previsão de disponibilidade (aplicada após o commit)
+        if (previsaoDisponibilidadeService != null) {
+            previsaoDisponibilidadeService.registrarEmprestimo(emprestimoSalvo);
+        }
+        
+        // Reserva do usuário para o título foi atendida por este empréstimo
+        if (reservaRepository != null) {
+            for (Reserva r : reservaRepository.findByUsuarioIdAndStatus(usuario.getId(), Reserva.STATUS_AGUARDANDO)) {
+                if (r.getLivro().getId().equals(livro.getId())) {
+                    r.setStatus(Reserva.STATUS_ATENDIDA);
+                    reservaRepository.save(r);
+                }
+            }
+        }
+        
         // Auditoria
         if (auditoriaService != null) {
             auditoriaService.createAuditoriaInsertWeb(emprestimoSalvo, usuario);
@@ -139,6 +167,9 @@ public class EmprestimoService {
         
         double multa = emprestimo.calcularMulta();
         emprestimoRepository.save(emprestimo);
+        if (previsaoDisponibilidadeService != null) {
+            previsaoDisponibilidadeService.registrarDevolucao(emprestimo);
+        }
         
         // Incrementa estoque do livro
         if (livroRepository != null) {
@@ -155,6 +186,120 @@ public class EmprestimoService {
         return multa;
     }
     
+    /**
+     * Renova um empréstimo ativo, estendendo a data prevista em prazoDias (versão web).
+     * A verificação de reservas e multas é feita na própria UPDATE condicional,
+     * sem devolução/novo empréstimo (sem escrita de estoque nem e-mail).
+     */
+    public Emprestimo renovarEmprestimoWeb(Long emprestimoId) {
+        if (emprestimoRepository == null) {
+            throw new RuntimeException("Renovação disponível apenas na versão web");
+        }
+        
+        int renovados = emprestimoRepository.renewLoanIfAllowed(emprestimoId, prazoDiasPadrao, LocalDate.now());
+        Emprestimo emprestimo = emprestimoRepository.findById(emprestimoId)
+                .orElseThrow(() -> new RuntimeException("Empréstimo não encontrado"));
+        
+        if (renovados == 0) {
+            // Caminho de falha: descobre o motivo apenas para a mensagem
+            if (emprestimo.isDevolvido()) {
+                throw new RuntimeException("Empréstimo já foi devolvido");
+            }
+            if (reservaRepository != null && reservaRepository.existsWaitingForBook(emprestimo.getLivro().getId())) {
+                throw new RuntimeException("Livro possui reservas aguardando. Renovação não permitida.");
+            }
+            throw new RuntimeException("Usuário possui multas pendentes. Regularize antes de renovar.");
+        }
+        
+        if (previsaoDisponibilidadeService != null) {
+            previsaoDisponibilidadeService.registrarEmprestimo(emprestimo);
+        }
+        
+        if (auditoriaService != null) {
+            auditoriaService.registrarOperacao(emprestimo.getUsuario(), "Emprestimo", emprestimo.getId(), "RENOVAR_EMPRESTIMO",
+                "Empréstimo renovado. Nova data prevista: " + emprestimo.getDataPrevista());
+        }
+        
+        return emprestimo;
+    }
+    
+    /**
+     * Renova todos os empréstimos ativos do usuário numa única transação (versão web).
+     * Empréstimos de títulos com reservas aguardando são mantidos como estão;
+     * se o usuário tiver multas nenhum é renovado.
+     *
+     * @return quantidade de empréstimos renovados
+     */
+    public int renovarTodosEmprestimosWeb(Usuario usuario) {
+        if (emprestimoRepository == null) {
+            throw new RuntimeException("Renovação disponível apenas na versão web");
+        }
+        
+        int renovados = emprestimoRepository.renewAllLoansOfUserIfAllowed(usuario.getId(), prazoDiasPadrao, LocalDate.now());
+        if (renovados == 0 && emprestimoRepository.hasFinesByUser(usuario, LocalDate.now())) {
+            throw new RuntimeException("Usuário possui multas pendentes. Regularize antes de renovar.");
+        }
+        
+        if (renovados > 0 && previsaoDisponibilidadeService != null) {
+            emprestimoRepository.findByUsuario(usuario).stream()
+                    .filter(e -> !e.isDevolvido())
+                    .forEach(previsaoDisponibilidadeService::registrarEmprestimo);
+        }
+        
+        if (renovados > 0 && auditoriaService != null) {
+            auditoriaService.registrarOperacao(usuario, "Emprestimo", null, "RENOVAR_EMPRESTIMOS",
+                String.format("%d empréstimo(s) renovado(s) em lote", renovados));
+        }
+        
+        return renovados;
+    }
+    
+    /**
+     * Coloca o usuário na fila de espera de um título sem exemplares livres (versão web).
+     * Enquanto houver reservas aguardando, os empréstimos do título não são renovados.
+     */
+    public Reserva reservarTituloWeb(Usuario usuario, Livro livro) {
+        if (reservaRepository == null) {
+            throw new RuntimeException("Reserva disponível apenas na versão web");
+        }
+        for (Reserva r : reservaRepository.findByUsuarioIdAndStatus(usuario.getId(), Reserva.STATUS_AGUARDANDO)) {
+            if (r.getLivro().getId().equals(livro.getId())) {
+                throw new RuntimeException("Você já está na fila deste livro");
+            }
+        }
+        Integer disponivel = reservaEstoqueService != null
+                ? reservaEstoqueService.disponivelPara(usuario.getId(), livro)
+                : livro.getQuantidadeEstoque();
+        if (disponivel == null || disponivel > 0) {
+            throw new RuntimeException("Livro disponível; não é necessário reservar");
+        }
+        
+        Reserva reserva = reservaRepository.save(new Reserva(usuario, livro));
+        if (auditoriaService != null) {
+            auditoriaService.registrarOperacao(usuario, "Reserva", reserva.getId(), "RESERVAR_TITULO",
+                "Reserva na fila de " + livro.getTitulo());
+        }
+        return reserva;
+    }
+    
+    /** Sai da fila de espera (versão web) */
+    public void cancelarReservaWeb(Long reservaId) {
+        if (reservaRepository == null) {
+            throw new RuntimeException("Reserva disponível apenas na versão web");
+        }
+        Reserva reserva = reservaRepository.findById(reservaId)
+                .orElseThrow(() -> new RuntimeException("Reserva não encontrada"));
+        if (!Reserva.STATUS_AGUARDANDO.equals(reserva.getStatus())) {
+            throw new RuntimeException("Reserva não está aguardando");
+        }
+        reserva.setStatus(Reserva.STATUS_CANCELADA);
+        reservaRepository.save(reserva);
+        if (auditoriaService != null) {
+            auditoriaService.registrarOperacao(reserva.getUsuario(), "Reserva", reserva.getId(), "CANCELAR_RESERVA",
+                "Reserva cancelada: " + reserva.getLivro().getTitulo());
+        }
+    }
+    
     /**
      * Verifica empréstimos em atraso (versão web)
      */
@@ -262,10 +407,38 @@ public class EmprestimoService {
         return todos.subList(offset,to);
     }
 
+    /**
+     * Busca empréstimos filtrados inteiramente no banco (versão web).
+     * Com ultimoId usa paginação keyset (id DESC); sem ele, offset/limit.
+     */
+    public List<Emprestimo> buscarPorFiltro(com.biblioteca.repository.EmprestimoFiltro filtro, Long ultimoId, int offset, int limit) {
+        if (emprestimoRepository == null) {
+            return List.of();
+        }
+        return emprestimoRepository.buscarPorFiltro(filtro, ultimoId, offset, limit);
+    }
+    
+    /**
+     * Conta empréstimos que atendem ao filtro (versão web)
+     */
+    public long contarPorFiltro(com.biblioteca.repository.EmprestimoFiltro filtro) {
+        if (emprestimoRepository == null) {
+            return 0;
+        }
+        if (filtro == null || filtro.isVazio()) {
+            return emprestimoRepository.count();
+        }
+        return emprestimoRepository.count(com.biblioteca.repository.EmprestimoSpecifications.comFiltro(filtro));
+    }
+
     public Emprestimo salvarEmprestimo(Usuario usuario,Livro livro, LocalDate dataEmprestimo, LocalDate dataPrevista){
         Emprestimo emp=new Emprestimo(usuario,livro,dataEmprestimo,dataPrevista);
         if(emprestimoRepository!=null){
-            return emprestimoRepository.save(emp);
+            Emprestimo salvo = emprestimoRepository.save(emp);
+            if (previsaoDisponibilidadeService != null) {
+                previsaoDisponibilidadeService.registrarEmprestimo(salvo);
+            }
+            return salvo;
         }
         EntityManager em= JPAUtil.getEntityManager();
         em.getTransaction().begin();
@@ -281,7 +454,11 @@ public class EmprestimoService {
                 e.setDevolvido(true);
                 e.setDataDevolucao(LocalDate.now());
                 e.setStatus("DEVOLVIDO");
-                return emprestimoRepository.save(e);
+                Emprestimo salvo = emprestimoRepository.save(e);
+                if (previsaoDisponibilidadeService != null) {
+                    previsaoDisponibilidadeService.registrarDevolucao(salvo);
+                }
+                return salvo;
             }).orElse(null);
         }
         EntityManager em=JPAUtil.getEntityManager();
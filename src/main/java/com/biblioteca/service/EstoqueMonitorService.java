@@ -14,7 +14,7 @@ import java.util.List;
 @Service
 public class EstoqueMonitorService {
 
-    private static final int LIMIAR_ESTOQUE = 5;
+    public static final int LIMIAR_ESTOQUE = 5;
 
     @Autowired(required = false)
     private LivroRepository livroRepository;
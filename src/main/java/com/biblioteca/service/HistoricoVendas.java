@@ -0,0 +1,306 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Venda;
+import com.biblioteca.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histórico de vendas em memória, atualizado de forma incremental.
+ *
+ * - índice por session id (id da venda) para atualizar status sem varrer a lista;
+ * - totais por status e por (status, tipo de pagamento) mantidos a cada mudança,
+ *   então o dashboard lê contagens e valores em O(1);
+ * - só as vendas da janela ({@code vendas.historico.janela-dias}, no máximo
+ *   {@code vendas.historico.max-vendas}) ficam em memória para a tabela e o gráfico.
+ *
+ * Os totais cobrem todo o histórico: na carga vêm de um GROUP BY no banco e as
+ * vendas que saem da janela não são descontadas. Mudança de status de uma venda
+ * que não está em memória (fora da janela) move a venda entre os totais usando o
+ * status anterior informado por quem alterou.
+ */
+public final class HistoricoVendas {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoricoVendas.class);
+
+    /** Venda resumida (só o que o dashboard mostra) */
+    public record VendaResumo(String sessionId, String cliente, String cpf, String email, Double valor,
+                              String tipoPagamento, LocalDateTime data, String status) {
+
+        public static VendaResumo de(Venda venda) {
+            return new VendaResumo(venda.getId(), venda.getClienteNome(), venda.getClienteCpf(),
+                    venda.getClienteEmail(), venda.getValorTotal(), venda.getTipoPagamento(),
+                    venda.getDataVenda(), venda.getStatus());
+        }
+
+        VendaResumo comStatus(String novoStatus) {
+            return new VendaResumo(sessionId, cliente, cpf, email, valor, tipoPagamento, data, novoStatus);
+        }
+
+        double valorOuZero() {
+            return valor != null ? valor : 0.0;
+        }
+    }
+
+    /** Contagem e soma de um grupo (status ou status+tipo) */
+    private static final class Total {
+        final LongAdder quantidade = new LongAdder();
+        final DoubleAdder valor = new DoubleAdder();
+    }
+
+    // Mais recente primeiro; desempate pelo id para vendas no mesmo instante
+    private static final Comparator<VendaResumo> ORDEM = Comparator
+            .comparing(VendaResumo::data, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed()
+            .thenComparing(VendaResumo::sessionId);
+
+    private static volatile int janelaDias = 90;
+    private static volatile int maxVendas = 50_000;
+    private static volatile HistoricoVendas instancia;
+
+    private final Map<String, VendaResumo> porSessao = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<VendaResumo> janela = new ConcurrentSkipListSet<>(ORDEM);
+    private final AtomicInteger tamanhoJanela = new AtomicInteger();
+    private final Map<String, Total> porStatus = new ConcurrentHashMap<>();
+    private final Map<String, Total> porStatusETipo = new ConcurrentHashMap<>();
+
+    private HistoricoVendas() {}
+
+    /** Ajusta a retenção; vale para a próxima carga */
+    public static void configurar(int dias, int maximo) {
+        janelaDias = Math.max(1, dias);
+        maxVendas = Math.max(1, maximo);
+    }
+
+    /** Instância compartilhada, carregada do banco no primeiro acesso */
+    public static HistoricoVendas getInstancia() {
+        HistoricoVendas atual = instancia;
+        if (atual == null) {
+            synchronized (HistoricoVendas.class) {
+                atual = instancia;
+                if (atual == null) {
+                    atual = new HistoricoVendas();
+                    atual.carregar();
+                    instancia = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    /** Descarta o estado e recarrega do banco (ex.: banco alterado por fora da aplicação) */
+    public static void recarregar() {
+        synchronized (HistoricoVendas.class) {
+            HistoricoVendas nova = new HistoricoVendas();
+            nova.carregar();
+            instancia = nova;
+        }
+    }
+
+    /**
+     * Registra a venda depois do commit da transação Spring corrente (ou na hora,
+     * fora de transação): rollback não deixa venda fantasma no dashboard.
+     * Se o histórico ainda não foi carregado não há o que fazer; a carga lê do banco.
+     */
+    public static void registrarAposCommit(Venda venda) {
+        VendaResumo resumo = VendaResumo.de(venda);
+        aposCommit(() -> {
+            HistoricoVendas atual = instancia;
+            if (atual != null) atual.registrar(resumo);
+        });
+    }
+
+    /**
+     * Status atualizado depois do commit, como {@link #registrarAposCommit(Venda)}.
+     * {@code venda} já com o novo status; {@code statusAnterior} ajusta os totais
+     * quando a venda não está em memória.
+     */
+    public static void atualizarStatusAposCommit(Venda venda, String statusAnterior) {
+        VendaResumo atualizada = VendaResumo.de(venda);
+        aposCommit(() -> {
+            HistoricoVendas atual = instancia;
+            if (atual != null) atual.atualizarStatus(atualizada, statusAnterior);
+        });
+    }
+
+    private static void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    // ========== CARGA ==========
+
+    private void carregar() {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            // Totais de todo o histórico, agregados no banco
+            List<Object[]> grupos = em.createQuery(
+                    "SELECT v.status, v.tipoPagamento, COUNT(v), COALESCE(SUM(v.valorTotal), 0) " +
+                    "FROM Venda v GROUP BY v.status, v.tipoPagamento", Object[].class)
+                .getResultList();
+            for (Object[] g : grupos) {
+                long quantidade = ((Number) g[2]).longValue();
+                double valor = ((Number) g[3]).doubleValue();
+                somar((String) g[0], (String) g[1], quantidade, valor);
+            }
+
+            // Só a janela recente vai para a memória
+            List<Object[]> recentes = em.createQuery(
+                    "SELECT v.id, v.clienteNome, v.clienteCpf, v.clienteEmail, v.valorTotal, v.tipoPagamento, " +
+                    "v.dataVenda, v.status FROM Venda v WHERE v.dataVenda >= :limite ORDER BY v.dataVenda DESC",
+                    Object[].class)
+                .setParameter("limite", LocalDateTime.now().minusDays(janelaDias))
+                .setMaxResults(maxVendas)
+                .getResultList();
+            for (Object[] l : recentes) {
+                VendaResumo venda = new VendaResumo((String) l[0], (String) l[1], (String) l[2], (String) l[3],
+                        (Double) l[4], (String) l[5], (LocalDateTime) l[6], (String) l[7]);
+                porSessao.put(venda.sessionId(), venda);
+                if (janela.add(venda)) tamanhoJanela.incrementAndGet();
+            }
+            log.info("Histórico de vendas carregado: {} vendas na janela de {} dias", recentes.size(), janelaDias);
+        } catch (Exception e) {
+            log.error("Erro ao carregar histórico de vendas", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // ========== ATUALIZAÇÃO ==========
+
+    /** Insere ou substitui a venda, ajustando os totais pela diferença */
+    public void registrar(VendaResumo venda) {
+        if (venda == null || venda.sessionId() == null) return;
+        porSessao.compute(venda.sessionId(), (id, anterior) -> {
+            if (anterior != null) {
+                somar(anterior.status(), anterior.tipoPagamento(), -1, -anterior.valorOuZero());
+                if (janela.remove(anterior)) tamanhoJanela.decrementAndGet();
+            }
+            somar(venda.status(), venda.tipoPagamento(), 1, venda.valorOuZero());
+            if (janela.add(venda)) tamanhoJanela.incrementAndGet();
+            return venda;
+        });
+        aplicarRetencao();
+    }
+
+    /**
+     * Muda o status da venda. Na janela, ajusta pela versão em memória; fora dela,
+     * tira a venda dos totais de {@code statusAnterior} e soma nos do novo status.
+     */
+    public boolean atualizarStatus(VendaResumo atualizada, String statusAnterior) {
+        String sessionId = atualizada.sessionId();
+        String novoStatus = atualizada.status();
+        if (sessionId == null || novoStatus == null) return false;
+        boolean[] naJanela = {false};
+        boolean[] alterada = {false};
+        porSessao.computeIfPresent(sessionId, (id, anterior) -> {
+            naJanela[0] = true;
+            if (novoStatus.equals(anterior.status())) return anterior;
+            VendaResumo comNovoStatus = anterior.comStatus(novoStatus);
+            somar(anterior.status(), anterior.tipoPagamento(), -1, -anterior.valorOuZero());
+            somar(novoStatus, anterior.tipoPagamento(), 1, anterior.valorOuZero());
+            if (janela.remove(anterior)) tamanhoJanela.decrementAndGet();
+            if (janela.add(comNovoStatus)) tamanhoJanela.incrementAndGet();
+            alterada[0] = true;
+            return comNovoStatus;
+        });
+        if (!naJanela[0] && statusAnterior != null && !novoStatus.equals(statusAnterior)) {
+            somar(statusAnterior, atualizada.tipoPagamento(), -1, -atualizada.valorOuZero());
+            somar(novoStatus, atualizada.tipoPagamento(), 1, atualizada.valorOuZero());
+            alterada[0] = true;
+        }
+        return alterada[0];
+    }
+
+    private void somar(String status, String tipo, long quantidade, double valor) {
+        if (status == null) return;
+        Total s = porStatus.computeIfAbsent(status, k -> new Total());
+        s.quantidade.add(quantidade);
+        s.valor.add(valor);
+        Total st = porStatusETipo.computeIfAbsent(status + "|" + tipo, k -> new Total());
+        st.quantidade.add(quantidade);
+        st.valor.add(valor);
+    }
+
+    // Remove da memória o que passou da idade ou excede a capacidade (os totais ficam)
+    private void aplicarRetencao() {
+        LocalDateTime limite = LocalDateTime.now().minusDays(janelaDias);
+        VendaResumo maisAntiga;
+        while ((maisAntiga = janela.isEmpty() ? null : janela.last()) != null
+                && (tamanhoJanela.get() > maxVendas
+                    || (maisAntiga.data() != null && maisAntiga.data().isBefore(limite)))) {
+            if (janela.remove(maisAntiga)) {
+                tamanhoJanela.decrementAndGet();
+                porSessao.remove(maisAntiga.sessionId(), maisAntiga);
+            }
+        }
+    }
+
+    // ========== CONSULTA ==========
+
+    public Optional<VendaResumo> buscar(String sessionId) {
+        return Optional.ofNullable(sessionId != null ? porSessao.get(sessionId) : null);
+    }
+
+    /** Vendas da janela, mais recentes primeiro */
+    public List<VendaResumo> getVendasRecentes() {
+        return new ArrayList<>(janela);
+    }
+
+    public long getQuantidade(String status) {
+        Total t = porStatus.get(status);
+        return t != null ? t.quantidade.sum() : 0;
+    }
+
+    public double getValor(String status) {
+        Total t = porStatus.get(status);
+        return t != null ? t.valor.sum() : 0.0;
+    }
+
+    public long getQuantidade(String status, String tipoPagamento) {
+        Total t = porStatusETipo.get(status + "|" + tipoPagamento);
+        return t != null ? t.quantidade.sum() : 0;
+    }
+
+    public double getValor(String status, String tipoPagamento) {
+        Total t = porStatusETipo.get(status + "|" + tipoPagamento);
+        return t != null ? t.valor.sum() : 0.0;
+    }
+
+    /** Quantidade por status (sem status zerados) */
+    public Map<String, Long> getQuantidadePorStatus() {
+        Map<String, Long> resultado = new HashMap<>();
+        porStatus.forEach((status, t) -> {
+            long quantidade = t.quantidade.sum();
+            if (quantidade > 0) resultado.put(status, quantidade);
+        });
+        return resultado;
+    }
+
+    public int getTamanhoJanela() {
+        return tamanhoJanela.get();
+    }
+}
@@ -0,0 +1,141 @@
+package com.biblioteca.service;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache dos relatórios Jasper compilados, compartilhado por todas as threads.
+ *
+ * Para cada template ({@code relatorios/nome.jrxml}) usa o {@code .jasper}
+ * pré-compilado se existir no classpath; senão compila o .jrxml uma única vez.
+ * Quando o template vem do sistema de arquivos (execução pela IDE / target/classes)
+ * a data de modificação é verificada a cada {@value #INTERVALO_VERIFICACAO_MS} ms
+ * e o relatório é recompilado se o arquivo mudou. Dentro de um jar não há verificação.
+ *
+ * JasperReport é imutável depois de compilado, então a mesma instância pode
+ * ser preenchida em paralelo.
+ */
+public final class JasperTemplateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(JasperTemplateCache.class);
+
+    private static final long INTERVALO_VERIFICACAO_MS = 1000;
+
+    /** -Drelatorios.hot-reload=false desliga a verificação mesmo fora do jar */
+    private static final boolean HOT_RELOAD = !"false".equalsIgnoreCase(System.getProperty("relatorios.hot-reload"));
+
+    private static final Map<String, Entrada> CACHE = new ConcurrentHashMap<>();
+
+    private JasperTemplateCache() {}
+
+    private static final class Entrada {
+        final JasperReport relatorio;
+        final File arquivoFonte; // null quando não dá para verificar (jar, .jasper)
+        final long modificadoEm;
+        volatile long ultimaVerificacao;
+
+        Entrada(JasperReport relatorio, File arquivoFonte) {
+            this.relatorio = relatorio;
+            this.arquivoFonte = arquivoFonte;
+            this.modificadoEm = arquivoFonte != null ? arquivoFonte.lastModified() : 0L;
+            this.ultimaVerificacao = System.currentTimeMillis();
+        }
+
+        boolean desatualizada() {
+            if (arquivoFonte == null) return false;
+            long agora = System.currentTimeMillis();
+            if (agora - ultimaVerificacao < INTERVALO_VERIFICACAO_MS) return false;
+            ultimaVerificacao = agora;
+            return arquivoFonte.lastModified() != modificadoEm;
+        }
+    }
+
+    /**
+     * Relatório compilado para o template informado (caminho do .jrxml no classpath).
+     */
+    public static JasperReport obter(String caminhoJrxml) throws JRException {
+        Entrada entrada = CACHE.get(caminhoJrxml);
+        if (entrada != null && !entrada.desatualizada()) {
+            return entrada.relatorio;
+        }
+        try {
+            entrada = CACHE.compute(caminhoJrxml, (caminho, atual) -> {
+                // Outra thread pode ter recarregado enquanto esta esperava
+                if (atual != null && atual.arquivoFonte != null
+                        && atual.arquivoFonte.lastModified() == atual.modificadoEm) {
+                    return atual;
+                }
+                try {
+                    return carregar(caminho);
+                } catch (JRException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof JRException jr) throw jr;
+            throw e;
+        }
+        return entrada.relatorio;
+    }
+
+    /** Descarta todos os relatórios compilados */
+    public static void limpar() {
+        CACHE.clear();
+    }
+
+    private static Entrada carregar(String caminhoJrxml) throws JRException {
+        ClassLoader cl = JasperTemplateCache.class.getClassLoader();
+
+        String caminhoJasper = caminhoJrxml.replaceFirst("\\.jrxml$", ".jasper");
+        URL urlFonte = cl.getResource(caminhoJrxml);
+        URL urlJasper = cl.getResource(caminhoJasper);
+        File arquivoFonte = HOT_RELOAD ? arquivo(urlFonte) : null;
+
+        // Pré-compilado só é usado se não houver fonte editável mais nova
+        if (urlJasper != null && (arquivoFonte == null || arquivoFonte.lastModified() <= modificado(urlJasper))) {
+            try (InputStream in = urlJasper.openStream()) {
+                log.debug("Relatório carregado pré-compilado: {}", caminhoJasper);
+                return new Entrada((JasperReport) JRLoader.loadObject(in), null);
+            } catch (java.io.IOException e) {
+                throw new JRException("Erro ao ler " + caminhoJasper, e);
+            }
+        }
+
+        if (urlFonte == null) {
+            throw new JRException("Template não encontrado no classpath: " + caminhoJrxml);
+        }
+        long inicio = System.nanoTime();
+        try (InputStream in = urlFonte.openStream()) {
+            JasperReport relatorio = JasperCompileManager.compileReport(in);
+            log.info("Relatório {} compilado em {} ms", caminhoJrxml, (System.nanoTime() - inicio) / 1_000_000);
+            return new Entrada(relatorio, arquivoFonte);
+        } catch (java.io.IOException e) {
+            throw new JRException("Erro ao ler " + caminhoJrxml, e);
+        }
+    }
+
+    private static File arquivo(URL url) {
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static long modificado(URL url) {
+        File f = arquivo(url);
+        return f != null ? f.lastModified() : Long.MAX_VALUE;
+    }
+}
@@ -2,6 +2,7 @@ package com.biblioteca.service;
 
 import com.biblioteca.model.Livro;
 import com.biblioteca.model.Usuario;
+import com.biblioteca.repository.EmprestimoSpecifications;
 import com.biblioteca.repository.LivroRepository;
 import com.biblioteca.util.JPAUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -314,6 +315,35 @@ public class LivroService {
         return todos.subList(offset, to);
     }
 
+    /**
+     * Lista livros com estoque cujo título começa com o prefixo, paginado (versão web).
+     * Usado pelos seletores lazy para não carregar o catálogo inteiro.
+     */
+    public List<Livro> buscarDisponiveisPorPrefixo(String prefixo, int offset, int limit) {
+        String termo = prefixo != null ? prefixo.trim() : "";
+        if (livroRepository != null) {
+            int page = offset / limit;
+            return livroRepository.findAvailableByTitlePrefix(EmprestimoSpecifications.prefixo(termo), org.springframework.data.domain.PageRequest.of(page, limit));
+        }
+        return listarLivros().stream()
+                .filter(l -> l.getQuantidadeEstoque() != null && l.getQuantidadeEstoque() > 0)
+                .filter(l -> l.getTitulo() != null && l.getTitulo().toLowerCase().startsWith(termo.toLowerCase()))
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
+    
+    /**
+     * Conta livros com estoque cujo título começa com o prefixo (versão web)
+     */
+    public long contarDisponiveisPorPrefixo(String prefixo) {
+        String termo = prefixo != null ? prefixo.trim() : "";
+        if (livroRepository != null) {
+            return livroRepository.countAvailableByTitlePrefix(EmprestimoSpecifications.prefixo(termo));
+        }
+        return buscarDisponiveisPorPrefixo(termo, 0, Integer.MAX_VALUE).size();
+    }
+
     /**
      * Obtém o usuário atual da sessão
      */
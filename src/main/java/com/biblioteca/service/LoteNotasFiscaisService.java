@@ -0,0 +1,244 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.LoteDocumento;
+import com.biblioteca.model.Venda;
+import com.biblioteca.repository.LoteDocumentoRepository;
+import com.biblioteca.repository.VendaRepository;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Geração em lote das notas fiscais de um mês (fechamento contábil).
+ *
+ * As vendas pagas do período são lidas em blocos por keyset (data, id), com
+ * itens e livros numa única consulta por bloco. O preenchimento dos relatórios
+ * roda em paralelo (um worker por núcleo) sobre o template compilado compartilhado.
+ *
+ * Modos:
+ * - INDIVIDUAL: regrava NF_&lt;venda&gt;.pdf de cada venda;
+ * - POR_DIA: um PDF com todas as notas do dia (NF_lote_&lt;aaaa-mm-dd&gt;.pdf).
+ *
+ * O progresso fica em {@code lote_documentos}; executar de novo o mesmo mês/modo
+ * continua a partir da última venda (INDIVIDUAL) ou do último dia fechado (POR_DIA).
+ */
+@Service
+public class LoteNotasFiscaisService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoteNotasFiscaisService.class);
+
+    public enum Modo { INDIVIDUAL, POR_DIA }
+
+    @Value("${documentos.lote.tamanho-bloco:200}")
+    private int tamanhoBloco;
+
+    @Value("${documentos.lote.modo-mensal:POR_DIA}")
+    private Modo modoMensal;
+
+    @Autowired(required = false)
+    private VendaRepository vendaRepository;
+
+    @Autowired(required = false)
+    private LoteDocumentoRepository loteDocumentoRepository;
+
+    @Autowired(required = false)
+    private DocumentoStore documentoStore;
+
+    /** Um lote por vez: é pesado em CPU e não deve disputar com ele mesmo */
+    private final ExecutorService disparador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lote-notas-fiscais");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Lote do mês anterior (documentos.lote.cron; desligado por padrão). */
+    @Scheduled(cron = "${documentos.lote.cron:-}")
+    public void loteMensal() {
+        iniciar(YearMonth.now().minusMonths(1), modoMensal);
+    }
+
+    /** Inicia (ou retoma) o lote em segundo plano. */
+    public Future<LoteDocumento> iniciar(YearMonth mes, Modo modo) {
+        return disparador.submit(() -> executar(mes, modo));
+    }
+
+    public Optional<LoteDocumento> situacao(YearMonth mes, Modo modo) {
+        return loteDocumentoRepository != null ? loteDocumentoRepository.findById(idLote(mes, modo)) : Optional.empty();
+    }
+
+    /**
+     * Executa o lote na thread atual e devolve o checkpoint final.
+     */
+    public LoteDocumento executar(YearMonth mes, Modo modo) throws IOException, JRException, InterruptedException {
+        LocalDateTime inicio = mes.atDay(1).atStartOfDay();
+        LocalDateTime fim = mes.plusMonths(1).atDay(1).atStartOfDay();
+        String id = idLote(mes, modo);
+
+        LoteDocumento lote = loteDocumentoRepository.findById(id).orElseGet(() -> new LoteDocumento(id));
+        if (LoteDocumento.STATUS_CONCLUIDO.equals(lote.getStatus())) {
+            // Novo pedido para um lote concluído: gera tudo de novo
+            lote = new LoteDocumento(id);
+        }
+        lote.setStatus(LoteDocumento.STATUS_EM_ANDAMENTO);
+        lote.setTotal(vendaRepository.countPaidInPeriod(inicio, fim));
+        lote = loteDocumentoRepository.save(lote);
+        log.info("Lote {} iniciado: {} vendas, {} já processadas", id, lote.getTotal(), lote.getProcessados());
+
+        DocumentoStore store = documentoStore != null ? documentoStore : DocumentoFiscalService.getStore();
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(nucleos, r -> {
+            Thread t = new Thread(r, "lote-nf-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long t0 = System.nanoTime();
+        long geradosNestaExecucao = 0;
+        LocalDateTime ultimaData = lote.getUltimaDataVenda() != null ? lote.getUltimaDataVenda() : inicio.minusSeconds(1);
+        String ultimoId = lote.getUltimaVendaId() != null ? lote.getUltimaVendaId() : "";
+
+        // POR_DIA: notas do dia corrente acumuladas até a virada do dia
+        LocalDate diaAtual = null;
+        List<JasperPrint> notasDoDia = new ArrayList<>();
+        Venda ultimaDoDia = null;
+
+        try {
+            while (true) {
+                List<Object[]> chaves = vendaRepository.findPaidKeysAfter(inicio, fim, ultimaData, ultimoId,
+                        PageRequest.of(0, tamanhoBloco));
+                if (chaves.isEmpty()) break;
+
+                List<String> ids = chaves.stream().map(c -> (String) c[0]).collect(Collectors.toList());
+                Map<String, Venda> porId = vendaRepository.findWithItemsByIds(ids).stream()
+                        .collect(Collectors.toMap(Venda::getId, Function.identity()));
+                List<Venda> bloco = ids.stream().map(porId::get).collect(Collectors.toList());
+
+                // Preenchimento em paralelo, resultados na ordem do bloco
+                List<Future<JasperPrint>> preenchidos = new ArrayList<>(bloco.size());
+                for (Venda venda : bloco) {
+                    preenchidos.add(workers.submit(() -> DocumentoFiscalService.preencherNotaFiscal(venda)));
+                }
+
+                if (modo == Modo.INDIVIDUAL) {
+                    List<Future<?>> gravacoes = new ArrayList<>(bloco.size());
+                    for (int i = 0; i < bloco.size(); i++) {
+                        Future<JasperPrint> preenchido = preenchidos.get(i);
+                        String nome = DocumentoFiscalService.arquivoNotaFiscal(bloco.get(i).getId());
+                        gravacoes.add(workers.submit(() -> {
+                            store.gravar(nome, JasperExportManager.exportReportToPdf(preenchido.get()));
+                            return null;
+                        }));
+                    }
+                    for (Future<?> g : gravacoes) aguardar(g);
+                    geradosNestaExecucao += bloco.size();
+                    Venda ultima = bloco.get(bloco.size() - 1);
+                    lote = checkpoint(lote, ultima, bloco.size());
+                } else {
+                    for (int i = 0; i < bloco.size(); i++) {
+                        Venda venda = bloco.get(i);
+                        LocalDate dia = venda.getDataVenda().toLocalDate();
+                        if (diaAtual != null && !dia.equals(diaAtual)) {
+                            gravarDia(store, diaAtual, notasDoDia);
+                            geradosNestaExecucao += notasDoDia.size();
+                            lote = checkpoint(lote, ultimaDoDia, notasDoDia.size());
+                            notasDoDia = new ArrayList<>();
+                        }
+                        diaAtual = dia;
+                        notasDoDia.add(aguardar(preenchidos.get(i)));
+                        ultimaDoDia = venda;
+                    }
+                }
+
+                Object[] ultimaChave = chaves.get(chaves.size() - 1);
+                ultimoId = (String) ultimaChave[0];
+                ultimaData = (LocalDateTime) ultimaChave[1];
+            }
+
+            if (!notasDoDia.isEmpty()) {
+                gravarDia(store, diaAtual, notasDoDia);
+                geradosNestaExecucao += notasDoDia.size();
+                lote = checkpoint(lote, ultimaDoDia, notasDoDia.size());
+            }
+
+            double segundos = (System.nanoTime() - t0) / 1e9;
+            double docsPorSegundo = segundos > 0 ? geradosNestaExecucao / segundos : 0;
+            lote.setStatus(LoteDocumento.STATUS_CONCLUIDO);
+            lote.setDocsPorSegundo(docsPorSegundo);
+            lote.setAtualizadoEm(LocalDateTime.now());
+            lote = loteDocumentoRepository.save(lote);
+            log.info("Lote {} concluído: {} notas em {} s ({} docs/s, {} workers)", id, geradosNestaExecucao,
+                    String.format("%.1f", segundos), String.format("%.1f", docsPorSegundo), nucleos);
+            return lote;
+        } catch (IOException | JRException | InterruptedException | RuntimeException e) {
+            // O checkpoint fica como está; a próxima execução continua dele
+            lote.setStatus(LoteDocumento.STATUS_FALHOU);
+            lote.setAtualizadoEm(LocalDateTime.now());
+            loteDocumentoRepository.save(lote);
+            log.error("Lote {} interrompido após {} notas", id, lote.getProcessados(), e);
+            throw e;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void gravarDia(DocumentoStore store, LocalDate dia, List<JasperPrint> notas) throws JRException, IOException {
+        JRPdfExporter exportador = new JRPdfExporter();
+        exportador.setExporterInput(SimpleExporterInput.getInstance(notas));
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        exportador.setExporterOutput(new SimpleOutputStreamExporterOutput(saida));
+        exportador.exportReport();
+        store.gravar("NF_lote_" + dia + ".pdf", saida.toByteArray());
+    }
+
+    private LoteDocumento checkpoint(LoteDocumento lote, Venda ultima, int quantidade) {
+        lote.setUltimaDataVenda(ultima.getDataVenda());
+        lote.setUltimaVendaId(ultima.getId());
+        lote.setProcessados(lote.getProcessados() + quantidade);
+        lote.setAtualizadoEm(LocalDateTime.now());
+        return loteDocumentoRepository.save(lote);
+    }
+
+    private static <T> T aguardar(Future<T> futuro) throws JRException, IOException, InterruptedException {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof JRException jr) throw jr;
+            if (causa instanceof IOException io) throw io;
+            if (causa instanceof ExecutionException ee && ee.getCause() instanceof JRException jr) throw jr;
+            throw new IllegalStateException(causa);
+        }
+    }
+
+    private static String idLote(YearMonth mes, Modo modo) {
+        return "NF-" + mes + "-" + modo;
+    }
+}
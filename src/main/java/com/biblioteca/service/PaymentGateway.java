@@ -0,0 +1,38 @@
+package com.biblioteca.service;
+
+import java.security.SignatureException;
+import java.util.List;
+
+/**
+ * Gateway de pagamento usado pelo checkout e pelo webhook.
+ *
+ * Implementações: {@link StripePaymentGateway} (padrão) e {@link SimuladorPaymentGateway}
+ * ({@code pagamento.gateway=simulador}), que roda em processo, sem rede, para testes de carga.
+ */
+public interface PaymentGateway {
+
+    /** Linha cobrada na sessão (valor unitário em centavos) */
+    record ItemCobranca(String descricao, long valorCentavos, long quantidade) {}
+
+    /** Sessão de checkout criada: o id vira o id da venda; url é para onde o cliente é enviado */
+    record SessaoPagamento(String id, String url, String status) {}
+
+    /** Evento de webhook já autenticado */
+    record EventoPagamento(String id, String tipo, String sessionId) {}
+
+    SessaoPagamento criarSessao(List<ItemCobranca> itens, String tipoPagamento, String cpf,
+                                String urlSucesso, String urlCancelamento) throws Exception;
+
+    /**
+     * Se a sessão já está paga. No retorno do checkout um boleto ainda não foi pago;
+     * a confirmação fica para o webhook.
+     */
+    boolean pago(String sessionId) throws Exception;
+
+    /**
+     * Valida a assinatura do webhook e devolve o evento.
+     *
+     * @throws SignatureException se a assinatura não conferir
+     */
+    EventoPagamento verificarWebhook(String payload, String assinatura) throws SignatureException;
+}
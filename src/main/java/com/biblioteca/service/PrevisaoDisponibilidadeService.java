@@ -0,0 +1,328 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Emprestimo;
+import com.biblioteca.repository.EmprestimoRepository;
+import com.biblioteca.repository.ReservaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Previsão de disponibilidade de títulos a partir dos empréstimos ativos.
+ *
+ * Mantém em memória, atualizados incrementalmente a cada empréstimo/devolução/renovação:
+ * - os empréstimos ativos por título (data prevista e usuário);
+ * - histogramas compactos de atraso (dataDevolucao - dataPrevista) por título e por usuário.
+ *
+ * O banco só é lido uma vez na inicialização; as telas consultam apenas a memória.
+ * As atualizações entram depois do commit (rollback não altera a previsão).
+ *
+ * O histograma vai até 30 dias de atraso; além disso a devolução é tratada como
+ * um evento diário de probabilidade constante ({@link #DEVOLUCAO_DIARIA_APOS_FAIXA}),
+ * em vez de certa.
+ */
+@Service
+public class PrevisaoDisponibilidadeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrevisaoDisponibilidadeService.class);
+
+    /** Faixa de atraso registrada: de 7 dias adiantado até 30+ dias de atraso. */
+    static final int ATRASO_MIN = -7;
+    static final int ATRASO_MAX = 30;
+    private static final int BALDES = ATRASO_MAX - ATRASO_MIN + 1;
+
+    /** Peso (em devoluções) do histograma global usado como prior. */
+    private static final int PESO_GLOBAL = 5;
+
+    /** Probabilidade de devolução por dia para atrasos além de ATRASO_MAX (média de 30 dias). */
+    static final double DEVOLUCAO_DIARIA_APOS_FAIXA = 1.0 / 30;
+
+    public static final int HORIZONTE_DIAS = 30;
+
+    /** Previsão para quem entrar agora na fila de reservas do título. */
+    public record PrevisaoReserva(LocalDate data, int posicao) {}
+
+    @Autowired(required = false)
+    private EmprestimoRepository emprestimoRepository;
+
+    @Autowired(required = false)
+    private ReservaRepository reservaRepository;
+
+    private final Histograma global = new Histograma();
+    private final Map<Long, Histograma> porLivro = new ConcurrentHashMap<>();
+    private final Map<Long, Histograma> porUsuario = new ConcurrentHashMap<>();
+
+    /** livroId -> (emprestimoId -> empréstimo ativo) */
+    private final Map<Long, Map<Long, EmprestimoAtivo>> ativosPorLivro = new ConcurrentHashMap<>();
+
+    private record EmprestimoAtivo(Long usuarioId, LocalDate dataPrevista) {}
+
+    /**
+     * Carrega o estado inicial (uma única leitura do histórico).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregar() {
+        if (emprestimoRepository == null) return;
+        try {
+            for (Object[] linha : emprestimoRepository.findReturnDelays()) {
+                registrarAtraso((Long) linha[0], (Long) linha[1], (LocalDate) linha[2], (LocalDate) linha[3]);
+            }
+            for (Object[] linha : emprestimoRepository.findActiveLoanDueDates()) {
+                ativosPorLivro.computeIfAbsent((Long) linha[1], k -> new ConcurrentHashMap<>())
+                        .put((Long) linha[0], new EmprestimoAtivo((Long) linha[2], (LocalDate) linha[3]));
+            }
+            log.info("Previsão de disponibilidade carregada: {} títulos com empréstimos ativos", ativosPorLivro.size());
+        } catch (Exception e) {
+            log.error("Erro ao carregar previsão de disponibilidade", e);
+        }
+    }
+
+    // ========== ATUALIZAÇÃO INCREMENTAL ==========
+
+    /** Empréstimo aberto ou renovado (substitui a data prevista anterior), após o commit. */
+    public void registrarEmprestimo(Emprestimo emprestimo) {
+        if (emprestimo == null || emprestimo.getId() == null || emprestimo.getLivro() == null) return;
+        Long emprestimoId = emprestimo.getId();
+        Long livroId = emprestimo.getLivro().getId();
+        EmprestimoAtivo ativo = new EmprestimoAtivo(
+                emprestimo.getUsuario() != null ? emprestimo.getUsuario().getId() : null,
+                emprestimo.getDataPrevista());
+        aposCommit(() -> ativosPorLivro.computeIfAbsent(livroId, k -> new ConcurrentHashMap<>())
+                .put(emprestimoId, ativo));
+    }
+
+    /** Empréstimo devolvido: sai dos ativos e alimenta os histogramas, após o commit. */
+    public void registrarDevolucao(Emprestimo emprestimo) {
+        if (emprestimo == null || emprestimo.getLivro() == null) return;
+        Long emprestimoId = emprestimo.getId();
+        Long livroId = emprestimo.getLivro().getId();
+        Long usuarioId = emprestimo.getUsuario() != null ? emprestimo.getUsuario().getId() : null;
+        LocalDate dataPrevista = emprestimo.getDataPrevista();
+        LocalDate dataDevolucao = emprestimo.getDataDevolucao();
+        aposCommit(() -> {
+            Map<Long, EmprestimoAtivo> ativos = ativosPorLivro.get(livroId);
+            if (ativos != null) {
+                ativos.remove(emprestimoId);
+            }
+            registrarAtraso(livroId, usuarioId, dataPrevista, dataDevolucao);
+        });
+    }
+
+    private static void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    private void registrarAtraso(Long livroId, Long usuarioId, LocalDate dataPrevista, LocalDate dataDevolucao) {
+        if (dataPrevista == null || dataDevolucao == null) return;
+        int atraso = (int) ChronoUnit.DAYS.between(dataPrevista, dataDevolucao);
+        global.registrar(atraso);
+        if (livroId != null) porLivro.computeIfAbsent(livroId, k -> new Histograma()).registrar(atraso);
+        if (usuarioId != null) porUsuario.computeIfAbsent(usuarioId, k -> new Histograma()).registrar(atraso);
+    }
+
+    // ========== CONSULTAS ==========
+
+    /**
+     * Data prevista em que o próximo exemplar do título volta ao acervo
+     * (mediana da distribuição de atraso combinada usuário + título).
+     */
+    public Optional<LocalDate> previsaoDisponibilidade(Long livroId) {
+        return previsaoParaPosicaoFila(livroId, 1);
+    }
+
+    /**
+     * Data prevista para atender a N-ésima reserva da fila do título (posição iniciando em 1).
+     */
+    public Optional<LocalDate> previsaoParaPosicaoFila(Long livroId, int posicao) {
+        List<LocalDate> previsoes = previsoesDeRetorno(livroId);
+        if (posicao < 1 || previsoes.size() < posicao) return Optional.empty();
+        return Optional.of(previsoes.get(posicao - 1));
+    }
+
+    /**
+     * Previsão para uma nova reserva de cada título: a posição é o número de reservas
+     * aguardando + 1. Uma única consulta (contagem da fila) para todos os títulos.
+     *
+     * @return por livroId; títulos sem previsão ficam de fora
+     */
+    public Map<Long, PrevisaoReserva> previsaoParaNovaReserva(Collection<Long> livroIds) {
+        if (livroIds == null || livroIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, Long> naFila = new HashMap<>();
+        if (reservaRepository != null) {
+            for (Object[] linha : reservaRepository.countWaitingByBookIds(livroIds)) {
+                naFila.put((Long) linha[0], (Long) linha[1]);
+            }
+        }
+        Map<Long, PrevisaoReserva> previsoes = new HashMap<>();
+        for (Long livroId : livroIds) {
+            int posicao = naFila.getOrDefault(livroId, 0L).intValue() + 1;
+            previsaoParaPosicaoFila(livroId, posicao)
+                    .ifPresent(data -> previsoes.put(livroId, new PrevisaoReserva(data, posicao)));
+        }
+        return previsoes;
+    }
+
+    /**
+     * Exemplares esperados disponíveis em cada um dos próximos 30 dias
+     * (estoque atual + soma das probabilidades de devolução até o dia).
+     */
+    public double[] previsao30Dias(Long livroId, int estoqueAtual) {
+        double[] esperado = new double[HORIZONTE_DIAS];
+        java.util.Arrays.fill(esperado, Math.max(estoqueAtual, 0));
+        Map<Long, EmprestimoAtivo> ativos = ativosPorLivro.getOrDefault(livroId, Collections.emptyMap());
+        LocalDate hoje = LocalDate.now();
+        for (EmprestimoAtivo ativo : ativos.values()) {
+            int diasAtePrevista = (int) ChronoUnit.DAYS.between(hoje, ativo.dataPrevista());
+            if (-diasAtePrevista > ATRASO_MAX) {
+                // Atraso já além do histograma: probabilidade diária constante
+                for (int d = 0; d < HORIZONTE_DIAS; d++) {
+                    esperado[d] += 1.0 - Math.pow(1.0 - DEVOLUCAO_DIARIA_APOS_FAIXA, d + 1);
+                }
+                continue;
+            }
+            double[] cdf = distribuicao(livroId, ativo.usuarioId()).cdf();
+            // Condiciona ao fato de ainda não ter sido devolvido até hoje
+            double jaPassou = probabilidadeAte(cdf, -diasAtePrevista - 1);
+            double restante = 1.0 - jaPassou;
+            for (int d = 0; d < HORIZONTE_DIAS; d++) {
+                double p = restante <= 0
+                        ? 1.0 - Math.pow(1.0 - DEVOLUCAO_DIARIA_APOS_FAIXA, d + 1)
+                        : (probabilidadeAte(cdf, d - diasAtePrevista) - jaPassou) / restante;
+                esperado[d] += Math.max(0.0, Math.min(1.0, p));
+            }
+        }
+        return esperado;
+    }
+
+    private List<LocalDate> previsoesDeRetorno(Long livroId) {
+        Map<Long, EmprestimoAtivo> ativos = ativosPorLivro.get(livroId);
+        if (ativos == null || ativos.isEmpty()) return Collections.emptyList();
+        LocalDate hoje = LocalDate.now();
+        LocalDate amanha = hoje.plusDays(1);
+        List<LocalDate> previsoes = new ArrayList<>(ativos.size());
+        for (EmprestimoAtivo ativo : ativos.values()) {
+            if (ChronoUnit.DAYS.between(ativo.dataPrevista(), hoje) > ATRASO_MAX) {
+                // Além do histograma: mediana da espera com probabilidade diária constante
+                previsoes.add(hoje.plusDays(MEDIANA_APOS_FAIXA));
+                continue;
+            }
+            int atrasoMediano = distribuicao(livroId, ativo.usuarioId()).mediana();
+            LocalDate prevista = ativo.dataPrevista().plusDays(atrasoMediano);
+            previsoes.add(prevista.isBefore(amanha) ? amanha : prevista);
+        }
+        Collections.sort(previsoes);
+        return previsoes;
+    }
+
+    private static final int MEDIANA_APOS_FAIXA =
+            (int) Math.ceil(Math.log(0.5) / Math.log(1.0 - DEVOLUCAO_DIARIA_APOS_FAIXA));
+
+    /**
+     * P(atraso &lt;= x). O último balde (30+) não tem fim: a massa dele é devolvida aos
+     * poucos, com a probabilidade diária constante, em vez de toda no dia 30.
+     */
+    private static double probabilidadeAte(double[] cdf, int atraso) {
+        if (atraso < ATRASO_MIN) return 0.0;
+        if (atraso < ATRASO_MAX) return cdf[atraso - ATRASO_MIN];
+        double antesDaCauda = cdf[ATRASO_MAX - 1 - ATRASO_MIN];
+        double cauda = 1.0 - antesDaCauda;
+        return antesDaCauda + cauda * (1.0 - Math.pow(1.0 - DEVOLUCAO_DIARIA_APOS_FAIXA, atraso - ATRASO_MAX + 1));
+    }
+
+    /** Combina histogramas do usuário e do título, com o global como prior. */
+    private Distribuicao distribuicao(Long livroId, Long usuarioId) {
+        double[] massa = new double[BALDES];
+        double total = 0;
+        Histograma[] fontes = {
+                livroId != null ? porLivro.get(livroId) : null,
+                usuarioId != null ? porUsuario.get(usuarioId) : null
+        };
+        for (Histograma h : fontes) {
+            if (h == null) continue;
+            for (int b = 0; b < BALDES; b++) {
+                int c = h.contagens.get(b);
+                massa[b] += c;
+                total += c;
+            }
+        }
+        int totalGlobal = global.total();
+        for (int b = 0; b < BALDES; b++) {
+            // Sem histórico algum, assume devolução na data prevista
+            double pGlobal = totalGlobal > 0 ? (double) global.contagens.get(b) / totalGlobal : (b == -ATRASO_MIN ? 1.0 : 0.0);
+            massa[b] += PESO_GLOBAL * pGlobal;
+        }
+        total += PESO_GLOBAL;
+        return new Distribuicao(massa, total);
+    }
+
+    private static final class Distribuicao {
+        private final double[] massa;
+        private final double total;
+
+        Distribuicao(double[] massa, double total) {
+            this.massa = massa;
+            this.total = total;
+        }
+
+        double[] cdf() {
+            double[] cdf = new double[BALDES];
+            double acumulado = 0;
+            for (int b = 0; b < BALDES; b++) {
+                acumulado += massa[b];
+                cdf[b] = acumulado / total;
+            }
+            return cdf;
+        }
+
+        int mediana() {
+            double acumulado = 0;
+            for (int b = 0; b < BALDES; b++) {
+                acumulado += massa[b];
+                if (acumulado >= total / 2) return b + ATRASO_MIN;
+            }
+            return ATRASO_MAX;
+        }
+    }
+
+    /** Histograma de atraso em dias, um contador por dia na faixa [ATRASO_MIN, ATRASO_MAX]. */
+    private static final class Histograma {
+        private final AtomicIntegerArray contagens = new AtomicIntegerArray(BALDES);
+
+        void registrar(int atraso) {
+            int balde = Math.max(ATRASO_MIN, Math.min(ATRASO_MAX, atraso)) - ATRASO_MIN;
+            contagens.incrementAndGet(balde);
+        }
+
+        int total() {
+            int t = 0;
+            for (int b = 0; b < BALDES; b++) t += contagens.get(b);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.ReservaEstoque;
+import com.biblioteca.repository.LivroRepository;
+import com.biblioteca.repository.ReservaEstoqueRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reservas temporárias de estoque para as linhas de carrinho.
+ *
+ * Ao adicionar um livro ao carrinho o cliente segura as unidades por
+ * {@code carrinho.reserva.ttl-minutos}; cada edição da linha renova o prazo.
+ * O índice em memória (por título) é a fonte das consultas e a tabela
+ * {@code reservas_estoque} só serve para reconstruí-lo após reinício.
+ *
+ * Disponível para venda = estoque - reservas vivas dos outros clientes, lido sem consulta ao banco.
+ */
+@Service
+public class ReservaEstoqueService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservaEstoqueService.class);
+
+    @Value("${carrinho.reserva.ttl-minutos:15}")
+    private long ttlMinutos;
+
+    @Autowired(required = false)
+    private ReservaEstoqueRepository reservaEstoqueRepository;
+
+    @Autowired(required = false)
+    private LivroRepository livroRepository;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    /** livroId -> reservas do título */
+    private final Map<Long, ReservasTitulo> porTitulo = new ConcurrentHashMap<>();
+
+    /** clienteId -> títulos com reserva (para liberar o carrinho inteiro) */
+    private final Map<Long, Set<Long>> titulosPorCliente = new ConcurrentHashMap<>();
+
+    /** Próximas expirações, em ordem; o varredor só olha o que já venceu. */
+    private final DelayQueue<Expiracao> expiracoes = new DelayQueue<>();
+
+    /**
+     * Reconstrói o índice a partir das reservas ainda válidas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregar() {
+        if (reservaEstoqueRepository == null) return;
+        try {
+            LocalDateTime agora = LocalDateTime.now();
+            executarEmTransacao(() -> reservaEstoqueRepository.deleteExpired(agora));
+            int carregadas = 0;
+            for (ReservaEstoque r : reservaEstoqueRepository.findActive(agora)) {
+                ReservasTitulo titulo = porTitulo.computeIfAbsent(r.getLivroId(), k -> new ReservasTitulo());
+                synchronized (titulo) {
+                    titulo.colocar(r.getClienteId(), new Reservado(r.getQuantidade(), r.getExpiraEm()));
+                }
+                titulosPorCliente.computeIfAbsent(r.getClienteId(), k -> ConcurrentHashMap.newKeySet()).add(r.getLivroId());
+                expiracoes.add(new Expiracao(r.getLivroId(), r.getClienteId(), r.getExpiraEm()));
+                carregadas++;
+            }
+            log.info("Reservas de estoque carregadas: {}", carregadas);
+        } catch (Exception e) {
+            log.error("Erro ao carregar reservas de estoque", e);
+        }
+    }
+
+    // ========== RESERVA / LIBERAÇÃO ==========
+
+    /**
+     * Ajusta a reserva do cliente para o título a {@code quantidadeTotal} unidades
+     * (a quantidade da linha no carrinho) e renova o prazo.
+     *
+     * @throws RuntimeException "Estoque insuficiente" se não houver unidades livres
+     */
+    public void reservar(Long clienteId, Livro livro, int quantidadeTotal) {
+        if (clienteId == null || livro == null || livro.getId() == null) return;
+        if (quantidadeTotal <= 0) {
+            liberar(clienteId, livro.getId());
+            return;
+        }
+        Long livroId = livro.getId();
+        ReservasTitulo titulo = porTitulo.computeIfAbsent(livroId, k -> new ReservasTitulo());
+        LocalDateTime expiraEm = LocalDateTime.now().plusMinutes(ttlMinutos).truncatedTo(ChronoUnit.SECONDS);
+        // Banco fora do bloqueio: sob o lock só a conferência contra os totais em memória
+        Integer estoque = estoqueAtual(livro);
+        synchronized (titulo) {
+            Reservado atual = titulo.porCliente.get(clienteId);
+            int jaReservado = atual != null ? atual.quantidade() : 0;
+            if (estoque != null && quantidadeTotal > jaReservado && estoque - titulo.total.get() + jaReservado < quantidadeTotal) {
+                throw new RuntimeException("Estoque insuficiente");
+            }
+            titulo.colocar(clienteId, new Reservado(quantidadeTotal, expiraEm));
+        }
+        persistir(() -> reservaEstoqueRepository.upsert(clienteId, livroId, quantidadeTotal, expiraEm));
+        titulosPorCliente.computeIfAbsent(clienteId, k -> ConcurrentHashMap.newKeySet()).add(livroId);
+        expiracoes.add(new Expiracao(livroId, clienteId, expiraEm));
+    }
+
+    /** Libera a reserva do cliente para um título */
+    public void liberar(Long clienteId, Long livroId) {
+        if (clienteId == null || livroId == null) return;
+        ReservasTitulo titulo = porTitulo.get(livroId);
+        if (titulo != null) {
+            synchronized (titulo) {
+                titulo.remover(clienteId);
+            }
+        }
+        Set<Long> titulos = titulosPorCliente.get(clienteId);
+        if (titulos != null) titulos.remove(livroId);
+        persistir(() -> reservaEstoqueRepository.deleteByClienteAndLivro(clienteId, livroId));
+    }
+
+    /** Libera todas as reservas do cliente (carrinho limpo ou finalizado) */
+    public void liberarTodas(Long clienteId) {
+        if (clienteId == null) return;
+        liberarEmMemoria(clienteId);
+        persistir(() -> reservaEstoqueRepository.deleteByCliente(clienteId));
+    }
+
+    /**
+     * Libera as reservas de vários clientes com um único DELETE (limpeza de carrinhos).
+     *
+     * @return reservas vivas liberadas
+     */
+    public int liberarTodas(Collection<Long> clienteIds) {
+        if (clienteIds == null || clienteIds.isEmpty()) return 0;
+        int liberadas = 0;
+        for (Long clienteId : clienteIds) {
+            liberadas += liberarEmMemoria(clienteId);
+        }
+        persistir(() -> reservaEstoqueRepository.deleteByClienteIn(clienteIds));
+        return liberadas;
+    }
+
+    private int liberarEmMemoria(Long clienteId) {
+        int liberadas = 0;
+        Set<Long> titulos = titulosPorCliente.remove(clienteId);
+        if (titulos != null) {
+            for (Long livroId : titulos) {
+                ReservasTitulo titulo = porTitulo.get(livroId);
+                if (titulo == null) continue;
+                synchronized (titulo) {
+                    if (titulo.porCliente.containsKey(clienteId)) liberadas++;
+                    titulo.remover(clienteId);
+                }
+            }
+        }
+        return liberadas;
+    }
+
+    /**
+     * Libera todas as reservas do cliente após o commit da transação corrente
+     * (o estoque baixado na finalização só fica visível depois dele).
+     */
+    public void liberarTodasAposCommit(Long clienteId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    liberarTodas(clienteId);
+                }
+            });
+        } else {
+            liberarTodas(clienteId);
+        }
+    }
+
+    // ========== CONSULTAS ==========
+
+    /** Unidades reservadas do título (sem bloqueio) */
+    public int reservado(Long livroId) {
+        ReservasTitulo titulo = livroId != null ? porTitulo.get(livroId) : null;
+        return titulo != null ? titulo.total.get() : 0;
+    }
+
+    /** Unidades do título reservadas por outros clientes (sem a reserva do próprio cliente) */
+    public int reservadoPorOutros(Long livroId, Long clienteId) {
+        ReservasTitulo titulo = livroId != null ? porTitulo.get(livroId) : null;
+        if (titulo == null) return 0;
+        synchronized (titulo) {
+            Reservado proprio = clienteId != null ? titulo.porCliente.get(clienteId) : null;
+            return titulo.total.get() - (proprio != null ? proprio.quantidade() : 0);
+        }
+    }
+
+    /**
+     * Unidades que o cliente pode levar agora: estoque atual do banco menos as
+     * reservas dos outros clientes (a reserva do próprio cliente conta a favor dele).
+     *
+     * @return null se o estoque do livro não é controlado
+     */
+    public Integer disponivelPara(Long clienteId, Livro livro) {
+        if (livro == null || livro.getId() == null) return null;
+        Integer estoque = estoqueAtual(livro);
+        if (estoque == null) return null;
+        return Math.max(0, estoque - reservadoPorOutros(livro.getId(), clienteId));
+    }
+
+    /**
+     * Estoque menos as reservas vivas dos outros clientes, a partir do estoque já carregado
+     * no livro (a reserva de quem está vendo conta a favor dele, como em {@link #disponivelPara}).
+     */
+    public int disponivelParaVenda(Long clienteId, Livro livro) {
+        if (livro == null || livro.getQuantidadeEstoque() == null) return 0;
+        return Math.max(0, livro.getQuantidadeEstoque() - reservadoPorOutros(livro.getId(), clienteId));
+    }
+
+    // ========== EXPIRAÇÃO ==========
+
+    /**
+     * Remove as reservas vencidas. Só percorre as expirações já vencidas da fila;
+     * entradas de reservas renovadas depois são descartadas pela comparação de prazo.
+     */
+    @Scheduled(fixedDelayString = "${carrinho.reserva.varredura-ms:30000}")
+    public void expirarReservas() {
+        LocalDateTime agora = LocalDateTime.now();
+        int expiradas = 0;
+        Expiracao exp;
+        while ((exp = expiracoes.poll()) != null) {
+            ReservasTitulo titulo = porTitulo.get(exp.livroId());
+            if (titulo == null) continue;
+            boolean removida = false;
+            synchronized (titulo) {
+                Reservado atual = titulo.porCliente.get(exp.clienteId());
+                if (atual != null && !atual.expiraEm().isAfter(agora)) {
+                    titulo.remover(exp.clienteId());
+                    removida = true;
+                }
+            }
+            if (removida) {
+                Set<Long> titulos = titulosPorCliente.get(exp.clienteId());
+                if (titulos != null) titulos.remove(exp.livroId());
+                expiradas++;
+            }
+        }
+        if (expiradas > 0) {
+            persistir(() -> reservaEstoqueRepository.deleteExpired(agora));
+            log.debug("Reservas de estoque expiradas: {}", expiradas);
+        }
+    }
+
+    // ========== AUXILIARES ==========
+
+    private Integer estoqueAtual(Livro livro) {
+        if (livroRepository != null) {
+            return livroRepository.findById(livro.getId()).map(Livro::getQuantidadeEstoque).orElse(null);
+        }
+        return livro.getQuantidadeEstoque();
+    }
+
+    /** Grava na tabela em transação própria; o índice em memória continua valendo se falhar. */
+    private void persistir(Runnable operacao) {
+        if (reservaEstoqueRepository == null) return;
+        try {
+            executarEmTransacao(operacao);
+        } catch (Exception e) {
+            log.error("Erro ao gravar reserva de estoque", e);
+        }
+    }
+
+    private void executarEmTransacao(Runnable operacao) {
+        if (transactionManager == null) {
+            operacao.run();
+            return;
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.executeWithoutResult(status -> operacao.run());
+    }
+
+    private record Reservado(int quantidade, LocalDateTime expiraEm) {}
+
+    /** Reservas de um título. Alterações sincronizam na instância; o total é lido sem bloqueio. */
+    private static final class ReservasTitulo {
+        private final Map<Long, Reservado> porCliente = new HashMap<>();
+        private final AtomicInteger total = new AtomicInteger();
+
+        void colocar(Long clienteId, Reservado reservado) {
+            Reservado anterior = porCliente.put(clienteId, reservado);
+            total.addAndGet(reservado.quantidade() - (anterior != null ? anterior.quantidade() : 0));
+        }
+
+        void remover(Long clienteId) {
+            Reservado anterior = porCliente.remove(clienteId);
+            if (anterior != null) total.addAndGet(-anterior.quantidade());
+        }
+    }
+
+    private record Expiracao(Long livroId, Long clienteId, LocalDateTime expiraEm) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(ChronoUnit.MILLIS.between(LocalDateTime.now(), expiraEm), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed outro) {
+            return expiraEm.compareTo(((Expiracao) outro).expiraEm);
+        }
+    }
+}
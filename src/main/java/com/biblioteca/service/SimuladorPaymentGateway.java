@@ -0,0 +1,242 @@
+package com.biblioteca.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stripe simulado em processo, para testes de carga do checkout sem rede
+ * ({@code pagamento.gateway=simulador}).
+ *
+ * - criarSessao: devolve um id {@code cs_sim_...} após {@code latencia-criacao-ms};
+ *   a url já é o retorno de sucesso (o "cliente" paga na hora); boleto também volta
+ *   para ela, mas fica em aberto ({@link #pago} falso) até o webhook ser entregue;
+ * - o webhook é enviado por HTTP para {@code webhook-url}, assinado como o Stripe
+ *   ({@code Stripe-Signature: t=...,v1=HMAC-SHA256}), após {@code latencia-webhook-ms}
+ *   ± {@code jitter-ms}; boleto espera ainda {@code boleto-atraso-ms};
+ * - {@code taxa-falha-pagamento}: fração das sessões recusadas ({@code checkout.session.expired});
+ * - {@code taxa-falha-entrega}: fração das entregas descartadas, reenviadas com backoff
+ *   como o Stripe faz (até {@code max-tentativas-entrega}).
+ */
+@Service
+@ConditionalOnProperty(name = "pagamento.gateway", havingValue = "simulador")
+public class SimuladorPaymentGateway implements PaymentGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(SimuladorPaymentGateway.class);
+
+    private static final long TOLERANCIA_ASSINATURA_S = 300;
+
+    private final String webhookSecret;
+    private final URI webhookUrl;
+    private final long latenciaCriacaoMs;
+    private final long latenciaWebhookMs;
+    private final long jitterMs;
+    private final long boletoAtrasoMs;
+    private final double taxaFalhaPagamento;
+    private final double taxaFalhaEntrega;
+    private final int maxTentativasEntrega;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ScheduledExecutorService agendador;
+
+    /** Boletos cujo webhook ainda não foi entregue (nem descartado) */
+    private final Set<String> boletosEmAberto = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sessoesCriadas = new AtomicLong();
+    private final AtomicLong webhooksEntregues = new AtomicLong();
+    private final AtomicLong entregasFalhas = new AtomicLong();
+
+    public SimuladorPaymentGateway(@Value("${pagamento.simulador.webhook-secret:whsec_simulador}") String webhookSecret,
+                                   @Value("${pagamento.simulador.webhook-url:http://localhost:8080/api/stripe/webhook}") String webhookUrl,
+                                   @Value("${pagamento.simulador.latencia-criacao-ms:50}") long latenciaCriacaoMs,
+                                   @Value("${pagamento.simulador.latencia-webhook-ms:300}") long latenciaWebhookMs,
+                                   @Value("${pagamento.simulador.jitter-ms:200}") long jitterMs,
+                                   @Value("${pagamento.simulador.boleto-atraso-ms:10000}") long boletoAtrasoMs,
+                                   @Value("${pagamento.simulador.taxa-falha-pagamento:0.0}") double taxaFalhaPagamento,
+                                   @Value("${pagamento.simulador.taxa-falha-entrega:0.0}") double taxaFalhaEntrega,
+                                   @Value("${pagamento.simulador.max-tentativas-entrega:5}") int maxTentativasEntrega,
+                                   @Value("${pagamento.simulador.threads:4}") int threads) {
+        this.webhookSecret = webhookSecret;
+        this.webhookUrl = URI.create(webhookUrl);
+        this.latenciaCriacaoMs = latenciaCriacaoMs;
+        this.latenciaWebhookMs = latenciaWebhookMs;
+        this.jitterMs = jitterMs;
+        this.boletoAtrasoMs = boletoAtrasoMs;
+        this.taxaFalhaPagamento = taxaFalhaPagamento;
+        this.taxaFalhaEntrega = taxaFalhaEntrega;
+        this.maxTentativasEntrega = maxTentativasEntrega;
+        AtomicInteger contador = new AtomicInteger();
+        this.agendador = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "simulador-pagamento-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.warn("⚠️ Gateway de pagamento SIMULADO ativo - nenhuma cobrança real será feita");
+    }
+
+    @Override
+    public SessaoPagamento criarSessao(List<ItemCobranca> itens, String tipoPagamento, String cpf,
+                                       String urlSucesso, String urlCancelamento) throws Exception {
+        if (latenciaCriacaoMs > 0) Thread.sleep(latenciaCriacaoMs);
+
+        String sessionId = "cs_sim_" + UUID.randomUUID().toString().replace("-", "");
+        sessoesCriadas.incrementAndGet();
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        boolean recusado = rnd.nextDouble() < taxaFalhaPagamento;
+        String tipoEvento = recusado ? "checkout.session.expired" : "checkout.session.completed";
+        long atraso = latenciaWebhookMs + (jitterMs > 0 ? rnd.nextLong(-jitterMs, jitterMs + 1) : 0);
+        if ("boleto".equals(tipoPagamento)) {
+            atraso += boletoAtrasoMs;
+            if (!recusado) boletosEmAberto.add(sessionId);
+        }
+
+        String payload = payloadEvento(tipoEvento, sessionId, recusado ? "unpaid" : "paid");
+        agendar(payload, sessionId, 1, Math.max(0, atraso));
+
+        String url = recusado ? urlCancelamento : urlSucesso.replace("{CHECKOUT_SESSION_ID}", sessionId);
+        return new SessaoPagamento(sessionId, url, "open");
+    }
+
+    @Override
+    public boolean pago(String sessionId) {
+        return !boletosEmAberto.contains(sessionId);
+    }
+
+    @Override
+    public EventoPagamento verificarWebhook(String payload, String assinatura) throws SignatureException {
+        long timestamp = -1;
+        String v1 = null;
+        if (assinatura != null) {
+            for (String parte : assinatura.split(",")) {
+                String[] kv = parte.trim().split("=", 2);
+                if (kv.length != 2) continue;
+                if ("t".equals(kv[0])) {
+                    try {
+                        timestamp = Long.parseLong(kv[1]);
+                    } catch (NumberFormatException e) {
+                        timestamp = -1;
+                    }
+                } else if ("v1".equals(kv[0])) {
+                    v1 = kv[1];
+                }
+            }
+        }
+        if (timestamp < 0 || v1 == null) {
+            throw new SignatureException("Cabeçalho de assinatura inválido");
+        }
+        if (Math.abs(System.currentTimeMillis() / 1000 - timestamp) > TOLERANCIA_ASSINATURA_S) {
+            throw new SignatureException("Assinatura fora da tolerância de tempo");
+        }
+        byte[] esperada = assinar(timestamp, payload).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(esperada, v1.getBytes(StandardCharsets.US_ASCII))) {
+            throw new SignatureException("Assinatura do webhook inválida");
+        }
+
+        try {
+            JsonNode evento = json.readTree(payload);
+            return new EventoPagamento(evento.path("id").asText(), evento.path("type").asText(),
+                    evento.path("data").path("object").path("id").asText(null));
+        } catch (java.io.IOException e) {
+            throw new IllegalArgumentException("Payload de webhook inválido", e);
+        }
+    }
+
+    private String payloadEvento(String tipo, String sessionId, String statusPagamento) {
+        return json.createObjectNode()
+                .put("id", "evt_sim_" + UUID.randomUUID().toString().replace("-", ""))
+                .put("object", "event")
+                .put("type", tipo)
+                .put("created", System.currentTimeMillis() / 1000)
+                .set("data", json.createObjectNode().set("object", json.createObjectNode()
+                        .put("id", sessionId)
+                        .put("object", "checkout.session")
+                        .put("payment_status", statusPagamento)))
+                .toString();
+    }
+
+    private void agendar(String payload, String sessionId, int tentativa, long atrasoMs) {
+        agendador.schedule(() -> entregar(payload, sessionId, tentativa), atrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void entregar(String payload, String sessionId, int tentativa) {
+        if (ThreadLocalRandom.current().nextDouble() < taxaFalhaEntrega) {
+            reagendar(payload, sessionId, tentativa, "falha de entrega simulada");
+            return;
+        }
+        // Assinado no envio, como o Stripe (o timestamp é o da tentativa)
+        long timestamp = System.currentTimeMillis() / 1000;
+        HttpRequest requisicao = HttpRequest.newBuilder(webhookUrl)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .header("Stripe-Signature", "t=" + timestamp + ",v1=" + assinar(timestamp, payload))
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        http.sendAsync(requisicao, HttpResponse.BodyHandlers.discarding()).whenComplete((resposta, erro) -> {
+            if (erro == null && resposta.statusCode() / 100 == 2) {
+                boletosEmAberto.remove(sessionId);
+                webhooksEntregues.incrementAndGet();
+            } else {
+                reagendar(payload, sessionId, tentativa, erro != null ? erro.getMessage() : "HTTP " + resposta.statusCode());
+            }
+        });
+    }
+
+    private void reagendar(String payload, String sessionId, int tentativa, String motivo) {
+        entregasFalhas.incrementAndGet();
+        if (tentativa >= maxTentativasEntrega) {
+            boletosEmAberto.remove(sessionId);
+            log.warn("Webhook da sessão {} descartado após {} tentativas ({})", sessionId, tentativa, motivo);
+            return;
+        }
+        long atraso = latenciaWebhookMs * (1L << Math.min(tentativa, 10));
+        log.debug("Webhook da sessão {} falhou ({}); tentativa {} em {} ms", sessionId, motivo, tentativa + 1, atraso);
+        agendar(payload, sessionId, tentativa + 1, atraso);
+    }
+
+    private String assinar(long timestamp, String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+        log.info("Simulador de pagamento: {} sessões, {} webhooks entregues, {} falhas de entrega",
+                sessoesCriadas.get(), webhooksEntregues.get(), entregasFalhas.get());
+    }
+}
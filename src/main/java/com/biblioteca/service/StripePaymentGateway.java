@@ -0,0 +1,98 @@
+package com.biblioteca.service;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.Webhook;
+import com.stripe.param.checkout.SessionCreateParams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gateway real: sessões de checkout e webhooks do Stripe.
+ * A chave da API é configurada em {@link PagamentoService#init()}.
+ */
+@Service
+@ConditionalOnProperty(name = "pagamento.gateway", havingValue = "stripe", matchIfMissing = true)
+public class StripePaymentGateway implements PaymentGateway {
+
+    private final String webhookSecret;
+
+    public StripePaymentGateway(@Value("${stripe.webhook-secret:}") String webhookSecret) {
+        this.webhookSecret = webhookSecret;
+    }
+
+    @Override
+    public SessaoPagamento criarSessao(List<ItemCobranca> itens, String tipoPagamento, String cpf,
+                                       String urlSucesso, String urlCancelamento) throws Exception {
+        List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
+        for (ItemCobranca item : itens) {
+            SessionCreateParams.LineItem.PriceData.ProductData productData =
+                SessionCreateParams.LineItem.PriceData.ProductData.builder()
+                    .setName(item.descricao())
+                    .build();
+
+            SessionCreateParams.LineItem.PriceData priceData =
+                SessionCreateParams.LineItem.PriceData.builder()
+                    .setCurrency("brl")
+                    .setUnitAmount(item.valorCentavos())
+                    .setProductData(productData)
+                    .build();
+
+            lineItems.add(SessionCreateParams.LineItem.builder()
+                    .setPriceData(priceData)
+                    .setQuantity(item.quantidade())
+                    .build());
+        }
+
+        List<SessionCreateParams.PaymentMethodType> paymentMethodTypes = new ArrayList<>();
+        if ("boleto".equals(tipoPagamento)) {
+            paymentMethodTypes.add(SessionCreateParams.PaymentMethodType.BOLETO);
+        } else {
+            paymentMethodTypes.add(SessionCreateParams.PaymentMethodType.CARD);
+        }
+
+        SessionCreateParams.Builder paramsBuilder = SessionCreateParams.builder()
+            .setMode(SessionCreateParams.Mode.PAYMENT)
+            .setSuccessUrl(urlSucesso)
+            .setCancelUrl(urlCancelamento)
+            .addAllLineItem(lineItems)
+            .addAllPaymentMethodType(paymentMethodTypes);
+
+        if ("boleto".equals(tipoPagamento)) {
+            paramsBuilder.setPaymentIntentData(
+                SessionCreateParams.PaymentIntentData.builder()
+                    .putMetadata("cpf", cpf)
+                    .build()
+            );
+        }
+
+        Session session = Session.create(paramsBuilder.build());
+        return new SessaoPagamento(session.getId(), session.getUrl(), session.getStatus());
+    }
+
+    @Override
+    public boolean pago(String sessionId) throws Exception {
+        // "paid" ou "no_payment_required"; boleto volta do checkout como "unpaid"
+        return !"unpaid".equals(Session.retrieve(sessionId).getPaymentStatus());
+    }
+
+    @Override
+    public EventoPagamento verificarWebhook(String payload, String assinatura) throws SignatureException {
+        Event event;
+        try {
+            event = Webhook.constructEvent(payload, assinatura, webhookSecret);
+        } catch (SignatureVerificationException e) {
+            throw new SignatureException("Assinatura do webhook inválida", e);
+        }
+        StripeObject objeto = event.getDataObjectDeserializer().getObject().orElse(null);
+        String sessionId = objeto instanceof Session session ? session.getId() : null;
+        return new EventoPagamento(event.getId(), event.getType(), sessionId);
+    }
+}
@@ -1,44 +1,34 @@
 package com.biblioteca.service;
 
-import com.stripe.model.Event;
-import com.stripe.model.EventDataObjectDeserializer;
-import com.stripe.model.StripeObject;
-import com.stripe.model.checkout.Session;
-import com.stripe.exception.SignatureVerificationException;
-import com.stripe.net.Webhook;
+import com.biblioteca.model.PagamentoProcessado;
 import com.biblioteca.model.Venda;
 import jakarta.persistence.EntityManager;
 import com.biblioteca.util.JPAUtil;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.security.SignatureException;
+
 @Service
 public class StripeWebhookService {
 
-    private static String webhookSecret;
+    private static PaymentGateway gateway;
+    private static DocumentoFiscalFilaService documentoFiscalFilaService;
+    private static ConfirmacaoPagamentoService confirmacaoPagamentoService;
 
-    public StripeWebhookService(@Value("${stripe.webhook-secret}") String secret){
-        webhookSecret = secret;
+    // Assinatura verificada pelo gateway ativo (Stripe ou simulador)
+    public StripeWebhookService(PaymentGateway paymentGateway,
+                                DocumentoFiscalFilaService filaDocumentos,
+                                ConfirmacaoPagamentoService confirmacaoPagamento){
+        gateway = paymentGateway;
+        documentoFiscalFilaService = filaDocumentos;
+        confirmacaoPagamentoService = confirmacaoPagamento;
     }
 
+    /** Verificação + processamento na mesma thread (sem a caixa de entrada de webhooks). */
     public static void handleWebhook(String payload, String sigHeader) {
         try {
-            Event event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
-            
-            EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-            StripeObject stripeObject = dataObjectDeserializer.getObject().orElse(null);
-
-            switch (event.getType()) {
-                case "checkout.session.completed":
-                    handleCheckoutSessionCompleted((Session) stripeObject);
-                    break;
-                case "payment_intent.succeeded":
-                    
-                    break;
-                default:
-                    System.out.println("Evento não tratado: " + event.getType());
-            }
-        } catch (SignatureVerificationException e) {
+            processar(verificar(payload, sigHeader));
+        } catch (SignatureException e) {
             System.out.println("Assinatura do webhook inválida!");
             throw new RuntimeException("Assinatura do webhook inválida", e);
         } catch (Exception e) {
@@ -47,23 +37,56 @@ public class StripeWebhookService {
         }
     }
 
-    private static void handleCheckoutSessionCompleted(Session session) {
+    /** Valida a assinatura pelo gateway ativo e devolve o evento. */
+    public static PaymentGateway.EventoPagamento verificar(String payload, String sigHeader) throws SignatureException {
+        return gateway.verificarWebhook(payload, sigHeader);
+    }
+
+    /** Aplica o evento; exceção significa que ele deve ser tentado de novo. */
+    public static void processar(PaymentGateway.EventoPagamento event) {
+        switch (event.tipo()) {
+            case "checkout.session.completed":
+                handleCheckoutSessionCompleted(event.sessionId(), event.id());
+                break;
+            case "payment_intent.succeeded":
+                
+                break;
+            default:
+                System.out.println("Evento não tratado: " + event.tipo());
+        }
+    }
+
+    private static void handleCheckoutSessionCompleted(String sessionId, String eventoId) {
+        if (confirmacaoPagamentoService != null) {
+            // Mesmo caminho idempotente do retorno do checkout: efeitos uma única vez por sessão
+            long inicio = CheckoutMetricas.iniciar();
+            try {
+                confirmacaoPagamentoService.confirmar(sessionId, PagamentoProcessado.ORIGEM_WEBHOOK, eventoId);
+            } finally {
+                CheckoutMetricas.registrar(CheckoutMetricas.Etapa.CONFIRMACAO_WEBHOOK, inicio);
+            }
+            return;
+        }
         EntityManager em = JPAUtil.getEntityManager();
         try {
             em.getTransaction().begin();
             
-            Venda venda = em.find(Venda.class, session.getId());
+            Venda venda = em.find(Venda.class, sessionId);
             if (venda != null) {
-                
+                String statusAnterior = venda.getStatus();
                 venda.setStatus("PAGO");
                 em.merge(venda);
                 em.getTransaction().commit();
+                HistoricoVendas.atualizarStatusAposCommit(venda, statusAnterior);
 
-                
-                DocumentoFiscalService.gerarNotaFiscal(venda);
-                DocumentoFiscalService.gerarRecibo(venda);
+                if (documentoFiscalFilaService != null) {
+                    documentoFiscalFilaService.enfileirar(venda);
+                } else {
+                    DocumentoFiscalService.gerarNotaFiscal(venda);
+                    DocumentoFiscalService.gerarRecibo(venda);
+                }
             } else {
-                throw new RuntimeException("Venda não encontrada para o ID: " + session.getId());
+                throw new RuntimeException("Venda não encontrada para o ID: " + sessionId);
             }
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
@@ -209,6 +209,29 @@ public class UsuarioService {
         return todos.subList(offset, to);
     }
     
+    /**
+     * Lista usuários cujo nome começa com o prefixo, paginado (versão web)
+     */
+    public List<Usuario> buscarPorPrefixoNome(String prefixo, int offset, int limit) {
+        String termo = prefixo != null ? prefixo.trim() : "";
+        if (usuarioRepository != null) {
+            int page = offset / limit;
+            return usuarioRepository.findByNomeStartingWithOrderByNome(termo, org.springframework.data.domain.PageRequest.of(page, limit));
+        }
+        return buscarPorNome(termo).stream().skip(offset).limit(limit).toList();
+    }
+    
+    /**
+     * Conta usuários cujo nome começa com o prefixo (versão web)
+     */
+    public long contarPorPrefixoNome(String prefixo) {
+        String termo = prefixo != null ? prefixo.trim() : "";
+        if (usuarioRepository != null) {
+            return usuarioRepository.countByNomeStartingWith(termo);
+        }
+        return buscarPorNome(termo).size();
+    }
+    
     /**
      * Atualiza senha do usuário com criptografia (versão web)
      */
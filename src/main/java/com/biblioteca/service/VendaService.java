@@ -19,6 +19,7 @@ public class VendaService {
      */
     public Venda criarVenda(Venda venda, Usuario usuario) {
         Venda vendaSalva = vendaRepository.save(venda);
+        HistoricoVendas.registrarAposCommit(vendaSalva);
         
         // Registrar auditoria
         if (auditoriaService != null && usuario != null) {
@@ -34,6 +35,7 @@ public class VendaService {
     public Venda atualizarVenda(Venda venda, Usuario usuario) {
         Venda vendaAnterior = vendaRepository.findById(venda.getId()).orElse(null);
         Venda vendaAtualizada = vendaRepository.save(venda);
+        HistoricoVendas.registrarAposCommit(vendaAtualizada);
         
         // Registrar auditoria
         if (auditoriaService != null && usuario != null && vendaAnterior != null) {
@@ -61,6 +63,7 @@ public class VendaService {
             // Atualizar status
             venda.setStatus(novoStatus);
             Venda vendaAtualizada = vendaRepository.save(venda);
+            HistoricoVendas.atualizarStatusAposCommit(vendaAtualizada, vendaAnterior.getStatus());
             
             // Registrar auditoria
             if (auditoriaService != null && usuario != null) {
@@ -0,0 +1,266 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.WebhookEvento;
+import com.biblioteca.repository.WebhookEventoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SignatureException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caixa de entrada dos webhooks de pagamento.
+ *
+ * O endpoint só verifica a assinatura (HMAC, microssegundos), grava o evento em
+ * {@code webhook_inbox} com INSERT IGNORE pelo id do evento e responde 200; a
+ * confirmação do pagamento roda depois, num pool de workers.
+ *
+ * Ordem por sessão: cada sessão cai sempre na mesma faixa (hash do session id),
+ * e cada faixa é uma thread única, então os eventos de uma venda são aplicados
+ * na ordem de chegada; um evento só é processado se não houver anterior da mesma
+ * sessão em aberto. Falhas são retentadas com espera exponencial e, esgotadas
+ * as tentativas ({@code webhooks.inbox.max-tentativas}), o evento fica como MORTO.
+ */
+@Service
+public class WebhookInboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookInboxService.class);
+
+    @Value("${webhooks.inbox.workers:4}")
+    private int workers;
+
+    @Value("${webhooks.inbox.capacidade:1000}")
+    private int capacidade;
+
+    @Value("${webhooks.inbox.max-tentativas:8}")
+    private int maxTentativas;
+
+    @Value("${webhooks.inbox.espera-base-segundos:5}")
+    private long esperaBaseSegundos;
+
+    @Value("${webhooks.inbox.retencao-dias:30}")
+    private int retencaoDias;
+
+    @Autowired
+    private WebhookEventoRepository webhookEventoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /** Uma thread por faixa: mesma sessão, mesma faixa, ordem preservada */
+    private ThreadPoolExecutor[] faixas;
+
+    /** Eventos já entregues a uma faixa (evita envio duplicado) */
+    private final Set<String> emAndamento = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger pendentesNoBanco = new AtomicInteger();
+    private final AtomicInteger mortosNoBanco = new AtomicInteger();
+
+    private Timer tempoRecebimento;
+    private Timer tempoProcessamento;
+    private Counter duplicados;
+    private Counter mortos;
+
+    @PostConstruct
+    public void iniciar() {
+        faixas = new ThreadPoolExecutor[workers];
+        int capacidadeFaixa = Math.max(1, capacidade / workers);
+        for (int i = 0; i < workers; i++) {
+            String nome = "webhooks-" + (i + 1);
+            faixas[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(capacidadeFaixa), r -> {
+                        Thread t = new Thread(r, nome);
+                        t.setDaemon(true);
+                        return t;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        if (meterRegistry != null) {
+            Gauge.builder("webhooks.inbox.pendentes", pendentesNoBanco, AtomicInteger::get)
+                    .description("Eventos pendentes na tabela webhook_inbox (última varredura)")
+                    .register(meterRegistry);
+            Gauge.builder("webhooks.inbox.mortos", mortosNoBanco, AtomicInteger::get)
+                    .description("Eventos que esgotaram as tentativas (dead letter)")
+                    .register(meterRegistry);
+            tempoRecebimento = Timer.builder("webhooks.recebimento")
+                    .description("Tempo do endpoint de webhook até o ack")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            tempoProcessamento = Timer.builder("webhooks.processamento")
+                    .description("Tempo para aplicar um evento de webhook")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            duplicados = Counter.builder("webhooks.duplicados")
+                    .description("Reenvios de eventos já recebidos")
+                    .register(meterRegistry);
+            mortos = Counter.builder("webhooks.dead-letter")
+                    .description("Eventos movidos para dead letter")
+                    .register(meterRegistry);
+        }
+    }
+
+    /** Eventos interrompidos por uma queda voltam para a fila. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        try {
+            Integer recuperados = new TransactionTemplate(transactionManager)
+                    .execute(status -> webhookEventoRepository.resetInProgress());
+            if (recuperados != null && recuperados > 0) {
+                log.info("Eventos de webhook recolocados na fila: {}", recuperados);
+            }
+        } catch (Exception e) {
+            log.error("Erro ao recuperar caixa de entrada de webhooks", e);
+        }
+    }
+
+    /**
+     * Verifica e grava o evento; não processa.
+     *
+     * @throws SignatureException assinatura inválida (nada é gravado)
+     */
+    public void receber(String payload, String assinatura) throws SignatureException {
+        long inicio = System.nanoTime();
+        try {
+            PaymentGateway.EventoPagamento evento = StripeWebhookService.verificar(payload, assinatura);
+            Integer inseridos = new TransactionTemplate(transactionManager).execute(status ->
+                    webhookEventoRepository.insertIfAbsent(evento.id(), evento.sessionId(), evento.tipo(),
+                            payload, LocalDateTime.now()));
+            if (inseridos == null || inseridos == 0) {
+                if (duplicados != null) duplicados.increment();
+                log.debug("Evento {} já recebido; reenvio ignorado", evento.id());
+                return;
+            }
+            submeter(evento.id(), evento.sessionId());
+        } finally {
+            if (tempoRecebimento != null) tempoRecebimento.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Reenvia às faixas os eventos pendentes (fila cheia, retentativas, recuperação).
+     */
+    @Scheduled(fixedDelayString = "${webhooks.inbox.varredura-ms:2000}")
+    public void varrerPendentes() {
+        try {
+            pendentesNoBanco.set((int) webhookEventoRepository.countPending());
+            mortosNoBanco.set((int) webhookEventoRepository.countDead());
+            if (pendentesNoBanco.get() == 0) return;
+            for (Object[] linha : webhookEventoRepository.findDue(LocalDateTime.now(), PageRequest.of(0, capacidade))) {
+                submeter((String) linha[0], (String) linha[1]);
+            }
+        } catch (Exception e) {
+            log.error("Erro ao varrer caixa de entrada de webhooks", e);
+        }
+    }
+
+    /** Eventos concluídos há mais de {@code webhooks.inbox.retencao-dias} são apagados. */
+    @Scheduled(cron = "${webhooks.inbox.limpeza-cron:0 30 3 * * *}")
+    public void limpar() {
+        Integer removidos = new TransactionTemplate(transactionManager).execute(status ->
+                webhookEventoRepository.deleteDoneBefore(LocalDateTime.now().minusDays(retencaoDias)));
+        if (removidos != null && removidos > 0) {
+            log.info("Eventos de webhook antigos removidos: {}", removidos);
+        }
+    }
+
+    /** Devolve um evento em dead letter para a fila. */
+    public boolean reprocessar(String eventoId) {
+        Integer reenfileirados = new TransactionTemplate(transactionManager).execute(status ->
+                webhookEventoRepository.requeueDead(eventoId, LocalDateTime.now()));
+        return reenfileirados != null && reenfileirados > 0;
+    }
+
+    private void submeter(String eventoId, String sessionId) {
+        if (!emAndamento.add(eventoId)) return;
+        String chave = sessionId != null ? sessionId : eventoId;
+        ThreadPoolExecutor faixa = faixas[Math.floorMod(chave.hashCode(), faixas.length)];
+        try {
+            faixa.execute(() -> {
+                try {
+                    processar(eventoId);
+                } finally {
+                    emAndamento.remove(eventoId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emAndamento.remove(eventoId);
+            log.debug("Faixa de webhooks cheia; evento {} aguardará a próxima varredura", eventoId);
+        }
+    }
+
+    private void processar(String eventoId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        WebhookEvento evento = webhookEventoRepository.findByEventoId(eventoId);
+        if (evento == null || !WebhookEvento.STATUS_PENDENTE.equals(evento.getStatus())) return;
+        // Anterior da mesma sessão ainda aberto (ex.: aguardando retentativa): espera a vez dele
+        if (evento.getSessionId() != null
+                && webhookEventoRepository.existsEarlierOpen(evento.getSessionId(), evento.getSeq())) {
+            return;
+        }
+        Integer reivindicado = tx.execute(status -> webhookEventoRepository.claim(eventoId, LocalDateTime.now()));
+        if (reivindicado == null || reivindicado == 0) return;
+
+        long inicio = System.nanoTime();
+        try {
+            StripeWebhookService.processar(new PaymentGateway.EventoPagamento(
+                    evento.getEventoId(), evento.getTipo(), evento.getSessionId()));
+            tx.executeWithoutResult(status -> webhookEventoRepository.markDone(eventoId, LocalDateTime.now()));
+        } catch (Exception e) {
+            int tentativas = evento.getTentativas() + 1;
+            boolean desistir = tentativas >= maxTentativas;
+            LocalDateTime proxima = LocalDateTime.now().plusSeconds(esperaBaseSegundos << Math.min(tentativas - 1, 10));
+            String erro = e.getMessage() != null && e.getMessage().length() > 1000 ? e.getMessage().substring(0, 1000) : e.getMessage();
+            tx.executeWithoutResult(status -> webhookEventoRepository.markFailed(eventoId,
+                    desistir ? WebhookEvento.STATUS_MORTO : WebhookEvento.STATUS_PENDENTE, proxima, erro, LocalDateTime.now()));
+            if (desistir) {
+                if (mortos != null) mortos.increment();
+                log.error("Evento de webhook {} ({}) movido para dead letter após {} tentativas",
+                        eventoId, evento.getTipo(), tentativas, e);
+            } else {
+                log.warn("Falha ao processar evento de webhook {} (tentativa {}), nova tentativa em {}",
+                        eventoId, tentativas, proxima, e);
+            }
+        } finally {
+            if (tempoProcessamento != null) tempoProcessamento.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        for (ThreadPoolExecutor faixa : faixas) {
+            faixa.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor faixa : faixas) {
+                faixa.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
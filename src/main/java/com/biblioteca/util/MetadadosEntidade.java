@@ -0,0 +1,109 @@
+package com.biblioteca.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Metadados de auditoria por classe de entidade: getter do campo {@code id} e
+ * {@code toString} já resolvidos como MethodHandle.
+ *
+ * A reflexão (getDeclaredField, privateLookupIn) roda uma vez por classe, no primeiro
+ * uso, e fica em um {@link ClassValue}; cada auditoria depois disso é só a leitura do
+ * ClassValue e duas chamadas {@code invokeExact}, sem setAccessible nem Method.invoke.
+ *
+ * Mantém o comportamento anterior: o id é o campo {@code id} (declarado na classe ou
+ * numa superclasse) e a serialização só usa um {@code toString} declarado pela própria
+ * classe; sem ele a serialização é vazia.
+ *
+ * Exceções não verificadas do getter/toString passam adiante como estão; qualquer
+ * outra vem embrulhada em IllegalStateException. Comparação com a versão por reflexão:
+ * {@code MetadadosEntidadeBenchmark} (src/test).
+ */
+public final class MetadadosEntidade {
+
+    private static final Logger log = LoggerFactory.getLogger(MetadadosEntidade.class);
+
+    private static final ClassValue<MetadadosEntidade> CACHE = new ClassValue<>() {
+        @Override
+        protected MetadadosEntidade computeValue(Class<?> tipo) {
+            return new MetadadosEntidade(tipo);
+        }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SERIALIZADOR = MethodType.methodType(String.class, Object.class);
+
+    // null quando a classe não tem o campo/método
+    private final MethodHandle id;
+    private final MethodHandle toString;
+
+    private MetadadosEntidade(Class<?> tipo) {
+        MethodHandle getterId = null;
+        MethodHandle serializador = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(tipo, MethodHandles.lookup());
+            Field campoId = campo(tipo, "id");
+            if (campoId != null) {
+                getterId = MethodHandles.privateLookupIn(campoId.getDeclaringClass(), MethodHandles.lookup())
+                        .unreflectGetter(campoId).asType(GETTER);
+            }
+            tipo.getDeclaredMethod("toString");
+            serializador = lookup.findVirtual(tipo, "toString", MethodType.methodType(String.class)).asType(SERIALIZADOR);
+        } catch (NoSuchMethodException e) {
+            // sem toString próprio: serialização vazia
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Erro ao ler metadados de auditoria de {}: {}", tipo.getName(), e.getMessage());
+        }
+        this.id = getterId;
+        this.toString = serializador;
+    }
+
+    public static MetadadosEntidade de(Class<?> tipo) {
+        return CACHE.get(tipo);
+    }
+
+    /** Valor do campo {@code id} como Long (null se não houver campo ou valor) */
+    public Long id(Object entidade) {
+        if (id == null) return null;
+        Object valor;
+        try {
+            valor = (Object) id.invokeExact(entidade);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Erro ao ler o id de " + entidade.getClass().getName(), e);
+        }
+        if (valor == null) return null;
+        if (valor instanceof Long l) return l;
+        if (valor instanceof Number n) return n.longValue();
+        return Long.parseLong(valor.toString());
+    }
+
+    /** Resultado do {@code toString} declarado pela classe ("" se não houver) */
+    public String serializar(Object entidade) {
+        if (toString == null) return "";
+        try {
+            return (String) toString.invokeExact(entidade);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Erro ao serializar " + entidade.getClass().getName(), e);
+        }
+    }
+
+    private static Field campo(Class<?> tipo, String nome) {
+        for (Class<?> c = tipo; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(nome);
+            } catch (NoSuchFieldException e) {
+                // tenta a superclasse
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.biblioteca.views;
 
+import com.biblioteca.service.CheckoutMetricas;
 import com.biblioteca.service.DashboardService;
 import com.biblioteca.service.LivroService;
 import com.biblioteca.service.UsuarioService;
@@ -7,6 +8,7 @@ import com.biblioteca.service.EmprestimoService;
 import com.biblioteca.repository.VendaRepository;
 import com.biblioteca.repository.AuditoriaRepository;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
@@ -88,6 +90,11 @@ public class DashboardView extends VerticalLayout {
         if (isAdmin) {
             add(createAuditoriaSection());
         }
+
+        // Tempo do checkout por etapa só para ADMIN
+        if (isAdmin) {
+            add(createCheckoutLatenciaSection());
+        }
         setSizeFull();
     }
     
@@ -401,6 +408,36 @@ public class DashboardView extends VerticalLayout {
         return card;
     }
 
+    private Component createCheckoutLatenciaSection() {
+        VerticalLayout layout = new VerticalLayout();
+        layout.setPadding(true);
+        layout.setSpacing(true);
+
+        H3 title = new H3("⏱️ Tempo do Checkout por Etapa");
+
+        Grid<CheckoutMetricas.ResumoEtapa> grid = new Grid<>();
+        grid.addColumn(r -> r.etapa().getDescricao()).setHeader("Etapa").setAutoWidth(true);
+        grid.addColumn(CheckoutMetricas.ResumoEtapa::amostras).setHeader("Amostras").setAutoWidth(true);
+        grid.addColumn(r -> formatarMs(r.mediaMs())).setHeader("Média").setAutoWidth(true);
+        grid.addColumn(r -> formatarMs(r.p50Ms())).setHeader("p50").setAutoWidth(true);
+        grid.addColumn(r -> formatarMs(r.p95Ms())).setHeader("p95").setAutoWidth(true);
+        grid.addColumn(r -> formatarMs(r.p99Ms())).setHeader("p99").setAutoWidth(true);
+        grid.addColumn(r -> formatarMs(r.maxMs())).setHeader("Máx.").setAutoWidth(true);
+        grid.setAllRowsVisible(true);
+        grid.setItems(CheckoutMetricas.resumo());
+
+        Span nota = new Span("Amostras e média desde o início da aplicação; percentis e máximo dos últimos minutos. " +
+            "Histórico completo em /actuator/metrics/checkout.etapa");
+        nota.getStyle().set("font-size", "0.875rem").set("color", "#6c757d");
+
+        layout.add(title, grid, nota);
+        return layout;
+    }
+
+    private String formatarMs(double ms) {
+        return ms > 0 ? String.format("%.1f ms", ms) : "-";
+    }
+
     private Component createAuditoriaSection() {
         VerticalLayout layout = new VerticalLayout();
         layout.setPadding(true);
@@ -81,6 +81,15 @@ public class MyAccountView extends VerticalLayout {
 
         com.vaadin.flow.component.html.Span lblMulta = new com.vaadin.flow.component.html.Span("Multas pendentes: R$ "+String.format("%.2f",multas));
 
-        add(new com.vaadin.flow.component.html.H3("Minha Conta"), nomeField,emailField,telefoneField,enderecoField,cpfField,lblMulta,senhaAtual,novaSenha,confirmaSenha,salvar);
+        Button renovarTodos = new Button("Renovar todos os meus empréstimos", e -> {
+            try{
+                int renovados = emprestimoService.renovarTodosEmprestimosWeb(usuario);
+                Notification.show(renovados+" empréstimo(s) renovado(s)",3000, Notification.Position.TOP_CENTER);
+            }catch(Exception ex){
+                Notification.show("Erro: "+ex.getMessage(),4000, Notification.Position.TOP_CENTER);
+            }
+        });
+
+        add(new com.vaadin.flow.component.html.H3("Minha Conta"), nomeField,emailField,telefoneField,enderecoField,cpfField,lblMulta,renovarTodos,senhaAtual,novaSenha,confirmaSenha,salvar);
     }
 } 
\ No newline at end of file
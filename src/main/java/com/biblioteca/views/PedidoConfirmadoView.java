@@ -39,6 +39,12 @@ public class PedidoConfirmadoView extends VerticalLayout implements BeforeEnterO
             return;
         }
         vendaRepository.findById(sessionId).ifPresentOrElse(venda -> {
+            if("PENDENTE".equals(venda.getStatus())){
+                titulo.setText("Aguardando confirmação do pagamento");
+                add(new Span("A compra é confirmada assim que o pagamento for compensado. Acompanhe o status em Meus Pedidos."));
+                add(new Span("Valor Total: R$ "+String.format("%.2f", venda.getValorTotal())));
+                return;
+            }
             // Informações sobre retirada na biblioteca
             criarSecaoRetirada(venda);
             
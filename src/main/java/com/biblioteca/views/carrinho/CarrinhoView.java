@@ -5,6 +5,7 @@ import com.biblioteca.model.Livro;
 import com.biblioteca.model.LivroCarrinho;
 import com.biblioteca.model.Usuario;
 import com.biblioteca.service.CarrinhoService;
+import com.biblioteca.service.CarrinhoSessao;
 import com.biblioteca.service.LivroService;
 import com.biblioteca.service.UsuarioService;
 import com.vaadin.flow.component.button.Button;
@@ -34,6 +35,7 @@ import java.util.List;
 public class CarrinhoView extends VerticalLayout {
 
     private final CarrinhoService carrinhoService;
+    private final CarrinhoSessao carrinhoSessao;
     private final LivroService livroService;
     private final UsuarioService usuarioService;
 
@@ -51,9 +53,11 @@ public class CarrinhoView extends VerticalLayout {
 
     @Autowired
     public CarrinhoView(CarrinhoService carrinhoService,
+                         CarrinhoSessao carrinhoSessao,
                          LivroService livroService,
                          UsuarioService usuarioService){
         this.carrinhoService = carrinhoService;
+        this.carrinhoSessao = carrinhoSessao;
         this.livroService = livroService;
         this.usuarioService = usuarioService;
         init();
@@ -74,7 +78,7 @@ public class CarrinhoView extends VerticalLayout {
         } else {
             // Cliente normal - usa o próprio carrinho
             clienteSelecionado = usuarioLogado;
-            carrinho = carrinhoService.obterOuCriarCarrinho(usuarioLogado);
+            carrinho = carrinhoSessao.obter(usuarioLogado);
         }
 
         configurarGridCarrinho();
@@ -110,7 +114,7 @@ public class CarrinhoView extends VerticalLayout {
         modoOperacao.addValueChangeListener(e -> {
             if ("proprio".equals(e.getValue())) {
                 clienteSelecionado = getUsuarioLogado();
-                carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
+                carrinho = carrinhoSessao.obter(clienteSelecionado);
                 limparSelecaoCliente();
             } else {
                 clienteSelecionado = null;
@@ -123,7 +127,7 @@ public class CarrinhoView extends VerticalLayout {
         
         // Inicializa no modo próprio
         clienteSelecionado = getUsuarioLogado();
-        carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
+        carrinho = carrinhoSessao.obter(clienteSelecionado);
     }
 
     private VerticalLayout criarSecaoSelecionarCliente() {
@@ -189,7 +193,7 @@ public class CarrinhoView extends VerticalLayout {
             Usuario cliente = usuarioService.buscarUsuarioPorCpf(cpf).orElse(null);
             if (cliente != null) {
                 clienteSelecionado = cliente;
-                carrinho = carrinhoService.obterOuCriarCarrinho(cliente);
+                carrinho = carrinhoSessao.obter(cliente);
                 infoClienteSpan.setText("✅ Cliente: " + cliente.getNome() + " (CPF: " + formatarCpf(cpf) + ")");
                 refreshGrid();
                 atualizarEstadoBotoes();
@@ -236,7 +240,7 @@ public class CarrinhoView extends VerticalLayout {
 
     private void configurarGridCarrinho(){
         gridCarrinho.removeAllColumns();
-        gridCarrinho.addColumn(lc -> lc.getLivro().getTitulo()).setHeader("Título");
+        gridCarrinho.addColumn(LivroCarrinho::getTitulo).setHeader("Título");
         gridCarrinho.addComponentColumn(lc -> {
             com.vaadin.flow.component.orderedlayout.HorizontalLayout layout = new com.vaadin.flow.component.orderedlayout.HorizontalLayout();
             Span quantidade = new Span(String.valueOf(lc.getQuantidade()));
@@ -247,24 +251,25 @@ public class CarrinhoView extends VerticalLayout {
 
             menos.addClickListener(ev -> {
                 if (carrinho != null && clienteSelecionado != null) {
-                    carrinhoService.removerLivro(carrinho, lc.getLivro(), 1);
-                    carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
+                    carrinho = carrinhoSessao.removerLivro(clienteSelecionado, lc.getLivro(), 1);
                     refreshGrid();
                 }
             });
 
             mais.addClickListener(ev -> {
                 if (carrinho != null && clienteSelecionado != null) {
-                    carrinhoService.adicionarLivro(carrinho, lc.getLivro(), 1);
-                    carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
-                    refreshGrid();
+                    try {
+                        carrinho = carrinhoSessao.adicionarLivro(clienteSelecionado, lc.getLivro(), 1);
+                        refreshGrid();
+                    } catch (RuntimeException ex) {
+                        Notification.show(ex.getMessage(), 3000, Notification.Position.TOP_CENTER);
+                    }
                 }
             });
 
             excluir.addClickListener(ev -> {
                 if (carrinho != null && clienteSelecionado != null) {
-                    carrinhoService.removerLivro(carrinho, lc.getLivro(), lc.getQuantidade());
-                    carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
+                    carrinho = carrinhoSessao.removerLivro(clienteSelecionado, lc.getLivro(), lc.getQuantidade());
                     refreshGrid();
                 }
             });
@@ -295,17 +300,38 @@ public class CarrinhoView extends VerticalLayout {
                 return;
             }
 
-            // Cria carrinho temporário com itens selecionados
+            // Garante que as edições em memória estejam no banco antes do checkout
+            if (!carrinhoSessao.descarregar(clienteSelecionado)) {
+                carrinho = carrinhoSessao.obter(clienteSelecionado);
+                refreshGrid();
+                Notification.show("Não foi possível salvar o carrinho. Confira os itens e tente novamente.",
+                        4000, Notification.Position.TOP_CENTER);
+                return;
+            }
+
+            // Preços podem ter mudado desde que os livros entraram no carrinho
+            java.util.List<CarrinhoService.PrecoAlterado> alterados = carrinhoSessao.revalidarPrecos(clienteSelecionado);
+            if (!alterados.isEmpty()) {
+                carrinho = carrinhoSessao.obter(clienteSelecionado);
+                refreshGrid();
+                Notification.show(CheckoutDialog.descreverAlteracoes(alterados), 6000, Notification.Position.TOP_CENTER);
+                return;
+            }
+
+            // Cria carrinho temporário com cópias dos itens selecionados
             Carrinho carrinhoTemp = new Carrinho();
             carrinhoTemp.setCliente(clienteSelecionado);
             for(LivroCarrinho lc: selecionados){
-                carrinhoTemp.getLivros().add(lc);
+                LivroCarrinho copia = new LivroCarrinho(lc.getLivro(), lc.getQuantidade(), lc.getTitulo(),
+                        lc.getValorUnitario(), lc.getValorAluguel());
+                copia.setId(lc.getId());
+                carrinhoTemp.adicionarLinha(copia);
             }
 
             CheckoutDialog dialog = new CheckoutDialog(carrinhoTemp, carrinhoService, () -> {
                 // Recarrega o carrinho completo (pode ter sido limpo pelo pagamento)
                 try {
-                    carrinho = carrinhoService.obterOuCriarCarrinho(clienteSelecionado);
+                    carrinho = carrinhoSessao.obter(clienteSelecionado);
                     refreshGrid();
                     Notification.show("✅ Pedido finalizado com sucesso!", 3000, Notification.Position.TOP_CENTER);
                 } catch (Exception ex) {
@@ -320,7 +346,7 @@ public class CarrinhoView extends VerticalLayout {
 
     private void refreshGrid(){
         if (carrinho != null) {
-            gridCarrinho.setItems(carrinho.getLivros());
+            gridCarrinho.setItems(carrinhoSessao.linhas(clienteSelecionado));
         } else {
             gridCarrinho.setItems();
         }
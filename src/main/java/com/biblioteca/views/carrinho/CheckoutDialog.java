@@ -3,6 +3,7 @@ package com.biblioteca.views.carrinho;
 import com.biblioteca.model.Carrinho;
 import com.biblioteca.model.LivroCarrinho;
 import com.biblioteca.service.CarrinhoService;
+import com.biblioteca.service.CheckoutMetricas;
 import com.biblioteca.service.PagamentoService;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.dialog.Dialog;
@@ -72,7 +73,7 @@ public class CheckoutDialog extends Dialog {
             boolean aluguel = tipoCompra.getValue().isAluguel();
             for(LivroCarrinho lc: carrinho.getLivros()){
                 double valorItem = lc.calcularValor(aluguel);
-                resumo.add(new Span(lc.getLivro().getTitulo()+" x"+lc.getQuantidade()+" - R$ "+String.format("%.2f", valorItem)));
+                resumo.add(new Span(lc.getTitulo()+" x"+lc.getQuantidade()+" - R$ "+String.format("%.2f", valorItem)));
             }
             double total = carrinho.calcularTotal(aluguel);
             resumo.add(new Span("Total: R$ "+String.format("%.2f", total)));
@@ -98,6 +99,7 @@ public class CheckoutDialog extends Dialog {
         Button cancelar = new Button("Cancelar", e-> close());
 
         confirmar.addClickListener(e -> {
+            long inicio = CheckoutMetricas.iniciar();
             try{
                 // Calcula total localmente só para validar
                 boolean aluguel = tipoCompra.getValue().isAluguel();
@@ -125,12 +127,21 @@ public class CheckoutDialog extends Dialog {
                     carrinho.getCliente().setCpf(cpfUsar);
                 }
 
-                // Cria sessão Stripe diretamente
-                com.stripe.model.checkout.Session session = PagamentoService.criarSessaoCheckout(carrinho, formaPagamento.getValue(), cpfUsar, aluguel);
+                // Confere os preços de novo: o diálogo pode ter ficado aberto
+                java.util.List<CarrinhoService.PrecoAlterado> alterados = carrinhoService.revalidarPrecos(carrinho);
+                if(!alterados.isEmpty()){
+                    atualizarResumo.accept(null);
+                    Notification.show(descreverAlteracoes(alterados), 6000, Notification.Position.TOP_CENTER);
+                    return;
+                }
+
+                // Cria a sessão no gateway de pagamento
+                com.biblioteca.service.PaymentGateway.SessaoPagamento session = PagamentoService.criarSessaoCheckout(carrinho, formaPagamento.getValue(), cpfUsar, aluguel);
 
-                if(session!=null && session.getUrl()!=null){
-                    com.vaadin.flow.component.UI.getCurrent().getPage().setLocation(session.getUrl());
+                if(session!=null && session.url()!=null){
+                    com.vaadin.flow.component.UI.getCurrent().getPage().setLocation(session.url());
                     close();
+                    CheckoutMetricas.registrar(CheckoutMetricas.Etapa.CHECKOUT_DIALOGO, inicio);
                 }else{
                     Notification.show("Falha ao criar sessão de pagamento",4000, Notification.Position.TOP_CENTER);
                 }
@@ -143,6 +154,17 @@ public class CheckoutDialog extends Dialog {
         add(content);
     }
     
+    /** Mensagem com os preços alterados, pedindo nova confirmação */
+    static String descreverAlteracoes(java.util.List<CarrinhoService.PrecoAlterado> alterados){
+        StringBuilder msg = new StringBuilder("Preços atualizados: ");
+        for(int i = 0; i < alterados.size(); i++){
+            CarrinhoService.PrecoAlterado p = alterados.get(i);
+            if(i > 0) msg.append("; ");
+            msg.append(p.titulo()).append(String.format(" de R$ %.2f para R$ %.2f", p.anterior(), p.atual()));
+        }
+        return msg.append(". Confira o total e confirme novamente.").toString();
+    }
+
     private void criarSecaoInfoPedido(VerticalLayout content, Carrinho carrinho) {
         // Informações do cliente
         String nomeCliente = carrinho.getCliente().getNome();
@@ -2,6 +2,7 @@ package com.biblioteca.views.emprestimo;
 
 import com.biblioteca.model.Livro;
 import com.biblioteca.model.Usuario;
+import com.biblioteca.service.LivroService;
 import com.biblioteca.service.UsuarioService;
 import com.biblioteca.util.CpfValidator;
 import com.vaadin.flow.component.Key;
@@ -18,16 +19,16 @@ import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.binder.ValidationException;
 
-import java.util.List;
-
 /**
  * Formulário para criar novo empréstimo.
- * Permite digitar CPF do usuário e selecionar livro disponível.
+ * Permite digitar CPF do usuário (ou buscar pelo nome) e selecionar livro disponível.
+ * Os seletores são lazy: cada digitação consulta apenas uma página no banco.
  */
 public class EmprestimoForm extends FormLayout {
 
     private final TextField cpfUsuarioField = new TextField("CPF do Usuário");
     private final Button buscarUsuarioBtn = new Button("Buscar", VaadinIcon.SEARCH.create());
+    private final ComboBox<Usuario> usuarioField = new ComboBox<>("Ou busque pelo nome");
     private final Span infoUsuarioSpan = new Span();
     private final ComboBox<Livro> livroField = new ComboBox<>("Livro disponível");
 
@@ -36,6 +37,7 @@ public class EmprestimoForm extends FormLayout {
 
     private final Binder<EmprestimoFormBean> binder = new Binder<>(EmprestimoFormBean.class);
     
+    private final LivroService livroService;
     private final UsuarioService usuarioService;
     private Usuario usuarioSelecionado;
 
@@ -45,11 +47,13 @@ public class EmprestimoForm extends FormLayout {
     public interface SaveListener { void onSave(Usuario usuario, Livro livro); }
     public interface CancelListener { void onCancel(); }
 
-    public EmprestimoForm(List<Livro> livrosDisponiveis, UsuarioService usuarioService) {
+    public EmprestimoForm(LivroService livroService, UsuarioService usuarioService) {
+        this.livroService = livroService;
         this.usuarioService = usuarioService;
         
         configurarCamposCpf();
-        configurarLivros(livrosDisponiveis);
+        configurarUsuarios();
+        configurarLivros();
         configurarBotoes();
         configurarLayout();
         configurarBinder();
@@ -108,8 +112,24 @@ public class EmprestimoForm extends FormLayout {
             .set("margin-top", "5px");
     }
 
-    private void configurarLivros(List<Livro> livrosDisponiveis) {
-        livroField.setItems(livrosDisponiveis);
+    private void configurarUsuarios() {
+        usuarioField.setPlaceholder("Digite o início do nome...");
+        usuarioField.setItems(
+            query -> usuarioService.buscarPorPrefixoNome(query.getFilter().orElse(""), query.getOffset(), query.getLimit()).stream(),
+            query -> (int) usuarioService.contarPorPrefixoNome(query.getFilter().orElse("")));
+        usuarioField.setItemLabelGenerator(u -> u.getNome() + (u.getCpf() != null ? " - " + u.getCpf() : ""));
+        usuarioField.setWidthFull();
+        usuarioField.addValueChangeListener(event -> {
+            if (event.isFromClient() && event.getValue() != null) {
+                selecionarUsuario(event.getValue());
+            }
+        });
+    }
+
+    private void configurarLivros() {
+        livroField.setItems(
+            query -> livroService.buscarDisponiveisPorPrefixo(query.getFilter().orElse(""), query.getOffset(), query.getLimit()).stream(),
+            query -> (int) livroService.contarDisponiveisPorPrefixo(query.getFilter().orElse("")));
         livroField.setItemLabelGenerator(livro -> 
             livro.getTitulo() + " - " + livro.getAutor() + 
             " (Estoque: " + livro.getQuantidadeEstoque() + ")");
@@ -138,7 +158,7 @@ public class EmprestimoForm extends FormLayout {
         HorizontalLayout botoesLayout = new HorizontalLayout(salvar, cancelar);
         botoesLayout.setSpacing(true);
 
-        add(buscaUsuarioLayout, infoUsuarioSpan, livroField, botoesLayout);
+        add(buscaUsuarioLayout, usuarioField, infoUsuarioSpan, livroField, botoesLayout);
         setResponsiveSteps(new ResponsiveStep("0", 1));
     }
 
@@ -173,11 +193,7 @@ public class EmprestimoForm extends FormLayout {
             Usuario usuario = usuarioService.buscarUsuarioPorCpf(cpfLimpo).orElse(null);
             
             if (usuario != null) {
-                usuarioSelecionado = usuario;
-                String cpfFormatado = CpfValidator.format(cpfLimpo);
-                infoUsuarioSpan.setText("✅ Usuário: " + usuario.getNome() + 
-                    " (" + usuario.getRole() + ") - CPF: " + cpfFormatado);
-                atualizarEstadoBotaoSalvar();
+                selecionarUsuario(usuario);
                 
                 Notification.show("Usuário encontrado: " + usuario.getNome(), 
                     3000, Notification.Position.MIDDLE);
@@ -200,6 +216,15 @@ public class EmprestimoForm extends FormLayout {
         }
     }
 
+    private void selecionarUsuario(Usuario usuario) {
+        usuarioSelecionado = usuario;
+        String cpf = usuario.getCpf() != null ? usuario.getCpf().replaceAll("[^0-9]", "") : "";
+        String cpfFormatado = cpf.length() == 11 ? CpfValidator.format(cpf) : "não informado";
+        infoUsuarioSpan.setText("✅ Usuário: " + usuario.getNome() + 
+            " (" + usuario.getRole() + ") - CPF: " + cpfFormatado);
+        atualizarEstadoBotaoSalvar();
+    }
+
     private void atualizarEstadoBotaoSalvar() {
         boolean temUsuario = usuarioSelecionado != null;
         salvar.setEnabled(temUsuario);
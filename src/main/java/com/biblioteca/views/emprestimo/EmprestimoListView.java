@@ -1,12 +1,14 @@
 package com.biblioteca.views.emprestimo;
 
 import com.biblioteca.model.Emprestimo;
-import com.biblioteca.model.Livro;
 import com.biblioteca.model.Usuario;
+import com.biblioteca.repository.EmprestimoFiltro;
 import com.biblioteca.service.EmprestimoService;
 import com.biblioteca.service.LivroService;
 import com.biblioteca.service.UsuarioService;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.grid.GridVariant;
@@ -35,10 +37,17 @@ public class EmprestimoListView extends VerticalLayout {
     private final Grid<Emprestimo> grid = new Grid<>(Emprestimo.class,false);
 
     private final TextField filtroUsuario = new TextField();
+    private final TextField filtroLivro = new TextField();
+    private final ComboBox<String> filtroStatus = new ComboBox<>();
+    private final Checkbox filtroAtrasados = new Checkbox("Somente atrasados");
     private final Button novoBtn = new Button("Novo Empréstimo");
 
     private final DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
+    // Estado do keyset: offset esperado da próxima página sequencial e último id entregue
+    private int proximoOffsetKeyset = -1;
+    private Long ultimoIdCarregado;
+
     @Autowired
     public EmprestimoListView(EmprestimoService emprestimoService,
                                UsuarioService usuarioService,
@@ -51,14 +60,27 @@ public class EmprestimoListView extends VerticalLayout {
     }
 
     private void configurarComponentes(){
-        filtroUsuario.setPlaceholder("Buscar por usuário...");
+        filtroUsuario.setPlaceholder("Buscar por usuário ou CPF...");
         filtroUsuario.setClearButtonVisible(true);
         filtroUsuario.setValueChangeMode(ValueChangeMode.LAZY);
         filtroUsuario.addValueChangeListener(e -> atualizarGrid());
 
+        filtroLivro.setPlaceholder("Buscar por livro...");
+        filtroLivro.setClearButtonVisible(true);
+        filtroLivro.setValueChangeMode(ValueChangeMode.LAZY);
+        filtroLivro.addValueChangeListener(e -> atualizarGrid());
+
+        filtroStatus.setPlaceholder("Status");
+        filtroStatus.setItems("ATIVO", "DEVOLVIDO");
+        filtroStatus.setClearButtonVisible(true);
+        filtroStatus.addValueChangeListener(e -> atualizarGrid());
+
+        filtroAtrasados.addValueChangeListener(e -> atualizarGrid());
+
         novoBtn.addClickListener(e -> abrirFormularioNovoEmprestimo());
 
-        HorizontalLayout topo = new HorizontalLayout(filtroUsuario, novoBtn);
+        HorizontalLayout topo = new HorizontalLayout(filtroUsuario, filtroLivro, filtroStatus, filtroAtrasados, novoBtn);
+        topo.setDefaultVerticalComponentAlignment(com.vaadin.flow.component.orderedlayout.FlexComponent.Alignment.BASELINE);
         topo.setWidthFull();
         topo.expand(filtroUsuario);
 
@@ -76,27 +98,19 @@ public class EmprestimoListView extends VerticalLayout {
         grid.setHeight("600px");
         grid.setPageSize(20);
 
-        // Lazy loading
+        // Lazy loading: filtro, página e contagem resolvidos no banco
         grid.setItems(query -> {
-                    List<Emprestimo> base;
-                    if(filtroUsuario.getValue()==null || filtroUsuario.getValue().isBlank()){
-                        base = emprestimoService.listarPaginado(query.getOffset(), query.getLimit());
-                    } else {
-                        base = emprestimoService.listarTodosEmprestimosWeb().stream()
-                                .filter(emp -> emp.getUsuario()!=null && emp.getUsuario().getNome()!=null && emp.getUsuario().getNome().toLowerCase().contains(filtroUsuario.getValue().toLowerCase()))
-                                .toList();
-                        int from = query.getOffset();
-                        int to = Math.min(from+query.getLimit(), base.size());
-                        base = base.subList(from, to);
+                    EmprestimoFiltro filtro = montarFiltro();
+                    // Página sequencial (rolagem) usa keyset a partir do último id carregado
+                    Long ultimoId = query.getOffset() == proximoOffsetKeyset ? ultimoIdCarregado : null;
+                    List<Emprestimo> pagina = emprestimoService.buscarPorFiltro(filtro, ultimoId, query.getOffset(), query.getLimit());
+                    if (!pagina.isEmpty()) {
+                        proximoOffsetKeyset = query.getOffset() + pagina.size();
+                        ultimoIdCarregado = pagina.get(pagina.size() - 1).getId();
                     }
-                    return base.stream();
+                    return pagina.stream();
                 },
-                q -> {
-                    if(filtroUsuario.getValue()==null || filtroUsuario.getValue().isBlank()) return (int) emprestimoService.contarEmprestimos();
-                    return (int) emprestimoService.listarTodosEmprestimosWeb().stream()
-                            .filter(emp -> emp.getUsuario()!=null && emp.getUsuario().getNome()!=null && emp.getUsuario().getNome().toLowerCase().contains(filtroUsuario.getValue().toLowerCase()))
-                            .count();
-                });
+                q -> (int) emprestimoService.contarPorFiltro(montarFiltro()));
 
         // ação devolver
         grid.addComponentColumn(emp -> {
@@ -111,7 +125,17 @@ public class EmprestimoListView extends VerticalLayout {
                         Notification.show("Erro: "+ex.getMessage(), 4000, Notification.Position.TOP_CENTER);
                     }
                 });
-                return devolver;
+                Button renovar = new Button("Renovar");
+                renovar.addClickListener(ev -> {
+                    try{
+                        Emprestimo renovado = emprestimoService.renovarEmprestimoWeb(emp.getId());
+                        Notification.show("Renovado até "+renovado.getDataPrevista().format(fmt), 4000, Notification.Position.TOP_CENTER);
+                        atualizarGrid();
+                    } catch (Exception ex){
+                        Notification.show("Erro: "+ex.getMessage(), 4000, Notification.Position.TOP_CENTER);
+                    }
+                });
+                return new HorizontalLayout(devolver, renovar);
             }
             return new com.vaadin.flow.component.html.Span("-");
         }).setHeader("Ações").setAutoWidth(true);
@@ -121,10 +145,7 @@ public class EmprestimoListView extends VerticalLayout {
     }
 
     private void abrirFormularioNovoEmprestimo(){
-        List<Livro> livros = livroService.listarTodos().stream()
-                .filter(l -> l.getQuantidadeEstoque()!=null && l.getQuantidadeEstoque()>0)
-                .toList();
-        EmprestimoForm form = new EmprestimoForm(livros, usuarioService);
+        EmprestimoForm form = new EmprestimoForm(livroService, usuarioService);
 
         Dialog dialog = new Dialog(form);
         dialog.setModal(true);
@@ -146,7 +167,18 @@ public class EmprestimoListView extends VerticalLayout {
         dialog.open();
     }
 
+    private EmprestimoFiltro montarFiltro(){
+        EmprestimoFiltro filtro = new EmprestimoFiltro();
+        filtro.setUsuario(filtroUsuario.getValue());
+        filtro.setLivro(filtroLivro.getValue());
+        filtro.setStatus(filtroStatus.getValue());
+        filtro.setSomenteAtrasados(Boolean.TRUE.equals(filtroAtrasados.getValue()));
+        return filtro;
+    }
+
     private void atualizarGrid(){
+        proximoOffsetKeyset = -1;
+        ultimoIdCarregado = null;
         grid.getLazyDataView().refreshAll();
     }
 } 
\ No newline at end of file
@@ -3,6 +3,10 @@ package com.biblioteca.views.livro;
 import com.biblioteca.model.Livro;
 import com.biblioteca.service.LivroService;
 import com.biblioteca.service.CarrinhoService;
+import com.biblioteca.service.CarrinhoSessao;
+import com.biblioteca.service.EmprestimoService;
+import com.biblioteca.service.PrevisaoDisponibilidadeService;
+import com.biblioteca.service.ReservaEstoqueService;
 import com.biblioteca.service.UsuarioService;
 import com.biblioteca.model.TipoCompra;
 import com.vaadin.flow.component.button.Button;
@@ -30,8 +34,17 @@ public class LivroListView extends VerticalLayout {
 
     private final LivroService livroService;
     private final CarrinhoService carrinhoService;
+    private final CarrinhoSessao carrinhoSessao;
     private final UsuarioService usuarioService;
+    private final PrevisaoDisponibilidadeService previsaoService;
+    private final ReservaEstoqueService reservaEstoqueService;
+    private final EmprestimoService emprestimoService;
+    // Usuário logado: a reserva dele no carrinho não tira o livro de disponível
+    private final Long usuarioAtualId;
     private final Grid<Livro> grid = new Grid<>(Livro.class, false);
+    // Previsão para nova reserva dos títulos indisponíveis da página carregada
+    private final java.util.Map<Long, PrevisaoDisponibilidadeService.PrevisaoReserva> previsoesPagina =
+            new java.util.concurrent.ConcurrentHashMap<>();
 
     private final TextField filtroTitulo = new TextField();
     private final TextField filtroAutor = new TextField();
@@ -39,10 +52,20 @@ public class LivroListView extends VerticalLayout {
     private final Button novoBtn = new Button("Novo Livro");
 
     @Autowired
-    public LivroListView(LivroService livroService, CarrinhoService carrinhoService, UsuarioService usuarioService) {
+    public LivroListView(LivroService livroService, CarrinhoService carrinhoService, UsuarioService usuarioService,
+                         PrevisaoDisponibilidadeService previsaoService, CarrinhoSessao carrinhoSessao,
+                         ReservaEstoqueService reservaEstoqueService, EmprestimoService emprestimoService) {
         this.livroService = livroService;
         this.carrinhoService = carrinhoService;
+        this.carrinhoSessao = carrinhoSessao;
         this.usuarioService = usuarioService;
+        this.previsaoService = previsaoService;
+        this.reservaEstoqueService = reservaEstoqueService;
+        this.emprestimoService = emprestimoService;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        this.usuarioAtualId = auth != null
+                ? usuarioService.buscarUsuarioByLoginWeb(auth.getName()).map(u -> u.getId()).orElse(null)
+                : null;
         configurarComponentes();
         atualizarGrid();
     }
@@ -101,19 +124,58 @@ public class LivroListView extends VerticalLayout {
         if(podeEditar()){
             grid.addColumn(l -> l.getQuantidadeEstoque() != null ? l.getQuantidadeEstoque() : 0)
                 .setHeader("Estoque");
+            grid.addColumn(l -> reservaEstoqueService.reservado(l.getId()))
+                .setHeader("Em carrinhos");
+        }
+
+        // Disponível para venda e previsão calculados em memória (sem consulta por linha)
+        grid.addColumn(l -> {
+            if (reservaEstoqueService.disponivelParaVenda(usuarioAtualId, l) > 0) return "Disponível";
+            PrevisaoDisponibilidadeService.PrevisaoReserva previsao = previsoesPagina.get(l.getId());
+            if (previsao == null) return "Indisponível";
+            String data = "Previsto " + previsao.data().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            // Com fila de reservas a previsão é a de quem reservar agora
+            return previsao.posicao() > 1 ? data + " (" + previsao.posicao() + "º na fila)" : data;
+        }).setHeader("Disponibilidade").setAutoWidth(true);
+
+        if(podeEditar){
+            grid.addComponentColumn(l -> {
+                Button previsao = new Button("Previsão 30 dias", e -> abrirPrevisao(l));
+                previsao.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_TERTIARY);
+                return previsao;
+            }).setHeader("").setAutoWidth(true);
         }
 
         grid.addComponentColumn(l -> {
             Button add = new Button("Adicionar", e -> {
                 var usuario = usuarioService.buscarUsuarioByLoginWeb(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getName()).orElse(null);
                 if(usuario!=null){
-                    var carrinho = carrinhoService.obterOuCriarCarrinho(usuario);
-                    carrinhoService.adicionarLivro(carrinho, l, 1);
-                    Notification.show("Adicionado ao carrinho",2000, Notification.Position.TOP_CENTER);
+                    try {
+                        carrinhoSessao.adicionarLivro(usuario, l, 1);
+                        Notification.show("Adicionado ao carrinho",2000, Notification.Position.TOP_CENTER);
+                    } catch (RuntimeException ex) {
+                        Notification.show(ex.getMessage(),3000, Notification.Position.TOP_CENTER);
+                        grid.getDataProvider().refreshItem(l);
+                    }
                 }
             });
-            add.setEnabled(l.getQuantidadeEstoque()!=null && l.getQuantidadeEstoque()>0);
-            return add;
+            if (reservaEstoqueService.disponivelParaVenda(usuarioAtualId, l) > 0) {
+                return add;
+            }
+            // Sem exemplares: entra na fila de espera do título
+            Button reservar = new Button("Reservar", e -> {
+                var usuario = usuarioService.buscarUsuarioByLoginWeb(org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getName()).orElse(null);
+                if(usuario!=null){
+                    try {
+                        emprestimoService.reservarTituloWeb(usuario, l);
+                        Notification.show("Reserva registrada",2000, Notification.Position.TOP_CENTER);
+                        grid.getDataProvider().refreshAll();
+                    } catch (RuntimeException ex) {
+                        Notification.show(ex.getMessage(),3000, Notification.Position.TOP_CENTER);
+                    }
+                }
+            });
+            return reservar;
         }).setHeader("");
 
         grid.addThemeVariants(GridVariant.LUMO_ROW_STRIPES);
@@ -125,17 +187,21 @@ public class LivroListView extends VerticalLayout {
                     String autor = filtroAutor.getValue();
                     String isbn = filtroIsbn.getValue();
                     
+                    java.util.List<Livro> pagina;
                     // Se todos os filtros estão vazios, listar todos paginados
                     if ((titulo == null || titulo.isBlank()) && 
                         (autor == null || autor.isBlank()) && 
                         (isbn == null || isbn.isBlank())) {
-                        return livroService.listarPaginado(query.getOffset(), query.getLimit()).stream();
+                        pagina = livroService.listarPaginado(query.getOffset(), query.getLimit());
                     } else {
                         // Usar busca por múltiplos critérios
-                        return livroService.buscarPorMultiplosCriterios(titulo, autor, isbn).stream()
+                        pagina = livroService.buscarPorMultiplosCriterios(titulo, autor, isbn).stream()
                                 .skip(query.getOffset())
-                                .limit(query.getLimit());
+                                .limit(query.getLimit())
+                                .toList();
                     }
+                    carregarPrevisoes(pagina);
+                    return pagina.stream();
                 },
                 q -> {
                     String titulo = filtroTitulo.getValue();
@@ -200,6 +266,39 @@ public class LivroListView extends VerticalLayout {
         dialog.open();
     }
 
+    /**
+     * Diálogo com a previsão de exemplares disponíveis nos próximos 30 dias.
+     */
+    private void abrirPrevisao(Livro livro) {
+        int estoque = livro.getQuantidadeEstoque() != null ? livro.getQuantidadeEstoque() : 0;
+        double[] esperado = previsaoService.previsao30Dias(livro.getId(), estoque);
+        java.time.LocalDate hoje = java.time.LocalDate.now();
+        java.time.format.DateTimeFormatter fmt = java.time.format.DateTimeFormatter.ofPattern("dd/MM");
+
+        Grid<Integer> tabela = new Grid<>();
+        tabela.addColumn(d -> hoje.plusDays(d).format(fmt)).setHeader("Dia");
+        tabela.addColumn(d -> String.format("%.1f", esperado[d])).setHeader("Exemplares esperados");
+        tabela.setItems(java.util.stream.IntStream.range(0, esperado.length).boxed().toList());
+        tabela.setHeight("400px");
+
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle("Previsão de disponibilidade - " + livro.getTitulo());
+        dialog.add(tabela);
+        dialog.setWidth("420px");
+        dialog.getFooter().add(new Button("Fechar", e -> dialog.close()));
+        dialog.open();
+    }
+
+    /** Previsões da página: a fila de reservas de todos os títulos indisponíveis numa consulta */
+    private void carregarPrevisoes(java.util.List<Livro> pagina) {
+        java.util.List<Long> indisponiveis = pagina.stream()
+                .filter(l -> reservaEstoqueService.disponivelParaVenda(usuarioAtualId, l) <= 0)
+                .map(Livro::getId)
+                .toList();
+        pagina.forEach(l -> previsoesPagina.remove(l.getId()));
+        previsoesPagina.putAll(previsaoService.previsaoParaNovaReserva(indisponiveis));
+    }
+
     private void atualizarGrid() {
         grid.getLazyDataView().refreshAll();
         // DataProvider usa os filtros automaticamente
@@ -0,0 +1,13 @@
+-- V11 - Reservas temporárias de estoque para linhas de carrinho (TTL)
+CREATE TABLE IF NOT EXISTS reservas_estoque (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    cliente_id BIGINT NOT NULL,
+    livro_id BIGINT NOT NULL,
+    quantidade INT NOT NULL,
+    expira_em DATETIME NOT NULL,
+    CONSTRAINT uk_reserva_estoque_cliente_livro UNIQUE (cliente_id, livro_id),
+    CONSTRAINT fk_resest_cliente FOREIGN KEY (cliente_id) REFERENCES usuarios(id) ON DELETE CASCADE,
+    CONSTRAINT fk_resest_livro FOREIGN KEY (livro_id) REFERENCES livros(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_reservas_estoque_expira ON reservas_estoque(expira_em);
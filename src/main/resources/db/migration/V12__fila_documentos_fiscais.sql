@@ -0,0 +1,12 @@
+-- V12 - Fila persistente de geração de documentos fiscais (um job por venda)
+CREATE TABLE IF NOT EXISTS documento_jobs (
+    venda_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa DATETIME NOT NULL,
+    ultimo_erro VARCHAR(1000),
+    criado_em DATETIME NOT NULL,
+    atualizado_em DATETIME
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_documento_jobs_status_proxima ON documento_jobs(status, proxima_tentativa);
@@ -0,0 +1,15 @@
+-- V13 - Checkpoints dos lotes mensais de notas fiscais
+CREATE TABLE IF NOT EXISTS lote_documentos (
+    id VARCHAR(64) NOT NULL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    ultima_data_venda DATETIME,
+    ultima_venda_id VARCHAR(255),
+    processados BIGINT NOT NULL DEFAULT 0,
+    total BIGINT NOT NULL DEFAULT 0,
+    iniciado_em DATETIME NOT NULL,
+    atualizado_em DATETIME,
+    docs_por_segundo DOUBLE
+) ENGINE=InnoDB;
+
+-- Varredura das vendas pagas do período em ordem (data, id)
+CREATE INDEX idx_vendas_status_data_id ON vendas(status, data_venda, id);
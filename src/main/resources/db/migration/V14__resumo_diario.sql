@@ -0,0 +1,20 @@
+-- V14 - Consolidados diários para os relatórios de dashboard
+CREATE TABLE IF NOT EXISTS resumo_diario (
+    dia DATE NOT NULL PRIMARY KEY,
+    emprestimos_novos BIGINT NOT NULL DEFAULT 0,
+    devolucoes BIGINT NOT NULL DEFAULT 0,
+    emprestimos_ativos BIGINT NOT NULL DEFAULT 0,
+    emprestimos_atrasados BIGINT NOT NULL DEFAULT 0,
+    multas_valor DOUBLE NOT NULL DEFAULT 0,
+    vendas_qtd BIGINT NOT NULL DEFAULT 0,
+    vendas_valor DOUBLE NOT NULL DEFAULT 0,
+    vendas_cartao BIGINT NOT NULL DEFAULT 0,
+    valor_cartao DOUBLE NOT NULL DEFAULT 0,
+    vendas_boleto BIGINT NOT NULL DEFAULT 0,
+    valor_boleto DOUBLE NOT NULL DEFAULT 0,
+    livros_estoque_baixo BIGINT NOT NULL DEFAULT 0,
+    consolidado_em DATETIME NOT NULL
+) ENGINE=InnoDB;
+
+-- Devoluções / multas do dia
+CREATE INDEX idx_emprestimos_data_devolucao ON emprestimos(data_devolucao);
@@ -0,0 +1,7 @@
+-- V15 - Confirmações de pagamento já processadas (uma por sessão do Stripe)
+CREATE TABLE IF NOT EXISTS pagamentos_processados (
+    session_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    origem VARCHAR(20) NOT NULL,
+    evento_id VARCHAR(255),
+    processado_em DATETIME NOT NULL
+) ENGINE=InnoDB;
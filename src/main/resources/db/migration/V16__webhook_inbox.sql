@@ -0,0 +1,18 @@
+-- V16 - Caixa de entrada dos webhooks de pagamento (ack imediato, processamento assíncrono)
+CREATE TABLE IF NOT EXISTS webhook_inbox (
+    seq BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    evento_id VARCHAR(255) NOT NULL,
+    session_id VARCHAR(255),
+    tipo VARCHAR(100) NOT NULL,
+    payload TEXT,
+    status VARCHAR(20) NOT NULL,
+    tentativas INT NOT NULL DEFAULT 0,
+    proxima_tentativa DATETIME NOT NULL,
+    ultimo_erro VARCHAR(1000),
+    recebido_em DATETIME NOT NULL,
+    atualizado_em DATETIME,
+    CONSTRAINT uk_webhook_inbox_evento UNIQUE (evento_id)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_webhook_inbox_status_proxima ON webhook_inbox(status, proxima_tentativa);
+CREATE INDEX idx_webhook_inbox_sessao ON webhook_inbox(session_id, seq);
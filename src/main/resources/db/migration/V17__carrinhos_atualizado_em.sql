@@ -0,0 +1,7 @@
+-- V17 - Última alteração dos carrinhos (limpeza de carrinhos abandonados)
+ALTER TABLE carrinhos ADD COLUMN atualizado_em DATETIME;
+
+-- Carrinhos existentes contam o TTL a partir da migração
+UPDATE carrinhos SET atualizado_em = NOW() WHERE atualizado_em IS NULL;
+
+CREATE INDEX idx_carrinhos_atualizado_em ON carrinhos(atualizado_em);
@@ -0,0 +1,28 @@
+-- V18 - Preços copiados na linha do carrinho e total de aluguel mantido no carrinho
+ALTER TABLE livros_carrinho
+    ADD COLUMN titulo VARCHAR(255) NULL,
+    ADD COLUMN valor_unitario DOUBLE NULL,
+    ADD COLUMN valor_aluguel DOUBLE NULL;
+
+ALTER TABLE carrinhos
+    ADD COLUMN total_aluguel DOUBLE NULL;
+
+-- Linhas existentes recebem o preço atual do livro
+UPDATE livros_carrinho lc
+JOIN livros l ON l.id = lc.livro_id
+SET lc.titulo = l.titulo,
+    lc.valor_unitario = l.valor,
+    lc.valor_aluguel = l.valor * 0.10
+WHERE lc.valor_unitario IS NULL;
+
+-- Totais recalculados a partir das linhas
+UPDATE carrinhos c
+LEFT JOIN (
+    SELECT carrinho_id,
+           SUM(valor_unitario * quantidade) AS total,
+           SUM(valor_aluguel * quantidade) AS total_aluguel
+    FROM livros_carrinho
+    GROUP BY carrinho_id
+) t ON t.carrinho_id = c.id
+SET c.total = COALESCE(t.total, 0),
+    c.total_aluguel = COALESCE(t.total_aluguel, 0);
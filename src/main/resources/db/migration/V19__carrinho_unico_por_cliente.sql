@@ -0,0 +1,22 @@
+-- V19 - Um carrinho de compras por cliente (criação concorrente via INSERT IGNORE sobre o índice único)
+-- Carrinhos de compras de fornecedor ficam com ativo NULL e não entram na unicidade
+
+ALTER TABLE carrinhos ADD COLUMN ativo BIT(1) NULL;
+
+UPDATE carrinhos c SET c.ativo = 1
+WHERE NOT EXISTS (SELECT 1 FROM compras co WHERE co.carrinho_id = c.id);
+
+-- Duplicados existentes: fica o carrinho alterado por último (empate: maior id)
+CREATE TEMPORARY TABLE carrinhos_duplicados AS
+SELECT DISTINCT c.id
+FROM carrinhos c
+JOIN carrinhos outro ON outro.cliente_id = c.cliente_id AND outro.ativo = 1
+    AND (COALESCE(outro.atualizado_em, '1970-01-01') > COALESCE(c.atualizado_em, '1970-01-01')
+         OR (COALESCE(outro.atualizado_em, '1970-01-01') = COALESCE(c.atualizado_em, '1970-01-01') AND outro.id > c.id))
+WHERE c.ativo = 1;
+
+DELETE FROM livros_carrinho WHERE carrinho_id IN (SELECT id FROM carrinhos_duplicados);
+DELETE FROM carrinhos WHERE id IN (SELECT id FROM carrinhos_duplicados);
+DROP TEMPORARY TABLE carrinhos_duplicados;
+
+CREATE UNIQUE INDEX uk_carrinhos_cliente_ativo ON carrinhos(cliente_id, ativo);
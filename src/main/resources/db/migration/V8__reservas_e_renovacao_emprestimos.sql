@@ -0,0 +1,19 @@
+-- V8 - Fila de reservas por título e índices usados pela renovação de empréstimos
+
+-- =====================
+-- TABELA RESERVAS
+-- =====================
+CREATE TABLE IF NOT EXISTS reservas (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    usuario_id BIGINT NOT NULL,
+    livro_id BIGINT NOT NULL,
+    data_reserva DATETIME NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    CONSTRAINT fk_res_usuario FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE,
+    CONSTRAINT fk_res_livro FOREIGN KEY (livro_id) REFERENCES livros(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_reservas_livro_status ON reservas(livro_id, status);
+
+-- Usado pela checagem de multas na UPDATE condicional de renovação
+CREATE INDEX idx_emprestimos_usuario_devolvido ON emprestimos(usuario_id, devolvido, data_prevista);
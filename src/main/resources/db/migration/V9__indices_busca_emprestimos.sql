@@ -0,0 +1,7 @@
+-- V9 - Índices para a busca filtrada de empréstimos (prefixo de nome/CPF/título, status e datas)
+CREATE INDEX idx_usuarios_nome ON usuarios(nome);
+CREATE INDEX idx_usuarios_cpf ON usuarios(cpf);
+CREATE INDEX idx_livros_titulo ON livros(titulo);
+CREATE INDEX idx_emprestimos_status ON emprestimos(status, id);
+CREATE INDEX idx_emprestimos_data_emprestimo ON emprestimos(data_emprestimo);
+CREATE INDEX idx_emprestimos_atraso ON emprestimos(devolvido, data_prevista);
@@ -0,0 +1,174 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.Livro;
+import com.biblioteca.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finalizações de carrinho concorrentes disputando os mesmos títulos: baixa linha a linha
+ * (findById + save na ordem do carrinho, sem trava, como era em CarrinhoService.finalizarCarrinho)
+ * contra {@link LivroRepositoryImpl#baixarEstoqueEmLote(Map, Map)}.
+ *
+ * Precisa do MySQL da unidade bibliotecaPU (META-INF/persistence.xml) com o schema já
+ * criado pela aplicação. Os livros usados são inseridos no início e removidos no fim.
+ * Além de ops/s, o contador {@code falhas} mostra as transações desfeitas (deadlock ou
+ * timeout de lock). Para outro nível de concorrência: {@code -t <threads>} na linha de comando.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BaixaEstoqueBenchmark {
+
+    // Poucos títulos para haver disputa entre os carrinhos
+    private static final int TITULOS = 20;
+
+    @Param({"1", "3", "10"})
+    private int itensPorCarrinho;
+
+    private List<Long> livros;
+
+    @State(Scope.Thread)
+    public static class Sessao {
+        EntityManager em;
+        LivroRepositoryImpl repositorio;
+
+        @Setup
+        public void abrir() throws ReflectiveOperationException {
+            em = JPAUtil.getEntityManager();
+            repositorio = new LivroRepositoryImpl();
+            Field campo = LivroRepositoryImpl.class.getDeclaredField("em");
+            campo.setAccessible(true);
+            campo.set(repositorio, em);
+        }
+
+        @TearDown
+        public void fechar() {
+            em.close();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Falhas {
+        public long falhas;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            falhas = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void semear() {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            livros = new ArrayList<>();
+            for (int i = 0; i < TITULOS; i++) {
+                Livro livro = new Livro(null, "Benchmark estoque " + i, 10.0, 1_000_000_000);
+                em.persist(livro);
+                livros.add(livro.getId());
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Livro l WHERE l.id IN :ids").setParameter("ids", livros).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        JPAUtil.closeEntityManagerFactory();
+    }
+
+    @Benchmark
+    public void porLinha(Sessao s, Falhas f) {
+        List<Long> carrinho = carrinho();
+        executar(s, f, () -> {
+            for (Long id : carrinho) {
+                Livro livro = s.em.find(Livro.class, id);
+                livro.setQuantidadeEstoque(livro.getQuantidadeEstoque() - 1);
+            }
+        });
+    }
+
+    @Benchmark
+    public void emLote(Sessao s, Falhas f) {
+        Map<Long, Integer> quantidades = new HashMap<>();
+        for (Long id : carrinho()) {
+            quantidades.put(id, 1);
+        }
+        executar(s, f, () -> {
+            if (!s.repositorio.baixarEstoqueEmLote(quantidades, Collections.emptyMap()).isEmpty()) {
+                throw new IllegalStateException("Estoque do benchmark esgotado");
+            }
+        });
+    }
+
+    // Títulos distintos em ordem aleatória, como chegam de carrinhos diferentes
+    private List<Long> carrinho() {
+        List<Long> embaralhados = new ArrayList<>(livros);
+        Collections.shuffle(embaralhados, ThreadLocalRandom.current());
+        return embaralhados.subList(0, itensPorCarrinho);
+    }
+
+    private static void executar(Sessao s, Falhas f, Runnable baixa) {
+        try {
+            s.em.getTransaction().begin();
+            baixa.run();
+            s.em.getTransaction().commit();
+        } catch (PersistenceException e) {
+            if (s.em.getTransaction().isActive()) {
+                s.em.getTransaction().rollback();
+            }
+            f.falhas++;
+        } finally {
+            s.em.clear();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BaixaEstoqueBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,191 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.ItemVenda;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Venda;
+import com.biblioteca.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação de uma venda com N itens: o corpo anterior de PagamentoService.salvarVendaNoBanco
+ * (um INSERT nativo por item; na regravação, DELETE de todos os itens e INSERT de novo)
+ * contra {@link VendaRepositoryImpl#salvarComItens(java.sql.Connection, Venda)}.
+ *
+ * Cenários: NOVA grava uma venda inédita a cada operação; ALTERADA regrava a mesma venda
+ * com a quantidade de um item trocada (o caso da confirmação de pagamento).
+ *
+ * Precisa do MySQL da unidade bibliotecaPU (META-INF/persistence.xml, já com
+ * rewriteBatchedStatements) e do schema criado pela aplicação. Livros e vendas do
+ * benchmark são removidos no fim.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VendaGravacaoBenchmark {
+
+    private static final String PREFIXO_ID = "bench-";
+
+    @Param({"1", "10", "50", "200"})
+    private int itens;
+
+    @Param({"NOVA", "ALTERADA"})
+    private String cenario;
+
+    private EntityManager em;
+    private List<Livro> livros;
+    private Venda alterada;
+
+    @Setup(Level.Trial)
+    public void semear() {
+        em = JPAUtil.getEntityManager();
+        em.getTransaction().begin();
+        livros = new ArrayList<>();
+        for (int i = 0; i < itens; i++) {
+            Livro livro = new Livro(null, "Benchmark venda " + i, 19.9, 100);
+            em.persist(livro);
+            livros.add(livro);
+        }
+        em.getTransaction().commit();
+        em.clear();
+
+        alterada = novaVenda();
+        em.getTransaction().begin();
+        em.unwrap(Session.class).doWork(conexao -> VendaRepositoryImpl.salvarComItens(conexao, alterada));
+        em.getTransaction().commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() {
+        em.getTransaction().begin();
+        em.createNativeQuery("DELETE FROM itens_venda WHERE venda_id LIKE 'bench-%'").executeUpdate();
+        em.createNativeQuery("DELETE FROM vendas WHERE id LIKE 'bench-%'").executeUpdate();
+        List<Long> ids = livros.stream().map(Livro::getId).toList();
+        em.createQuery("DELETE FROM Livro l WHERE l.id IN :ids").setParameter("ids", ids).executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+        JPAUtil.closeEntityManagerFactory();
+    }
+
+    @Benchmark
+    public void salvarVendaNoBancoAnterior() {
+        Venda venda = vendaDaOperacao();
+        em.getTransaction().begin();
+        if (em.find(Venda.class, venda.getId()) != null) {
+            em.createNativeQuery("UPDATE vendas SET cliente_nome = ?, cliente_cpf = ?, cliente_email = ?, " +
+                            "cliente_endereco = ?, valor_total = ?, tipo_pagamento = ?, tipo_compra = ?, data_venda = ?, status = ? " +
+                            "WHERE id = ?")
+                    .setParameter(1, venda.getClienteNome())
+                    .setParameter(2, venda.getClienteCpf())
+                    .setParameter(3, venda.getClienteEmail())
+                    .setParameter(4, venda.getClienteEndereco())
+                    .setParameter(5, venda.getValorTotal())
+                    .setParameter(6, venda.getTipoPagamento())
+                    .setParameter(7, venda.getTipoCompra())
+                    .setParameter(8, venda.getDataVenda())
+                    .setParameter(9, venda.getStatus())
+                    .setParameter(10, venda.getId())
+                    .executeUpdate();
+            em.createNativeQuery("DELETE FROM itens_venda WHERE venda_id = ?")
+                    .setParameter(1, venda.getId())
+                    .executeUpdate();
+        } else {
+            em.createNativeQuery("INSERT INTO vendas (id, cliente_nome, cliente_cpf, cliente_email, " +
+                            "cliente_endereco, valor_total, tipo_pagamento, tipo_compra, data_venda, status) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")
+                    .setParameter(1, venda.getId())
+                    .setParameter(2, venda.getClienteNome())
+                    .setParameter(3, venda.getClienteCpf())
+                    .setParameter(4, venda.getClienteEmail())
+                    .setParameter(5, venda.getClienteEndereco())
+                    .setParameter(6, venda.getValorTotal())
+                    .setParameter(7, venda.getTipoPagamento())
+                    .setParameter(8, venda.getTipoCompra())
+                    .setParameter(9, venda.getDataVenda())
+                    .setParameter(10, venda.getStatus())
+                    .executeUpdate();
+        }
+        for (ItemVenda item : venda.getItens()) {
+            em.createNativeQuery("INSERT INTO itens_venda (livro_id, quantidade, valor_unitario, venda_id) VALUES (?, ?, ?, ?)")
+                    .setParameter(1, item.getLivro().getId())
+                    .setParameter(2, item.getQuantidade())
+                    .setParameter(3, item.getLivro().getValor())
+                    .setParameter(4, venda.getId())
+                    .executeUpdate();
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    @Benchmark
+    public void salvarComItens() {
+        Venda venda = vendaDaOperacao();
+        em.getTransaction().begin();
+        em.unwrap(Session.class).doWork(conexao -> VendaRepositoryImpl.salvarComItens(conexao, venda));
+        em.getTransaction().commit();
+    }
+
+    private Venda vendaDaOperacao() {
+        if ("NOVA".equals(cenario)) {
+            return novaVenda();
+        }
+        // Alterna a quantidade do primeiro item: sempre há exatamente uma linha a regravar
+        ItemVenda primeiro = alterada.getItens().get(0);
+        primeiro.setQuantidade(primeiro.getQuantidade() == 1 ? 2 : 1);
+        primeiro.setValorTotal(primeiro.getValorUnitario() * primeiro.getQuantidade());
+        alterada.setDataVenda(LocalDateTime.now());
+        return alterada;
+    }
+
+    private Venda novaVenda() {
+        Venda venda = new Venda();
+        venda.setId(PREFIXO_ID + UUID.randomUUID());
+        venda.setClienteNome("Cliente Benchmark");
+        venda.setClienteCpf("529.982.247-25");
+        venda.setClienteEmail("cliente@email.com");
+        venda.setClienteEndereco("Rua das Flores, 100");
+        venda.setTipoPagamento("Cartão de Crédito");
+        venda.setTipoCompra("COMPRA");
+        venda.setStatus("PAGO");
+        venda.setDataVenda(LocalDateTime.now());
+        double total = 0;
+        for (Livro livro : livros) {
+            ItemVenda item = new ItemVenda(livro, 1);
+            venda.addItem(item);
+            total += item.getValorTotal();
+        }
+        venda.setValorTotal(total);
+        return venda;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VendaGravacaoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
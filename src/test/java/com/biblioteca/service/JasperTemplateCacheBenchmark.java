@@ -0,0 +1,112 @@
+package com.biblioteca.service;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JREmptyDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preenchimento de NF e recibo por documento: compilando o .jrxml a cada vez (como era
+ * antes do cache) contra {@link JasperTemplateCache#obter(String)}.
+ *
+ * Não precisa de banco. Executar com o profiler de GC para ver a alocação por documento
+ * (gc.alloc.rate.norm): o main desta classe já liga o profiler; pela linha de comando,
+ * {@code java -cp <classpath de teste> org.openjdk.jmh.Main JasperTemplateCacheBenchmark -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JasperTemplateCacheBenchmark {
+
+    @Param({"relatorios/danfe_template.jrxml", "relatorios/recibo_template.jrxml"})
+    private String template;
+
+    private byte[] fonte;
+    private Map<String, Object> parametros;
+    private List<Map<String, Object>> itens;
+
+    @Setup
+    public void preparar() throws IOException, JRException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(template)) {
+            if (in == null) throw new IllegalStateException("Template não encontrado: " + template);
+            fonte = in.readAllBytes();
+        }
+        parametros = new HashMap<>();
+        parametros.put("NOTA_FISCAL_NUMERO", "bench-0001");
+        parametros.put("RECIBO_NUMERO", "bench-0001");
+        parametros.put("DATA_EMISSAO", "19/10/2026 10:00:00");
+        parametros.put("CLIENTE_NOME", "Cliente Benchmark");
+        parametros.put("CLIENTE_CPF", "529.982.247-25");
+        parametros.put("CLIENTE_EMAIL", "cliente@email.com");
+        parametros.put("CLIENTE_ENDERECO", "Rua das Flores, 100");
+        parametros.put("TIPO_PAGAMENTO", "Cartão de Crédito");
+        parametros.put("TIPO_COMPRA", "COMPRA");
+        parametros.put("VALOR_TOTAL", "119,70");
+        parametros.put("VALOR_POR_EXTENSO", "cento e dezenove reais e setenta centavos");
+        itens = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("codigo", i);
+            item.put("descricao", "Livro " + i);
+            item.put("quantidade", 1);
+            item.put("valorUnitario", 39.9);
+            item.put("valorTotal", 39.9);
+            itens.add(item);
+        }
+        // Cache já aquecido: o caso medido é o de regime
+        JasperTemplateCache.obter(template);
+    }
+
+    @Benchmark
+    public JasperPrint compilarEPreencher() throws JRException {
+        JasperReport relatorio = JasperCompileManager.compileReport(new java.io.ByteArrayInputStream(fonte));
+        return JasperFillManager.fillReport(relatorio, new HashMap<>(parametros), dados());
+    }
+
+    @Benchmark
+    public JasperPrint cacheEPreencher() throws JRException {
+        JasperReport relatorio = JasperTemplateCache.obter(template);
+        return JasperFillManager.fillReport(relatorio, new HashMap<>(parametros), dados());
+    }
+
+    private JRDataSource dados() {
+        return template.contains("danfe") ? new JRBeanCollectionDataSource(itens) : new JREmptyDataSource();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JasperTemplateCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
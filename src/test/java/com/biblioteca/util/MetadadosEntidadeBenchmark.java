@@ -0,0 +1,126 @@
+package com.biblioteca.util;
+
+import com.biblioteca.model.Carrinho;
+import com.biblioteca.model.Emprestimo;
+import com.biblioteca.model.Livro;
+import com.biblioteca.model.Usuario;
+import com.biblioteca.model.Venda;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captura de auditoria (id + toString) por reflexão, como era feita no AuditoriaService,
+ * contra {@link MetadadosEntidade}, para as entidades auditadas com mais frequência.
+ * Emprestimo, Venda e Carrinho não declaram toString: o caminho antigo pagava a
+ * NoSuchMethodException a cada registro.
+ *
+ * Executar: {@code mvn test-compile} e rodar o main desta classe com o classpath de teste
+ * (ou pela IDE); o main já liga o profiler de GC. Pela linha de comando,
+ * {@code java -cp <classpath de teste> org.openjdk.jmh.Main MetadadosEntidadeBenchmark -prof gc}
+ * mostra a alocação por captura (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetadadosEntidadeBenchmark {
+
+    @Param({"Livro", "Emprestimo", "Venda", "Carrinho", "Usuario"})
+    private String tipo;
+
+    private Object entidade;
+
+    @Setup
+    public void preparar() {
+        Usuario usuario = new Usuario("Maria Silva");
+        usuario.setId(7L);
+        usuario.setLogin("maria");
+        usuario.setEmail("maria@email.com");
+        Livro livro = new Livro(42L, "Dom Casmurro", 39.9, 10);
+        livro.setAutor("Machado de Assis");
+        livro.setIsbn("9788535910663");
+        entidade = switch (tipo) {
+            case "Livro" -> livro;
+            case "Emprestimo" -> {
+                Emprestimo emprestimo = new Emprestimo(usuario, livro, LocalDate.now(), LocalDate.now().plusDays(14));
+                emprestimo.setId(99L);
+                yield emprestimo;
+            }
+            case "Venda" -> {
+                Venda venda = new Venda();
+                venda.setId("1042");
+                venda.setClienteNome(usuario.getNome());
+                venda.setValorTotal(39.9);
+                venda.setStatus("PAGO");
+                yield venda;
+            }
+            case "Carrinho" -> {
+                Carrinho carrinho = new Carrinho(13L, usuario);
+                carrinho.adicionarLivro(livro, 2);
+                yield carrinho;
+            }
+            case "Usuario" -> usuario;
+            default -> throw new IllegalArgumentException(tipo);
+        };
+    }
+
+    @Benchmark
+    public Object reflexao() throws Exception {
+        return new Object[]{idPorReflexao(entidade), serializarPorReflexao(entidade)};
+    }
+
+    @Benchmark
+    public Object metodoHandle() {
+        MetadadosEntidade metadados = MetadadosEntidade.de(entidade.getClass());
+        return new Object[]{metadados.id(entidade), metadados.serializar(entidade)};
+    }
+
+    // Versão anterior de AuditoriaService.getEntityIdFromEntityFields
+    private static Long idPorReflexao(Object entidade) throws Exception {
+        for (Field campo : entidade.getClass().getDeclaredFields()) {
+            campo.setAccessible(Boolean.TRUE);
+            String nome = campo.getName();
+            Object valor = campo.get(entidade);
+            campo.setAccessible(Boolean.FALSE);
+            if (nome.equals("id")) {
+                return Long.parseLong(valor.toString());
+            }
+        }
+        return null;
+    }
+
+    // Versão anterior de AuditoriaService.getDadosAlteradosInsertAndDelete (sem o println do erro)
+    private static String serializarPorReflexao(Object entidade) {
+        try {
+            return (String) entidade.getClass().getDeclaredMethod("toString").invoke(entidade);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MetadadosEntidadeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}